@@ -0,0 +1,80 @@
+package io.github.manusant.ss.benchmark;
+
+import io.github.manusant.ss.conf.TypifyProvider;
+import io.github.manusant.ss.model.ContentType;
+import io.github.manusant.ss.route.BodySchemaValidator;
+import io.github.manusant.ss.serialization.Codec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of validating request bodies against their schema, compared to binding them with Gson.
+ * <p>
+ * Run with {@code mvn -P benchmarks package && java -jar benchmarks/target/benchmarks.jar BodySchema}
+ *
+ * @author manusant
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodySchemaBenchmark {
+
+    public enum Status {
+        ACTIVE, SUSPENDED
+    }
+
+    public static class Node {
+        private String id;
+        private long capacity;
+        private boolean online;
+    }
+
+    public static class Network {
+        private String id;
+        private String name;
+        private int size;
+        private double load;
+        private Status status;
+        private List<Node> nodes;
+    }
+
+    private byte[] body;
+    private Codec codec;
+    private BodySchemaValidator validator;
+
+    @Setup
+    public void setUp() {
+        StringBuilder json = new StringBuilder("{\"id\":\"thor_1111\",\"name\":\"Thor Network\",\"size\":32,\"load\":0.75,\"status\":\"ACTIVE\",\"nodes\":[");
+        for (int i = 0; i < 32; i++) {
+            json.append(i > 0 ? "," : "").append("{\"id\":\"node_").append(i).append("\",\"capacity\":").append(1024L * i).append(",\"online\":true}");
+        }
+        body = json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+        codec = TypifyProvider.codec(ContentType.APPLICATION_JSON);
+        validator = BodySchemaValidator.compile(null, Network.class);
+    }
+
+    @Benchmark
+    public Object bind() throws Exception {
+        return codec.read(new ByteArrayInputStream(body), Network.class);
+    }
+
+    @Benchmark
+    public Object validate() throws Exception {
+        return validator.validate(body, 0, body.length);
+    }
+
+    @Benchmark
+    public Object validateAndBind() throws Exception {
+        if (validator.validate(body, 0, body.length) != null) {
+            throw new IllegalStateException("Invalid body");
+        }
+        return codec.read(new ByteArrayInputStream(body), Network.class);
+    }
+}
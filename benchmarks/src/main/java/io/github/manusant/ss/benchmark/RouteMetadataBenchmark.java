@@ -0,0 +1,238 @@
+package io.github.manusant.ss.benchmark;
+
+import io.github.manusant.ss.annotation.Content;
+import io.github.manusant.ss.conf.TypifyProvider;
+import io.github.manusant.ss.model.ContentType;
+import io.github.manusant.ss.route.Route;
+import io.github.manusant.ss.route.RouteDescriptor;
+import io.github.manusant.ss.route.TypedRoute;
+import org.openjdk.jmh.annotations.*;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the per-request reflective lookups routes used to do against the cached route descriptor.
+ * <p>
+ * Run with {@code mvn -P benchmarks package && java -jar benchmarks/target/benchmarks.jar RouteMetadata}
+ *
+ * @author manusant
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RouteMetadataBenchmark {
+
+    public static class Item {
+        private String id = "thor_1111";
+        private String name = "Thor Network";
+        private int nodes = 10000;
+    }
+
+    private static final String BODY = "{\"id\":\"thor_1111\",\"name\":\"Thor Network\",\"nodes\":10000}";
+
+    private Request request;
+    private Response response;
+    private Route route;
+    private TypedRoute<Item> typedRoute;
+
+    @Setup
+    public void setUp() {
+        // Routes read the body from the servlet request and write the result to the servlet response
+        HttpServletRequest rawRequest = servletRequest(BODY.getBytes(StandardCharsets.UTF_8));
+        HttpServletResponse rawResponse = servletResponse();
+        request = new Request() {
+            @Override
+            public String body() {
+                return BODY;
+            }
+
+            @Override
+            public HttpServletRequest raw() {
+                return rawRequest;
+            }
+        };
+        response = new Response() {
+            @Override
+            public void type(String contentType) {
+            }
+
+            @Override
+            public HttpServletResponse raw() {
+                return rawResponse;
+            }
+        };
+        route = new Route() {
+            @Override
+            public Object onRequest(Request request, Response response) {
+                return new Item();
+            }
+        };
+        typedRoute = new TypedRoute<Item>() {
+            @Content(ContentType.APPLICATION_JSON)
+            public Object onRequest(Item body, Request request, Response response) {
+                return body;
+            }
+        };
+    }
+
+    @Benchmark
+    public Object metadataReflective() throws Exception {
+        Method method = typedRoute.getClass().getMethod("onRequest", Object.class, Request.class, Response.class);
+        Content content = method.getAnnotation(Content.class);
+        return content != null ? content.value() : ContentType.APPLICATION_JSON;
+    }
+
+    @Benchmark
+    public Object metadataDescriptor() {
+        return RouteDescriptor.of(typedRoute.getClass()).getContentType();
+    }
+
+    @Benchmark
+    public Object routeReflective() throws Exception {
+        // Request path as it was before route descriptors were cached
+        Object result = route.onRequest(request, response);
+        Method method = route.getClass().getMethod("onRequest", Request.class, Response.class);
+        Content content = method.getAnnotation(Content.class);
+        ContentType contentType = content != null ? content.value() : ContentType.APPLICATION_JSON;
+        response.type(contentType.getValue());
+        return TypifyProvider.json().toJson(result);
+    }
+
+    @Benchmark
+    public Object routeDescriptor() {
+        return route.handle(request, response);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Object typedRouteReflective() throws Exception {
+        // Request path as it was before route descriptors were cached
+        Class<Item> typeOfT = (Class<Item>) ((ParameterizedType) typedRoute.getClass()
+                .getGenericSuperclass())
+                .getActualTypeArguments()[0];
+        Item body = TypifyProvider.json().fromJson(request.body(), typeOfT);
+        Object result = typedRoute.onRequest(body, request, response);
+        Method method = typedRoute.getClass().getMethod("onRequest", Object.class, Request.class, Response.class);
+        Content content = method.getAnnotation(Content.class);
+        ContentType contentType = content != null ? content.value() : ContentType.APPLICATION_JSON;
+        response.type(contentType.getValue());
+        return TypifyProvider.json().toJson(result);
+    }
+
+    @Benchmark
+    public Object typedRouteDescriptor() {
+        return typedRoute.handle(request, response);
+    }
+
+    /**
+     * Servlet request answering a new stream over the body every time it is read, so each invocation reads it whole.
+     */
+    private static HttpServletRequest servletRequest(byte[] body) {
+        return (HttpServletRequest) Proxy.newProxyInstance(RouteMetadataBenchmark.class.getClassLoader(), new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getInputStream":
+                    return inputStream(body);
+                case "getMethod":
+                    return "POST";
+                case "getContentType":
+                    return "application/json";
+                case "getContentLength":
+                    return body.length;
+                case "getContentLengthLong":
+                    return (long) body.length;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Servlet response discarding everything written to it.
+     */
+    private static HttpServletResponse servletResponse() {
+        ServletOutputStream out = new ServletOutputStream() {
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+            }
+
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+            }
+        };
+        return (HttpServletResponse) Proxy.newProxyInstance(RouteMetadataBenchmark.class.getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getOutputStream":
+                    return out;
+                case "getStatus":
+                    return 200;
+                default:
+                    return defaultValue(method.getReturnType());
+            }
+        });
+    }
+
+    private static ServletInputStream inputStream(byte[] body) {
+        ByteArrayInputStream in = new ByteArrayInputStream(body);
+        return new ServletInputStream() {
+            @Override
+            public boolean isFinished() {
+                return in.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+            }
+
+            @Override
+            public int read() {
+                return in.read();
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                return in.read(bytes, offset, length);
+            }
+        };
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -1,12 +1,33 @@
 package io.github.manusant.ss;
 
 import  io.github.manusant.ss.descriptor.EndpointDescriptor;
+import io.github.manusant.ss.conf.Options;
 import io.github.manusant.ss.descriptor.MethodDescriptor;
 import io.github.manusant.ss.model.HttpMethod;
+import io.github.manusant.ss.route.AsyncRoute;
+import io.github.manusant.ss.route.AsyncTypedRoute;
+import io.github.manusant.ss.route.BulkheadRoute;
+import io.github.manusant.ss.route.CachingRoute;
+import io.github.manusant.ss.route.CoalescingRoute;
+import io.github.manusant.ss.route.DescribedRoute;
+import io.github.manusant.ss.route.IdempotentRoute;
+import io.github.manusant.ss.route.LoadSheddingRoute;
+import io.github.manusant.ss.route.OffloadedRoute;
+import io.github.manusant.ss.route.OperationBinding;
+import io.github.manusant.ss.route.OperationMetrics;
+import io.github.manusant.ss.route.RequestValidator;
+import io.github.manusant.ss.route.ResponseCache;
+import io.github.manusant.ss.route.SingleFlight;
+import io.github.manusant.ss.route.StreamingTypedRoute;
+import io.github.manusant.ss.route.TimedRoute;
+import io.github.manusant.ss.route.ValidatingRoute;
 import spark.*;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -17,12 +38,18 @@ public class ApiEndpoint {
     private final SparkSwagger swagger;
     private final EndpointDescriptor endpointDescriptor;
     private final List<MethodDescriptor> methodDescriptors;
+    private final List<ResponseCache> responseCaches;
+    private final List<SingleFlight> singleFlights;
+    private final Map<MethodDescriptor, OperationBinding> bindings;
 
     public ApiEndpoint(final SparkSwagger swagger, final EndpointDescriptor endpointDescriptor) {
         this.swagger = swagger;
         this.endpointDescriptor = endpointDescriptor;
         this.endpointDescriptor.setNameSpace(swagger.getApiPath() + endpointDescriptor.getPath());
         this.methodDescriptors = new ArrayList<>();
+        this.responseCaches = new ArrayList<>();
+        this.singleFlights = new ArrayList<>();
+        this.bindings = new IdentityHashMap<>();
     }
 
     public static ApiEndpoint of(final SparkSwagger swagger, final EndpointDescriptor endpointDescriptor) {
@@ -35,10 +62,99 @@ public class ApiEndpoint {
         descriptor.setMethod(method);
         descriptor.setPath(endpointDescriptor.getPath() + descriptor.getPath());
         methodDescriptors.add(descriptor);
-
+        applyOptions(descriptor);
+        OperationBinding binding = OperationBinding.of(swagger.getSpark(), swagger.getMetrics() != null ? swagger.getMetrics().operation(descriptor) : null);
+        bindings.put(descriptor, binding);
+
+        if (route instanceof DescribedRoute) {
+            // Resolve route metadata at bind time instead of on the first request
+            ((DescribedRoute) route).describe(descriptor, binding);
+        }
         return descriptor;
     }
 
+    private void applyOptions(MethodDescriptor descriptor) {
+        Options options = swagger.getOptions();
+        if (descriptor.getCompression() == null) {
+            descriptor.setCompression(options.isEnableCompression());
+        }
+        if (descriptor.getValidation() == null) {
+            descriptor.setValidation(options.isEnableValidation());
+        }
+        if (descriptor.getCompressionThreshold() == 0) {
+            descriptor.setCompressionThreshold(options.getCompressionThreshold() > 0 ? options.getCompressionThreshold() : MethodDescriptor.DEFAULT_COMPRESSION_THRESHOLD);
+        }
+    }
+
+    private Route decorate(Route route, MethodDescriptor descriptor) {
+        return decorate(route, route, descriptor);
+    }
+
+    /**
+     * @param handler route given by the caller, which decides the decorations that apply
+     * @param route   route Spark is to run, the handler itself or a route wrapping it
+     */
+    private Route decorate(Route handler, Route route, MethodDescriptor descriptor) {
+        boolean async = handler instanceof AsyncRoute || handler instanceof AsyncTypedRoute;
+        boolean described = handler instanceof DescribedRoute;
+        OperationBinding binding = bindings.get(descriptor);
+        swagger.beforeOperation(async);
+        if (async && (descriptor.getSingleFlightWait() > 0 || descriptor.getCacheTtl() > 0 || descriptor.getIdempotencyHeader() != null)) {
+            throw new IllegalArgumentException("Asynchronous routes can not be bound withSingleFlight, withResponseCache or withIdempotency");
+        }
+        if (descriptor.getSingleFlightWait() > 0 && !async) {
+            SingleFlight singleFlight = SingleFlight.of(descriptor);
+            singleFlights.add(singleFlight);
+            route = new CoalescingRoute(route, singleFlight, descriptor);
+        }
+        if (descriptor.getCacheTtl() > 0 && !async) {
+            // Inside the offloading, so the serialized response is captured on whichever thread runs the handler, and
+            // around the coalescing, so only one of the concurrent misses of a key runs the handler
+            ResponseCache cache = ResponseCache.of(descriptor);
+            responseCaches.add(cache);
+            route = new CachingRoute(route, cache, descriptor);
+        }
+        if (descriptor.getIdempotencyHeader() != null && !async) {
+            route = new IdempotentRoute(route, swagger.getIdempotencyStore(), descriptor, binding, !(handler instanceof StreamingTypedRoute));
+        }
+        if (swagger.getHandlerExecutor() != null && !async) {
+            route = new OffloadedRoute(route, swagger.getHandlerExecutor(), descriptor, binding);
+        }
+        RequestValidator validator = Boolean.TRUE.equals(descriptor.getValidation()) ? RequestValidator.compile(descriptor) : null;
+        if (validator != null) {
+            route = new ValidatingRoute(route, validator, descriptor, binding);
+        }
+        if (swagger.getLoadShedder() != null) {
+            route = new LoadSheddingRoute(route, swagger.getLoadShedder().limiter(descriptor), descriptor, binding);
+        }
+        if (descriptor.getMaxConcurrency() > 0) {
+            // Outermost, so saturated operations are rejected on the server thread
+            route = new BulkheadRoute(route, descriptor, binding);
+        }
+        if (binding.getMetrics() != null) {
+            // Around every decoration, so queueing and rejections show in the total time
+            route = new TimedRoute(route, binding.getMetrics(), described);
+        }
+        return route;
+    }
+
+    /**
+     * Renders the views of a template route inside the decorations, so caching, metrics and timeouts cover rendering.
+     */
+    private static Route render(TemplateViewRoute route, TemplateEngine engine) {
+        return (request, response) -> engine.render(route.handle(request, response));
+    }
+
+    /**
+     * Transforms the results of a route inside the decorations, so caching, metrics and timeouts cover transformation.
+     */
+    private static Route transform(Route route, ResponseTransformer transformer) {
+        if (route instanceof AsyncRoute || route instanceof AsyncTypedRoute) {
+            throw new IllegalArgumentException("Asynchronous routes write their own responses and can not be bound with a ResponseTransformer");
+        }
+        return (request, response) -> transformer.render(route.handle(request, response));
+    }
+
     private MethodDescriptor bindDescription(HttpMethod method, MethodDescriptor.Builder descriptorBuilder) {
         Optional.ofNullable(descriptorBuilder).orElseThrow(() -> new IllegalArgumentException("Description is required"));
         MethodDescriptor descriptor = descriptorBuilder.build();
@@ -55,372 +171,449 @@ public class ApiEndpoint {
         return endpointDescriptor;
     }
 
+    /**
+     * @return the metrics of a method bound by this endpoint, or null if they are not recorded
+     */
+    public OperationMetrics getMetrics(MethodDescriptor descriptor) {
+        OperationBinding binding = bindings.get(descriptor);
+        return binding != null ? binding.getMetrics() : null;
+    }
+
+    /**
+     * @return response caches of the methods bound with withResponseCache, with their hit and miss counts
+     */
+    public List<ResponseCache> getResponseCaches() {
+        return Collections.unmodifiableList(responseCaches);
+    }
+
+    /**
+     * @return single flights of the methods bound with withSingleFlight, with their coalesced request counts
+     */
+    public List<SingleFlight> getSingleFlights() {
+        return Collections.unmodifiableList(singleFlights);
+    }
+
+    /**
+     * Drops the cached responses of this endpoint for a request path relative to the API base path, e.g.
+     * "/networks/42" once that network changed.
+     */
+    public void invalidateCache(String path) {
+        for (ResponseCache cache : responseCaches) {
+            cache.invalidate(swagger.getApiPath() + path);
+        }
+    }
+
+    /**
+     * Drops every cached response of this endpoint.
+     */
+    public void invalidateCache() {
+        for (ResponseCache cache : responseCaches) {
+            cache.invalidateAll();
+        }
+    }
+
     public ApiEndpoint get(final MethodDescriptor.Builder descriptorBuilder, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.GET, descriptorBuilder, route);
-        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), route);
+        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint post(final MethodDescriptor.Builder descriptorBuilder, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.POST, descriptorBuilder, route);
-        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), route);
+        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint put(final MethodDescriptor.Builder descriptorBuilder, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.PUT, descriptorBuilder, route);
-        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), route);
+        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint patch(final MethodDescriptor.Builder descriptorBuilder, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder, route);
-        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), route);
+        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint delete(final MethodDescriptor.Builder descriptorBuilder, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.DELETE, descriptorBuilder, route);
-        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), route);
+        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint head(final MethodDescriptor.Builder descriptorBuilder, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder, route);
-        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), route);
+        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint trace(final MethodDescriptor.Builder descriptorBuilder, Route route) {
         MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, route);
-        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), route);
+        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint connect(final MethodDescriptor.Builder descriptorBuilder, Route route) {
         MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, route);
-        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), route);
+        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint options(final MethodDescriptor.Builder descriptorBuilder, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder, route);
-        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), route);
+        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint before(final MethodDescriptor.Builder descriptorBuilder, Filter filter) {
         MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().before(swagger.getApiPath() + descriptor.getPath(), filter);
+        swagger.map(() -> swagger.getSpark().before(swagger.getApiPath() + descriptor.getPath(), filter));
         return this;
     }
 
     public ApiEndpoint after(final MethodDescriptor.Builder descriptorBuilder, Filter filter) {
         MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().after(swagger.getApiPath() + descriptor.getPath(), filter);
+        swagger.map(() -> swagger.getSpark().after(swagger.getApiPath() + descriptor.getPath(), filter));
         return this;
     }
 
     public ApiEndpoint get(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.GET, descriptorBuilder, route);
-        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), acceptType, route);
+        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint post(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.POST, descriptorBuilder, route);
-        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), acceptType, route);
+        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint put(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.PUT, descriptorBuilder, route);
-        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), acceptType, route);
+        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint patch(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder, route);
-        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), acceptType, route);
+        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint delete(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route) {
         MethodDescriptor descriptor = bindDescription(HttpMethod.DELETE, descriptorBuilder, route);
-        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), acceptType, route);
+        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint head(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder);
-        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), acceptType, route);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder, route);
+        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint trace(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), acceptType, route);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, route);
+        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint connect(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), acceptType, route);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, route);
+        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint options(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder);
-        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), acceptType, route);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder, route);
+        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, descriptor));
         return this;
     }
 
     public ApiEndpoint before(Filter filter) {
-        swagger.getSpark().before(filter);
+        swagger.map(() -> swagger.getSpark().before(filter));
         return this;
     }
 
     public ApiEndpoint after(Filter filter) {
-        swagger.getSpark().after(filter);
+        swagger.map(() -> swagger.getSpark().after(filter));
         return this;
     }
 
     public ApiEndpoint before(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Filter filter) {
         MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().before(swagger.getApiPath() + descriptor.getPath(), acceptType, filter);
+        swagger.map(() -> swagger.getSpark().before(swagger.getApiPath() + descriptor.getPath(), acceptType, filter));
         return this;
     }
 
     public ApiEndpoint after(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Filter filter) {
         MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().after(swagger.getApiPath() + descriptor.getPath(), acceptType, filter);
+        swagger.map(() -> swagger.getSpark().after(swagger.getApiPath() + descriptor.getPath(), acceptType, filter));
         return this;
     }
 
     public ApiEndpoint afterAfter(Filter filter) {
-        swagger.getSpark().afterAfter(filter);
+        swagger.map(() -> swagger.getSpark().afterAfter(filter));
         return this;
     }
 
     public ApiEndpoint afterAfter(final MethodDescriptor.Builder descriptorBuilder, Filter filter) {
         MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().afterAfter(swagger.getApiPath() + descriptor.getPath(), filter);
+        swagger.map(() -> swagger.getSpark().afterAfter(swagger.getApiPath() + descriptor.getPath(), filter));
         return this;
     }
 
     public ApiEndpoint get(final MethodDescriptor.Builder descriptorBuilder, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.GET, descriptorBuilder);
-        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.GET, descriptorBuilder, rendered);
+        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint get(final MethodDescriptor.Builder descriptorBuilder, String acceptType, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.GET, descriptorBuilder);
-        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), acceptType, route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.GET, descriptorBuilder, rendered);
+        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint post(final MethodDescriptor.Builder descriptorBuilder, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.POST, descriptorBuilder);
-        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.POST, descriptorBuilder, rendered);
+        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint post(final MethodDescriptor.Builder descriptorBuilder, String acceptType, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.POST, descriptorBuilder);
-        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), acceptType, route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.POST, descriptorBuilder, rendered);
+        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint put(final MethodDescriptor.Builder descriptorBuilder, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.PUT, descriptorBuilder);
-        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.PUT, descriptorBuilder, rendered);
+        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint put(final MethodDescriptor.Builder descriptorBuilder, String acceptType, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.PUT, descriptorBuilder);
-        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), acceptType, route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.PUT, descriptorBuilder, rendered);
+        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint delete(final MethodDescriptor.Builder descriptorBuilder, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.DELETE, descriptorBuilder);
-        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.DELETE, descriptorBuilder, rendered);
+        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint delete(final MethodDescriptor.Builder descriptorBuilder, String acceptType, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.DELETE, descriptorBuilder);
-        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), acceptType, route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.DELETE, descriptorBuilder, rendered);
+        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint patch(final MethodDescriptor.Builder descriptorBuilder, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder);
-        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder, rendered);
+        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint patch(final MethodDescriptor.Builder descriptorBuilder, String acceptType, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder);
-        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), acceptType, route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder, rendered);
+        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint head(final MethodDescriptor.Builder descriptorBuilder, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder);
-        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder, rendered);
+        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint head(final MethodDescriptor.Builder descriptorBuilder, String acceptType, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder);
-        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), acceptType, route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder, rendered);
+        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint trace(final MethodDescriptor.Builder descriptorBuilder, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, rendered);
+        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint trace(final MethodDescriptor.Builder descriptorBuilder, String acceptType, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), acceptType, route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, rendered);
+        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint connect(final MethodDescriptor.Builder descriptorBuilder, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, rendered);
+        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint connect(final MethodDescriptor.Builder descriptorBuilder, String acceptType, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), acceptType, route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, rendered);
+        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint options(final MethodDescriptor.Builder descriptorBuilder, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder);
-        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder, rendered);
+        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint options(final MethodDescriptor.Builder descriptorBuilder, String acceptType, TemplateViewRoute route, TemplateEngine engine) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder);
-        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), acceptType, route, engine);
+        Route rendered = render(route, engine);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder, rendered);
+        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(rendered, descriptor));
         return this;
     }
 
     public ApiEndpoint get(final MethodDescriptor.Builder descriptorBuilder, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.GET, descriptorBuilder);
-        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.GET, descriptorBuilder, route);
+        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint get(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route, ResponseTransformer transformer) {
+        Route transformed = transform(route, transformer);
         MethodDescriptor descriptor = bindDescription(HttpMethod.GET, descriptorBuilder, route);
-        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), acceptType, route, transformer);
+        swagger.getSpark().get(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint post(final MethodDescriptor.Builder descriptorBuilder, Route route, ResponseTransformer transformer) {
+        Route transformed = transform(route, transformer);
         MethodDescriptor descriptor = bindDescription(HttpMethod.POST, descriptorBuilder, route);
-        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), route, transformer);
+        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint post(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route, ResponseTransformer transformer) {
+        Route transformed = transform(route, transformer);
         MethodDescriptor descriptor = bindDescription(HttpMethod.POST, descriptorBuilder, route);
-        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), acceptType, route, transformer);
+        swagger.getSpark().post(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint put(final MethodDescriptor.Builder descriptorBuilder, Route route, ResponseTransformer transformer) {
+        Route transformed = transform(route, transformer);
         MethodDescriptor descriptor = bindDescription(HttpMethod.PUT, descriptorBuilder, route);
-        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), route, transformer);
+        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint put(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route, ResponseTransformer transformer) {
+        Route transformed = transform(route, transformer);
         MethodDescriptor descriptor = bindDescription(HttpMethod.PUT, descriptorBuilder, route);
-        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), acceptType, route, transformer);
+        swagger.getSpark().put(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint delete(final MethodDescriptor.Builder descriptorBuilder, Route route, ResponseTransformer transformer) {
+        Route transformed = transform(route, transformer);
         MethodDescriptor descriptor = bindDescription(HttpMethod.DELETE, descriptorBuilder, route);
-        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), route, transformer);
+        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint delete(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route, ResponseTransformer transformer) {
+        Route transformed = transform(route, transformer);
         MethodDescriptor descriptor = bindDescription(HttpMethod.DELETE, descriptorBuilder, route);
-        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), acceptType, route, transformer);
+        swagger.getSpark().delete(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint head(final MethodDescriptor.Builder descriptorBuilder, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder);
-        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder, route);
+        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint head(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder);
-        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), acceptType, route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.HEAD, descriptorBuilder, route);
+        swagger.getSpark().head(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint connect(final MethodDescriptor.Builder descriptorBuilder, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, route);
+        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint connect(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), acceptType, route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, route);
+        swagger.getSpark().connect(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint trace(final MethodDescriptor.Builder descriptorBuilder, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, route);
+        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint trace(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder);
-        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), acceptType, route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(null, descriptorBuilder, route);
+        swagger.getSpark().trace(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint options(final MethodDescriptor.Builder descriptorBuilder, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder);
-        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder, route);
+        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint options(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder);
-        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), acceptType, route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.OPTIONS, descriptorBuilder, route);
+        swagger.getSpark().options(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint patch(final MethodDescriptor.Builder descriptorBuilder, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder);
-        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder, route);
+        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), decorate(route, transformed, descriptor));
         return this;
     }
 
     public ApiEndpoint patch(final MethodDescriptor.Builder descriptorBuilder, String acceptType, Route route, ResponseTransformer transformer) {
-        MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder);
-        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), acceptType, route, transformer);
+        Route transformed = transform(route, transformer);
+        MethodDescriptor descriptor = bindDescription(HttpMethod.PATCH, descriptorBuilder, route);
+        swagger.getSpark().patch(swagger.getApiPath() + descriptor.getPath(), acceptType, decorate(route, transformed, descriptor));
         return this;
     }
 }
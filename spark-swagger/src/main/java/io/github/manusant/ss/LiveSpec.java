@@ -0,0 +1,261 @@
+package io.github.manusant.ss;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.factory.ParamsFactory;
+import io.github.manusant.ss.model.Operation;
+import io.github.manusant.ss.model.Path;
+import io.github.manusant.ss.route.LatencySnapshot;
+import io.github.manusant.ss.route.OperationMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the served spec decorated with the performance of each operation, as the {@code x-latency-p50},
+ * {@code x-latency-p99} (milliseconds), {@code x-rps} and {@code x-error-rate} vendor extensions measured over the last
+ * refresh interval.
+ * <p>
+ * The spec is serialized once with a placeholder extension per operation and split around the placeholders, so a
+ * refresh only renders the extensions of each operation and joins them with the unchanged parts of the spec.
+ *
+ * @author manusant
+ */
+@Slf4j
+public class LiveSpec {
+
+    public static final long MIN_INTERVAL = 1000;
+
+    private static final String PLACEHOLDER_KEY = "x-latency-p50";
+    private static final String PLACEHOLDER = "$spark-swagger-live-";
+
+    private final String uiFolder;
+    private final long interval;
+    private final List<Slot> slots = new ArrayList<>();
+    private final String[] jsonParts;
+    private final String[] yamlParts;
+    private final String[] yamlSeparators;
+    private final StringBuilder text = new StringBuilder();
+    private ScheduledThreadPoolExecutor timer;
+    private long lastRefresh;
+
+    LiveSpec(Swagger swagger, String uiFolder, long interval) throws IOException {
+        this.uiFolder = uiFolder;
+        this.interval = Math.max(MIN_INTERVAL, interval);
+        List<Operation> operations = new ArrayList<>();
+        for (ApiEndpoint endpoint : swagger.getApiEndpoints() != null ? swagger.getApiEndpoints() : Collections.<ApiEndpoint>emptyList()) {
+            for (MethodDescriptor methodDescriptor : endpoint.getMethodDescriptors()) {
+                Operation operation = operationOf(swagger, methodDescriptor);
+                OperationMetrics metrics = endpoint.getMetrics(methodDescriptor);
+                if (operation != null && metrics != null) {
+                    operation.setVendorExtension(PLACEHOLDER_KEY, PLACEHOLDER + slots.size() + "$");
+                    operations.add(operation);
+                    slots.add(new Slot(metrics));
+                }
+            }
+        }
+        try {
+            this.jsonParts = splitJson(SwaggerParser.toJson(swagger));
+            this.yamlSeparators = new String[slots.size()];
+            this.yamlParts = splitYaml(SwaggerParser.toYaml(swagger));
+        } finally {
+            operations.forEach(operation -> operation.getVendorExtensions().remove(PLACEHOLDER_KEY));
+        }
+    }
+
+    private static Operation operationOf(Swagger swagger, MethodDescriptor methodDescriptor) {
+        Path path = swagger.getPaths() != null ? swagger.getPaths().get(ParamsFactory.formatPath(methodDescriptor.getPath())) : null;
+        return path != null && methodDescriptor.getMethod() != null ? path.getOperationMap().get(methodDescriptor.getMethod()) : null;
+    }
+
+    /**
+     * Splits the JSON spec around the placeholder entries, which Jackson writes as {@code "key":"placeholder"}.
+     */
+    private String[] splitJson(String json) {
+        String[] parts = new String[slots.size() + 1];
+        int from = 0;
+        for (int i = 0; i < slots.size(); i++) {
+            String entry = "\"" + PLACEHOLDER_KEY + "\":\"" + PLACEHOLDER + i + "$\"";
+            int at = json.indexOf(entry, from);
+            if (at < 0) {
+                throw new IllegalStateException("Spark-Swagger: placeholder of operation " + i + " not found in the JSON spec");
+            }
+            parts[i] = json.substring(from, at);
+            from = at + entry.length();
+        }
+        parts[slots.size()] = json.substring(from);
+        return parts;
+    }
+
+    /**
+     * Splits the YAML spec around the placeholder lines, keeping their indentation to separate the lines replacing them.
+     */
+    private String[] splitYaml(String yaml) {
+        String[] parts = new String[slots.size() + 1];
+        int from = 0;
+        for (int i = 0; i < slots.size(); i++) {
+            int at = yaml.indexOf(PLACEHOLDER + i + "$", from);
+            if (at < 0) {
+                throw new IllegalStateException("Spark-Swagger: placeholder of operation " + i + " not found in the YAML spec");
+            }
+            int lineStart = yaml.lastIndexOf('\n', at) + 1;
+            int keyStart = lineStart;
+            while (yaml.charAt(keyStart) == ' ') {
+                keyStart++;
+            }
+            int lineEnd = yaml.indexOf('\n', at);
+            yamlSeparators[i] = "\n" + yaml.substring(lineStart, keyStart);
+            parts[i] = yaml.substring(from, keyStart);
+            from = lineEnd < 0 ? yaml.length() : lineEnd;
+        }
+        parts[slots.size()] = yaml.substring(from);
+        return parts;
+    }
+
+    synchronized LiveSpec start() {
+        lastRefresh = System.nanoTime();
+        refresh();
+        timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "spark-swagger-live-spec");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        log.debug("Spark-Swagger: live spec of {} operations refreshed every {} ms", slots.size(), interval);
+        return this;
+    }
+
+    synchronized void stop() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    /**
+     * Measures every operation over the time since the last refresh and writes the spec files with the new values.
+     */
+    synchronized void refresh() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - lastRefresh);
+        lastRefresh = now;
+        for (Slot slot : slots) {
+            slot.measure(elapsed);
+        }
+        try {
+            String json = join(jsonParts, false);
+            write("doc.json", json);
+            write("swagger-spec.js", "window.swaggerSpec=" + json + System.lineSeparator());
+            write("doc.yaml", join(yamlParts, true));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Spark-Swagger: failed to refresh the live spec", e);
+        }
+    }
+
+    private String join(String[] parts, boolean yaml) {
+        text.setLength(0);
+        for (int i = 0; i < slots.size(); i++) {
+            text.append(parts[i]);
+            slots.get(i).render(text, yaml ? yamlSeparators[i] : ",", yaml);
+        }
+        return text.append(parts[slots.size()]).toString();
+    }
+
+    /**
+     * Replaces a spec file at once, so the file is never served half written.
+     */
+    private void write(String fileName, String content) throws IOException {
+        java.nio.file.Path file = Paths.get(uiFolder, fileName);
+        java.nio.file.Path temporary = Paths.get(uiFolder, fileName + ".tmp");
+        Files.write(temporary, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static final class Slot {
+
+        private final OperationMetrics metrics;
+        private LatencySnapshot latency;
+        private long requests;
+        private long serverErrors;
+        private double p50;
+        private double p99;
+        private double rps;
+        private double errorRate;
+
+        private Slot(OperationMetrics metrics) {
+            this.metrics = metrics;
+            this.latency = metrics.getTotal().snapshot();
+            this.requests = metrics.getRequests();
+            this.serverErrors = metrics.getServerErrors();
+        }
+
+        private void measure(long elapsed) {
+            LatencySnapshot currentLatency = metrics.getTotal().snapshot();
+            long currentRequests = metrics.getRequests();
+            long currentServerErrors = metrics.getServerErrors();
+            // Metrics reset in between are measured from the reset
+            boolean reset = currentRequests < requests || currentLatency.getCount() < latency.getCount();
+            LatencySnapshot window = reset ? currentLatency : currentLatency.since(latency);
+            long windowRequests = reset ? currentRequests : currentRequests - requests;
+            long windowServerErrors = reset ? currentServerErrors : Math.max(0, currentServerErrors - serverErrors);
+            if (window.getCount() > 0) {
+                // Operations idle over the interval keep their last latency
+                p50 = window.getPercentileNanos(50) / 1e6;
+                p99 = window.getPercentileNanos(99) / 1e6;
+            }
+            rps = windowRequests * 1e9 / elapsed;
+            errorRate = windowRequests > 0 ? (double) windowServerErrors / windowRequests : 0;
+            latency = currentLatency;
+            requests = currentRequests;
+            serverErrors = currentServerErrors;
+        }
+
+        /**
+         * Renders the extensions as JSON object entries, or as YAML mapping entries.
+         */
+        private void render(StringBuilder out, String separator, boolean yaml) {
+            entry(out, "x-latency-p50", p50, 3, yaml).append(separator);
+            entry(out, "x-latency-p99", p99, 3, yaml).append(separator);
+            entry(out, "x-rps", rps, 2, yaml).append(separator);
+            entry(out, "x-error-rate", errorRate, 4, yaml);
+        }
+
+        private static StringBuilder entry(StringBuilder out, String key, double value, int scale, boolean yaml) {
+            if (yaml) {
+                out.append(key).append(": ");
+            } else {
+                out.append('"').append(key).append("\":");
+            }
+            return decimal(out, value, scale);
+        }
+
+        /**
+         * Appends a non negative value rounded to the given decimals, trailing zeros left out.
+         */
+        private static StringBuilder decimal(StringBuilder out, double value, int scale) {
+            long factor = 1;
+            for (int i = 0; i < scale; i++) {
+                factor *= 10;
+            }
+            long scaled = Math.round(value * factor);
+            out.append(scaled / factor);
+            long fraction = scaled % factor;
+            if (fraction > 0) {
+                out.append('.');
+                for (long digit = factor / 10; fraction > 0; digit /= 10) {
+                    out.append(fraction / digit);
+                    fraction %= digit;
+                }
+            }
+            return out;
+        }
+    }
+}
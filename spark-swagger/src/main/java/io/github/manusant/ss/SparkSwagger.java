@@ -7,10 +7,21 @@ import io.github.manusant.ss.conf.IpResolver;
 import io.github.manusant.ss.conf.Options;
 import io.github.manusant.ss.conf.TypifyProvider;
 import io.github.manusant.ss.descriptor.EndpointDescriptor;
+import io.github.manusant.ss.descriptor.MethodDescriptor;
 import io.github.manusant.ss.model.*;
 import io.github.manusant.ss.model.auth.SecuritySchemeDefinition;
 import io.github.manusant.ss.rest.Endpoint;
 import io.github.manusant.ss.rest.EndpointResolver;
+import io.github.manusant.ss.rest.BatchRequest;
+import io.github.manusant.ss.rest.BatchResponse;
+import io.github.manusant.ss.route.ApiMetrics;
+import io.github.manusant.ss.route.AsyncServer;
+import io.github.manusant.ss.route.BatchRoute;
+import io.github.manusant.ss.route.IdempotencyStore;
+import io.github.manusant.ss.route.LoadShedder;
+import io.github.manusant.ss.route.MemoryIdempotencyStore;
+import io.github.manusant.ss.route.MetricsRoute;
+import io.github.manusant.ss.route.RouteExecutors;
 import lombok.extern.slf4j.Slf4j;
 import spark.ExceptionHandler;
 import spark.Filter;
@@ -19,10 +30,12 @@ import spark.Service;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
@@ -39,18 +52,43 @@ public class SparkSwagger {
     private final Config config;
     private final Options options;
     private final String apiPath;
+    private final ExecutorService handlerExecutor;
+    private final LoadShedder loadShedder;
+    private final IdempotencyStore idempotencyStore;
+    private final BatchRoute batchRoute;
+    private final ApiMetrics metrics;
+    private LiveSpec liveSpec;
+    // Routes and filters mapped before the first operation is bound, as mapping starts the server and an async
+    // operation must be able to switch it to the async capable one first
+    private List<Runnable> pendingMappings = new ArrayList<>();
+    private boolean asyncServer;
 
     private SparkSwagger(final Service spark, final Options options) {
         this.spark = spark;
         this.options = options == null ? Options.defaultOptions().build() : options;
         this.swagger = new Swagger();
         this.config = getConfig(options);
+        TypifyProvider.setUp(this.options.getSerializationEngine());
         this.apiPath = this.config.getString("spark-swagger.basePath");
         this.swagger.setBasePath(this.apiPath);
         this.swagger.setExternalDocs(ExternalDocs.newBuilder().build());
         this.swagger.setHost(getHost());
         this.swagger.setInfo(getInfo());
+        if (this.options.isEnableVirtualThreads()) {
+            installAsyncServer();
+        }
+        this.handlerExecutor = this.options.isEnableVirtualThreads() ? RouteExecutors.handlerExecutor(this.options.getHandlerPoolSize()) : null;
+        this.loadShedder = this.options.isEnableLoadShedding() ? new LoadShedder() : null;
+        this.idempotencyStore = this.options.getIdempotencyStore() != null ? this.options.getIdempotencyStore() : new MemoryIdempotencyStore();
+        this.metrics = this.options.isEnableMetrics() || this.options.isEnableMetricsEndpoint() ? new ApiMetrics(this.options.getResourceSampleRate()) : null;
+        this.batchRoute = this.options.isEnableBatch() ? new BatchRoute(spark, this.apiPath, this.options.getMaxBatchSize(), this.options.getBatchConcurrency()) : null;
         configDocRoute();
+        if (this.batchRoute != null) {
+            configBatchRoute();
+        }
+        if (this.options.isEnableMetricsEndpoint()) {
+            configMetricsRoute();
+        }
     }
 
     private Config getConfig(Options options) {
@@ -69,6 +107,41 @@ public class SparkSwagger {
         return options;
     }
 
+    /**
+     * @return the executor route handlers are offloaded to, or null if handlers run on server threads
+     */
+    public ExecutorService getHandlerExecutor() {
+        return handlerExecutor;
+    }
+
+    /**
+     * @return the adaptive limiters of the bound operations, or null if load shedding is disabled
+     */
+    public LoadShedder getLoadShedder() {
+        return loadShedder;
+    }
+
+    /**
+     * @return where the responses of methods bound with withIdempotency are stored
+     */
+    public IdempotencyStore getIdempotencyStore() {
+        return idempotencyStore;
+    }
+
+    /**
+     * @return the route answering batch requests, or null if batch requests are disabled
+     */
+    public BatchRoute getBatchRoute() {
+        return batchRoute;
+    }
+
+    /**
+     * @return the metrics of the bound operations, to snapshot or reset, or null if they are not recorded
+     */
+    public ApiMetrics getMetrics() {
+        return metrics;
+    }
+
     public Service getSpark() {
         return spark;
     }
@@ -96,9 +169,27 @@ public class SparkSwagger {
         }
     }
 
+    private void configBatchRoute() {
+        ApiEndpoint endpoint = endpoint(EndpointDescriptor.endpointPath(BatchRoute.PATH)
+                .withDescription("Several operations in one request"));
+        map(() -> endpoint.post(MethodDescriptor.path("")
+                        .withOperationId("batch")
+                        .withSummary("Run several operations in one request")
+                        .withDescription(String.format("Runs up to %d operations of this API and answers them in the order they were sent. Consecutive GET, HEAD and OPTIONS operations run in parallel, other operations one at a time.", batchRoute.getMaxBatchSize()))
+                        .withRequestAsCollection(BatchRequest.class)
+                        .withResponseAsCollection(BatchResponse.class), batchRoute));
+        log.debug("Spark-Swagger: batch requests enabled at {}", apiPath + BatchRoute.PATH);
+    }
+
+    private void configMetricsRoute() {
+        // Left out of the spec, it serves scrapers rather than API clients
+        map(() -> spark.get(apiPath + MetricsRoute.PATH, new MetricsRoute(metrics)));
+        log.debug("Spark-Swagger: metrics endpoint enabled at {}", apiPath + MetricsRoute.PATH);
+    }
+
     private void enableCors() {
         // Enable CORS
-        spark.options("/*",
+        map(() -> spark.options("/*",
                 (request, response) -> {
 
                     String accessControlRequestHeaders = request
@@ -115,15 +206,26 @@ public class SparkSwagger {
                                 accessControlRequestMethod);
                     }
                     return "OK";
-                });
+                }));
 
-        spark.before((request, response) -> response.header("Access-Control-Allow-Origin", "*"));
+        map(() -> spark.before((request, response) -> response.header("Access-Control-Allow-Origin", "*")));
         log.debug("Spark-Swagger: CORS enabled and allow Origin *");
     }
 
     private void enableStaticMapping(String uiFolder) {
-        // Configure static mapping
-        spark.externalStaticFileLocation(uiFolder);
+        if (options.isEnableCompression()) {
+            // Spark would gzip static files again on every request, serve them from precompressed copies instead
+            int threshold = options.getCompressionThreshold() > 0 ? options.getCompressionThreshold() : MethodDescriptor.DEFAULT_COMPRESSION_THRESHOLD;
+            StaticResources resources = new StaticResources(uiFolder, apiPath.isEmpty() ? "" : apiPath + "/", threshold);
+            map(() -> spark.before((request, response) -> {
+                if (resources.serve(request, response)) {
+                    throw spark.halt();
+                }
+            }));
+        } else {
+            // Configure static mapping
+            spark.externalStaticFileLocation(uiFolder);
+        }
         log.debug("Spark-Swagger: UI folder deployed at {}", uiFolder);
     }
 
@@ -134,8 +236,15 @@ public class SparkSwagger {
     }
 
     public void generateDoc() throws IOException {
+        beforeOperation(false);
         new SwaggerSpecBuilder(swagger).build();
         new SwaggerHammer().prepareUi(config, swagger);
+        if (options.getLiveSpecInterval() > 0 && metrics != null) {
+            if (liveSpec != null) {
+                liveSpec.stop();
+            }
+            liveSpec = new LiveSpec(swagger, SwaggerHammer.getUiFolder(apiPath), options.getLiveSpecInterval()).start();
+        }
     }
 
     public ApiEndpoint getEndpoint(final String name) {
@@ -153,7 +262,9 @@ public class SparkSwagger {
     public ApiEndpoint endpoint(final EndpointDescriptor.Builder descriptorBuilder, final Filter filter) {
         Optional.ofNullable(apiPath).orElseThrow(() -> new IllegalStateException("API Path must be specified in order to build REST endpoint"));
         EndpointDescriptor descriptor = descriptorBuilder.build();
-        if (filter != null) spark.before(apiPath + descriptor.getPath() + "/*", filter);
+        if (filter != null) {
+            map(() -> spark.before(apiPath + descriptor.getPath() + "/*", filter));
+        }
         ApiEndpoint apiEndpoint = new ApiEndpoint(this, descriptor);
         this.swagger.addApiEndpoint(apiEndpoint);
         return apiEndpoint;
@@ -162,7 +273,7 @@ public class SparkSwagger {
     public SparkSwagger endpoint(final EndpointDescriptor.Builder descriptorBuilder, final Filter filter, Consumer<ApiEndpoint> endpointDef) {
         Optional.ofNullable(apiPath).orElseThrow(() -> new IllegalStateException("API Path must be specified in order to build REST endpoint"));
         EndpointDescriptor descriptor = descriptorBuilder.build();
-        spark.before(apiPath + descriptor.getPath() + "/*", filter);
+        map(() -> spark.before(apiPath + descriptor.getPath() + "/*", filter));
         ApiEndpoint apiEndpoint = new ApiEndpoint(this, descriptor);
         endpointDef.accept(apiEndpoint);
         this.swagger.addApiEndpoint(apiEndpoint);
@@ -182,20 +293,51 @@ public class SparkSwagger {
     }
 
     public SparkSwagger before(Filter filter) {
-        spark.before(apiPath + "/*", filter);
+        map(() -> spark.before(apiPath + "/*", filter));
         return this;
     }
 
     public SparkSwagger after(Filter filter) {
-        spark.after(apiPath + "/*", filter);
+        map(() -> spark.after(apiPath + "/*", filter));
         return this;
     }
 
-    public synchronized SparkSwagger exception(Class<? extends Exception> exceptionClass, final ExceptionHandler handler) {
+    public synchronized <T extends Exception> SparkSwagger exception(Class<T> exceptionClass, final ExceptionHandler<? super T> handler) {
         spark.exception(exceptionClass, handler);
         return this;
     }
 
+    /**
+     * Maps a route or filter, or holds it back until the first operation is bound.
+     */
+    synchronized void map(Runnable mapping) {
+        if (pendingMappings != null) {
+            pendingMappings.add(mapping);
+        } else {
+            mapping.run();
+        }
+    }
+
+    /**
+     * Runs before an operation route is mapped: switches to the async capable server for the first async operation,
+     * then maps the routes and filters held back so far.
+     */
+    synchronized void beforeOperation(boolean async) {
+        if (async && !asyncServer) {
+            installAsyncServer();
+        }
+        if (pendingMappings != null) {
+            List<Runnable> mappings = pendingMappings;
+            pendingMappings = null;
+            mappings.forEach(Runnable::run);
+        }
+    }
+
+    private void installAsyncServer() {
+        asyncServer = true;
+        AsyncServer.install(spark);
+    }
+
     public HaltException halt() {
         return spark.halt();
     }
@@ -0,0 +1,121 @@
+package io.github.manusant.ss;
+
+import io.github.manusant.ss.model.ContentEncoding;
+import io.github.manusant.ss.route.Compression;
+import spark.Request;
+import spark.Response;
+import spark.resource.ExternalResource;
+import spark.staticfiles.MimeType;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serves the UI folder, including the generated spec, keeping compressed copies of each file so they are compressed
+ * once instead of on every request. Files are reloaded when they change on disk.
+ *
+ * @author manusant
+ */
+public class StaticResources {
+
+    private final Path root;
+    private final String excludedPath;
+    private final int threshold;
+    private final Map<Path, Resource> resources = new ConcurrentHashMap<>();
+
+    public StaticResources(String folder, String excludedPath, int threshold) {
+        this.root = Paths.get(folder).toAbsolutePath().normalize();
+        this.excludedPath = excludedPath;
+        this.threshold = threshold;
+    }
+
+    /**
+     * @return true if the request was for a file of the UI folder and the file was written to the response
+     */
+    public boolean serve(Request request, Response response) throws IOException {
+        String method = request.requestMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            return false;
+        }
+        String path = request.pathInfo();
+        if (path == null || !excludedPath.isEmpty() && path.startsWith(excludedPath)) {
+            return false;
+        }
+        Path file = root.resolve((path.endsWith("/") ? path + "index.html" : path).substring(1)).normalize();
+        if (!file.startsWith(root)) {
+            return false;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return false;
+        }
+        if (!attributes.isRegularFile()) {
+            return false;
+        }
+
+        Resource resource = resources.get(file);
+        if (resource == null || !resource.matches(attributes)) {
+            resource = new Resource(file, attributes);
+            resources.put(file, resource);
+        }
+
+        ContentEncoding encoding = resource.content.length < threshold
+                ? ContentEncoding.IDENTITY
+                : Compression.negotiate(request.headers("Accept-Encoding"));
+        byte[] content = resource.encoded(encoding);
+
+        HttpServletResponse raw = response.raw();
+        raw.setContentType(resource.mimeType);
+        raw.addHeader("Vary", "Accept-Encoding");
+        if (encoding != ContentEncoding.IDENTITY) {
+            raw.setHeader("Content-Encoding", encoding.getValue());
+        }
+        raw.setContentLength(content.length);
+        if ("GET".equals(method)) {
+            raw.getOutputStream().write(content);
+        }
+        raw.flushBuffer();
+        return true;
+    }
+
+    private static final class Resource {
+
+        private final long lastModified;
+        private final long size;
+        private final String mimeType;
+        private final byte[] content;
+        private final Map<ContentEncoding, byte[]> encoded = new EnumMap<>(ContentEncoding.class);
+
+        private Resource(Path file, BasicFileAttributes attributes) throws IOException {
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.size = attributes.size();
+            this.mimeType = MimeType.fromResource(new ExternalResource(file.toString()));
+            this.content = Files.readAllBytes(file);
+        }
+
+        private boolean matches(BasicFileAttributes attributes) {
+            return lastModified == attributes.lastModifiedTime().toMillis() && size == attributes.size();
+        }
+
+        private synchronized byte[] encoded(ContentEncoding encoding) {
+            if (encoding == ContentEncoding.IDENTITY) {
+                return content;
+            }
+            byte[] bytes = encoded.get(encoding);
+            if (bytes == null) {
+                bytes = Compression.compress(content, encoding);
+                encoded.put(encoding, bytes);
+            }
+            return bytes;
+        }
+    }
+}
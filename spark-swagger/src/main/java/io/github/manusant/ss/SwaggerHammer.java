@@ -2,6 +2,8 @@ package io.github.manusant.ss;
 
 import com.typesafe.config.Config;
 import io.github.manusant.ss.conf.Theme;
+import io.github.manusant.ss.jfr.DocRecording;
+import io.github.manusant.ss.jfr.Events;
 import io.github.manusant.ss.ui.UiTemplates;
 import lombok.extern.slf4j.Slf4j;
 
@@ -32,6 +34,7 @@ import java.util.zip.ZipInputStream;
 public class SwaggerHammer {
 
     public void prepareUi(final Config config, Swagger swagger) throws IOException {
+        DocRecording event = Events.beginDoc();
         log.debug("Spark-Swagger: Start compiling Swagger UI");
 
         String uiFolder = SwaggerHammer.getUiFolder(config.getString("spark-swagger.basePath"));
@@ -52,6 +55,7 @@ public class SwaggerHammer {
 
         // 5 - Apply theme according to configurations
         applyTheme(uiFolder, config);
+        Events.endDoc(event, Events.UI, null, 0);
     }
 
     private void extractUi(String uiFolder) throws IOException {
@@ -16,34 +16,40 @@ import java.io.PrintWriter;
 @Slf4j
 public class SwaggerParser {
 
-    public static void parseYaml(final Swagger swagger, final String filePath) throws IOException {
-        log.debug("Spark-Swagger: Start parsing Swagger definitions");
-        // Create an ObjectMapper mapper for YAML
-        ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+    // Mappers are thread safe once configured, so they are created once and shared by every parse
+    private static final ObjectMapper YAML_MAPPER = createMapper(new YAMLFactory());
+    private static final ObjectMapper JSON_MAPPER = createMapper(new JsonFactory());
+
+    private static ObjectMapper createMapper(JsonFactory factory) {
+        ObjectMapper mapper = new ObjectMapper(factory);
         mapper.setSerializationInclusion(Include.NON_NULL);
+        return mapper;
+    }
 
+    public static void parseYaml(final Swagger swagger, final String filePath) throws IOException {
+        log.debug("Spark-Swagger: Start parsing Swagger definitions");
         // Write object as YAML file
-        mapper.writeValue(new File(filePath), swagger);
+        YAML_MAPPER.writeValue(new File(filePath), swagger);
         log.debug("Spark-Swagger: Swagger definitions saved as {} [YAML]", filePath);
     }
 
     public static void parseJson(final Swagger swagger, final String filePath) throws IOException {
         log.debug("Spark-Swagger: Start parsing Swagger definitions");
-        // Create an ObjectMapper mapper for JSON
-        ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-        mapper.setSerializationInclusion(Include.NON_NULL);
-
-        mapper.writeValue(new File(filePath), swagger);
+        JSON_MAPPER.writeValue(new File(filePath), swagger);
         log.debug("Spark-Swagger: Swagger definitions saved as " + filePath + " [JSON]");
     }
 
+    static String toJson(final Swagger swagger) throws IOException {
+        return JSON_MAPPER.writeValueAsString(swagger);
+    }
+
+    static String toYaml(final Swagger swagger) throws IOException {
+        return YAML_MAPPER.writeValueAsString(swagger);
+    }
+
     public static void parseJs(final Swagger swagger, final String filePath) throws IOException {
         log.debug("Spark-Swagger: Start parsing Swagger definitions");
-        // Create an ObjectMapper mapper for JSON
-        ObjectMapper mapper = new ObjectMapper(new JsonFactory());
-        mapper.setSerializationInclusion(Include.NON_NULL);
-
-        String js = mapper.writeValueAsString(swagger);
+        String js = JSON_MAPPER.writeValueAsString(swagger);
         js = "window.swaggerSpec=" + js;
 
         File uiFolder = new File(filePath);
@@ -4,6 +4,10 @@ import io.github.manusant.ss.descriptor.MethodDescriptor;
 import io.github.manusant.ss.descriptor.ParameterDescriptor;
 import io.github.manusant.ss.factory.DefinitionsFactory;
 import io.github.manusant.ss.factory.ParamsFactory;
+import io.github.manusant.ss.jfr.DocRecording;
+import io.github.manusant.ss.jfr.Events;
+import io.github.manusant.ss.model.ArrayModel;
+import io.github.manusant.ss.model.ContentType;
 import io.github.manusant.ss.model.Model;
 import io.github.manusant.ss.model.Operation;
 import io.github.manusant.ss.model.RefModel;
@@ -13,9 +17,12 @@ import io.github.manusant.ss.model.parameters.Parameter;
 import io.github.manusant.ss.model.properties.ArrayProperty;
 import io.github.manusant.ss.model.properties.MapProperty;
 import io.github.manusant.ss.model.properties.Property;
+import io.github.manusant.ss.model.properties.StringProperty;
 import io.github.manusant.ss.model.utils.PropertyModelConverter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -33,6 +40,7 @@ public class SwaggerSpecBuilder {
     }
 
     public void build() {
+        DocRecording event = Events.beginDoc();
         log.debug("Spark-Swagger: Start parsing metadata");
         if (swagger.getApiEndpoints() != null) {
             swagger.getApiEndpoints().forEach(endpoint -> {
@@ -75,7 +83,22 @@ public class SwaggerSpecBuilder {
                                     op.addResponse("200", responseBody);
                                 }
 
-                                if (methodDescriptor.getProduces() != null) {
+                                if (methodDescriptor.isETag()) {
+                                    buildConditionalResponses(op);
+                                }
+                                if (methodDescriptor.getIdempotencyHeader() != null) {
+                                    buildIdempotentResponses(op);
+                                }
+                                if (methodDescriptor.getMaxConcurrency() > 0) {
+                                    op.setVendorExtension("x-max-concurrency", methodDescriptor.getMaxConcurrency());
+                                    if (methodDescriptor.getQueueTimeout() > 0) {
+                                        op.setVendorExtension("x-queue-timeout", methodDescriptor.getQueueTimeout());
+                                    }
+                                }
+
+                                if (methodDescriptor.isResponseAsCollection()) {
+                                    op.produces(elementProduces(methodDescriptor.getProduces()));
+                                } else if (methodDescriptor.getProduces() != null) {
                                     op.produces(methodDescriptor.getProduces());
                                 }
                                 if (methodDescriptor.getConsumes() != null) {
@@ -90,6 +113,7 @@ public class SwaggerSpecBuilder {
         } else {
             log.debug("Spark-Swagger: No metadata to parse. Please check your SparkSwagger configurations and Endpoints Resolver");
         }
+        Events.endDoc(event, Events.SPEC, null, swagger.getPaths() != null ? swagger.getPaths().values().stream().mapToInt(path -> path.getOperations().size()).sum() : 0);
     }
 
     private void buildRequest(MethodDescriptor methodDescriptor, Operation op, ParameterDescriptor methodBody) {
@@ -122,11 +146,51 @@ public class SwaggerSpecBuilder {
             refModel.set$ref(methodDescriptor.getRequestType().getSimpleName());
             model = refModel;
         }
+        if (methodDescriptor.isRequestAsCollection()) {
+            model = new ArrayModel().items(new PropertyModelConverter().modelToProperty(model));
+        }
 
         BodyParameter requestBody = createBodyParameter(methodBody, model);
         op.addParameter(requestBody);
     }
 
+    private void buildConditionalResponses(Operation op) {
+        op.getResponses().forEach((code, response) -> {
+            if (code.startsWith("2")) {
+                response.header("ETag", new StringProperty().description("Strong entity tag of the response body"));
+            }
+        });
+        if (!op.getResponses().containsKey("304")) {
+            Response notModified = new Response();
+            notModified.description("Not modified, the representation matching If-None-Match is still current");
+            op.addResponse("304", notModified);
+        }
+    }
+
+    private void buildIdempotentResponses(Operation op) {
+        if (!op.getResponses().containsKey("409")) {
+            Response inProgress = new Response();
+            inProgress.description("A request with the same idempotency key is still in progress");
+            op.addResponse("409", inProgress);
+        }
+        if (!op.getResponses().containsKey("422")) {
+            Response mismatch = new Response();
+            mismatch.description("The idempotency key was used by a different request");
+            op.addResponse("422", mismatch);
+        }
+    }
+
+    /**
+     * Collections are answered as a JSON array or, one element per line, as newline delimited JSON.
+     */
+    private List<String> elementProduces(List<String> produces) {
+        List<String> elementProduces = new ArrayList<>(produces != null ? produces : Collections.singletonList(ContentType.APPLICATION_JSON.getValue()));
+        if (!elementProduces.contains(ContentType.APPLICATION_NDJSON.getValue())) {
+            elementProduces.add(ContentType.APPLICATION_NDJSON.getValue());
+        }
+        return elementProduces;
+    }
+
     private Response buildResponseFromType(MethodDescriptor methodDescriptor) {
         PropertyModelConverter propertyModelConverter = new PropertyModelConverter();
 
@@ -1,6 +1,8 @@
 package io.github.manusant.ss.conf;
 
 import io.github.manusant.ss.SparkSwagger;
+import io.github.manusant.ss.route.IdempotencyStore;
+import io.github.manusant.ss.serialization.SerializationEngine;
 import lombok.Builder;
 import lombok.Data;
 
@@ -11,11 +13,29 @@ public class Options {
     private String version;
     private boolean enableStaticMapping;
     private boolean enableCors;
+    private SerializationEngine serializationEngine;
+    private boolean enableCompression;
+    private int compressionThreshold;
+    // Offloaded responses are completed after the after filters ran, so those can not change them
+    private boolean enableVirtualThreads;
+    private int handlerPoolSize;
+    private boolean enableLoadShedding;
+    private boolean enableValidation;
+    private IdempotencyStore idempotencyStore;
+    private boolean enableBatch;
+    private int maxBatchSize;
+    private int batchConcurrency;
+    private boolean enableMetrics;
+    private boolean enableMetricsEndpoint;
+    private long liveSpecInterval;
+    private double resourceSampleRate;
 
     public static Options.OptionsBuilder defaultOptions() {
         return Options.builder()
                 .confPath(SparkSwagger.CONF_FILE_NAME)
                 .enableCors(true)
+                .enableMetrics(true)
+                .serializationEngine(SerializationEngine.gson())
                 .enableStaticMapping(true);
     }
 }
@@ -1,49 +1,119 @@
 package io.github.manusant.ss.conf;
 
-import com.google.gson.ExclusionStrategy;
-import com.google.gson.FieldAttributes;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.xml.XmlMapper;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import io.github.manusant.ss.model.ContentType;
+import io.github.manusant.ss.serialization.Codec;
+import io.github.manusant.ss.serialization.EngineCodec;
+import io.github.manusant.ss.serialization.GsonEngine;
+import io.github.manusant.ss.serialization.JacksonCodec;
+import io.github.manusant.ss.serialization.JacksonEngine;
+import io.github.manusant.ss.serialization.SerializationEngine;
 
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.function.Supplier;
 
 /**
+ * Holds the serialization engine shared by all routes.
+ *
  * @author manusant
  */
 public class TypifyProvider {
 
-    private static Gson GSON;
+    private static SerializationEngine baseEngine = SerializationEngine.gson();
+    private static IgnoreSpec ignoreSpec;
+    private static volatile SerializationEngine ENGINE;
+    private static volatile Gson GSON;
+    private static volatile ObjectMapper XML;
+    private static volatile Map<ContentType, Codec> CODECS;
 
-    private static Gson createJson(IgnoreSpec ignoreSpec) {
-        GsonBuilder builder = createBuilder(ignoreSpec);
-        return builder.create();
+    public static synchronized void setUp(SerializationEngine engine) {
+        baseEngine = engine != null ? engine : SerializationEngine.gson();
+        configure();
     }
 
-    private static GsonBuilder createBuilder(IgnoreSpec ignoreSpec) {
-        return new GsonBuilder()
-                .setPrettyPrinting()
-                .setExclusionStrategies(new ExclusionStrategy() {
-                    @Override
-                    public boolean shouldSkipField(FieldAttributes fieldAttributes) {
-                        return ignoreSpec != null && (ignoreSpec.ignoreAnnotated(fieldAttributes) || ignoreSpec.ignored(fieldAttributes));
-                    }
+    public static synchronized void setUp(Supplier<IgnoreSpec> ignoreSupplier) {
+        ignoreSpec = ignoreSupplier.get();
+        configure();
+    }
+
+    private static void configure() {
+        ENGINE = baseEngine.configure(ignoreSpec);
+        GSON = null;
+        XML = null;
+        CODECS = null;
+    }
 
-                    @Override
-                    public boolean shouldSkipClass(Class<?> aClass) {
-                        return false;
-                    }
-                });
+    public static SerializationEngine engine() {
+        SerializationEngine engine = ENGINE;
+        if (engine == null) {
+            synchronized (TypifyProvider.class) {
+                if (ENGINE == null) {
+                    // Create with default configs
+                    configure();
+                }
+                engine = ENGINE;
+            }
+        }
+        return engine;
     }
 
-    public static void setUp(Supplier<IgnoreSpec> ignoreSupplier) {
-        GSON = createJson(ignoreSupplier.get());
+    /**
+     * @return mapper used for XML responses, honouring the configured ignore spec
+     */
+    public static ObjectMapper xml() {
+        ObjectMapper xml = XML;
+        if (xml == null) {
+            xml = JacksonEngine.configure(new XmlMapper(), false, ignoreSpec);
+            XML = xml;
+        }
+        return xml;
+    }
+
+    /**
+     * @return codec for the given content type, or null if the content type can not be negotiated
+     */
+    public static Codec codec(ContentType contentType) {
+        Map<ContentType, Codec> codecs = CODECS;
+        if (codecs == null) {
+            synchronized (TypifyProvider.class) {
+                if (CODECS == null) {
+                    CODECS = createCodecs();
+                }
+                codecs = CODECS;
+            }
+        }
+        return codecs.get(contentType);
+    }
+
+    private static Map<ContentType, Codec> createCodecs() {
+        Map<ContentType, Codec> codecs = new EnumMap<>(ContentType.class);
+        codecs.put(ContentType.APPLICATION_JSON, new EngineCodec(engine()));
+        codecs.put(ContentType.APPLICATION_CBOR, JacksonCodec.cbor(ignoreSpec));
+        codecs.put(ContentType.APPLICATION_SMILE, JacksonCodec.smile(ignoreSpec));
+        Codec msgpack = JacksonCodec.msgpack(ignoreSpec);
+        if (msgpack != null) {
+            codecs.put(ContentType.APPLICATION_MSGPACK, msgpack);
+        }
+        return codecs;
     }
 
+    /**
+     * @return the configured Gson instance, or a Gson honouring the same ignore spec when another engine is configured
+     * @deprecated use {@link #engine()} so the configured serialization engine is honoured
+     */
+    @Deprecated
     public static Gson json() {
-        if (GSON == null) {
-            // Create with default configs
-            GSON = createJson(null);
+        Gson gson = GSON;
+        if (gson == null) {
+            SerializationEngine engine = engine();
+            gson = engine instanceof GsonEngine
+                    ? ((GsonEngine) engine).getGson()
+                    : ((GsonEngine) SerializationEngine.gson().configure(ignoreSpec)).getGson();
+            GSON = gson;
         }
-        return GSON;
+        return gson;
     }
 }
@@ -1,17 +1,24 @@
 package io.github.manusant.ss.descriptor;
 
+import io.github.manusant.ss.model.ContentType;
 import io.github.manusant.ss.model.ExternalDocs;
 import io.github.manusant.ss.model.HttpMethod;
+import io.github.manusant.ss.model.Priority;
 import io.github.manusant.ss.model.Response;
 import io.github.manusant.ss.rest.RestResponse;
 
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author manusant
  */
 public class MethodDescriptor {
 
+    public static final int DEFAULT_STREAMING_BUFFER_SIZE = 8192;
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+    public static final String DEFAULT_IDEMPOTENCY_HEADER = "Idempotency-Key";
+
     private HttpMethod method;
     private String path;
     private String summary;
@@ -31,6 +38,27 @@ public class MethodDescriptor {
     private Boolean deprecated;
 
     private List<Map<String, List<String>>> security;
+    private boolean streamingResponse;
+    private int streamingBufferSize = DEFAULT_STREAMING_BUFFER_SIZE;
+    private long maxBodySize;
+    private int maxNestingDepth;
+    private Boolean compression;
+    private int compressionThreshold;
+    private boolean etag;
+    private long timeout;
+    private int maxConcurrency;
+    private long queueTimeout;
+    private Priority priority;
+    private Boolean validation;
+    private Class<?> paramsType;
+    private long cacheTtl;
+    private int cacheMaxEntries;
+    private long cacheMaxBytes;
+    private List<String> cacheKeyParams;
+    private List<String> cacheKeyHeaders;
+    private long singleFlightWait;
+    private String idempotencyHeader;
+    private long idempotencyTtl;
 
     public HttpMethod getMethod() {
         return method;
@@ -176,6 +204,214 @@ public class MethodDescriptor {
         this.security = security;
     }
 
+    public boolean isStreamingResponse() {
+        return streamingResponse;
+    }
+
+    public void setStreamingResponse(boolean streamingResponse) {
+        this.streamingResponse = streamingResponse;
+    }
+
+    public int getStreamingBufferSize() {
+        return streamingBufferSize;
+    }
+
+    public void setStreamingBufferSize(int streamingBufferSize) {
+        this.streamingBufferSize = streamingBufferSize;
+    }
+
+    public long getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(long maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public int getMaxNestingDepth() {
+        return maxNestingDepth;
+    }
+
+    public void setMaxNestingDepth(int maxNestingDepth) {
+        this.maxNestingDepth = maxNestingDepth;
+    }
+
+    /**
+     * @return whether responses are compressed, or null to follow the compression {@link io.github.manusant.ss.conf.Options}
+     */
+    public Boolean getCompression() {
+        return compression;
+    }
+
+    public void setCompression(Boolean compression) {
+        this.compression = compression;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public void setCompressionThreshold(int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    public boolean isETag() {
+        return etag;
+    }
+
+    public void setETag(boolean etag) {
+        this.etag = etag;
+    }
+
+    /**
+     * @return timeout of asynchronous and offloaded handlers in millis, zero if they never time out
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * @return maximum number of requests handled at once, zero if unlimited
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @return how long in millis a request waits for a free slot when the operation is saturated
+     */
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    public void setQueueTimeout(long queueTimeout) {
+        this.queueTimeout = queueTimeout;
+    }
+
+    /**
+     * @return order in which the operation is shed under load, null for {@link Priority#NORMAL}
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Priority priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * @return true if the declared parameters are validated before the handler runs, null to follow the Options
+     */
+    public Boolean getValidation() {
+        return validation;
+    }
+
+    public void setValidation(Boolean validation) {
+        this.validation = validation;
+    }
+
+    /**
+     * @return class the declared parameters are bound to for BoundRoutes, null to use the route type argument
+     */
+    public Class<?> getParamsType() {
+        return paramsType;
+    }
+
+    public void setParamsType(Class<?> paramsType) {
+        this.paramsType = paramsType;
+    }
+
+    /**
+     * @return how long in millis responses are cached for, zero if they are not cached
+     */
+    public long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(long cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public void setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    /**
+     * @return query parameters telling cached and coalesced responses apart, null for the declared query parameters
+     */
+    public List<String> getCacheKeyParams() {
+        return cacheKeyParams;
+    }
+
+    public void setCacheKeyParams(List<String> cacheKeyParams) {
+        this.cacheKeyParams = cacheKeyParams;
+    }
+
+    /**
+     * @return request headers telling cached and coalesced responses apart, besides the negotiated content type and
+     * encoding
+     */
+    public List<String> getCacheKeyHeaders() {
+        return cacheKeyHeaders;
+    }
+
+    public void setCacheKeyHeaders(List<String> cacheKeyHeaders) {
+        this.cacheKeyHeaders = cacheKeyHeaders;
+    }
+
+    /**
+     * @return how long in millis identical requests wait for the one in flight, zero if they are not coalesced
+     */
+    public long getSingleFlightWait() {
+        return singleFlightWait;
+    }
+
+    public void setSingleFlightWait(long singleFlightWait) {
+        this.singleFlightWait = singleFlightWait;
+    }
+
+    /**
+     * @return header carrying the idempotency key of the requests, null if requests are not deduplicated
+     */
+    public String getIdempotencyHeader() {
+        return idempotencyHeader;
+    }
+
+    public void setIdempotencyHeader(String idempotencyHeader) {
+        this.idempotencyHeader = idempotencyHeader;
+    }
+
+    /**
+     * @return how long in millis the response of an idempotency key is replayed for
+     */
+    public long getIdempotencyTtl() {
+        return idempotencyTtl;
+    }
+
+    public void setIdempotencyTtl(long idempotencyTtl) {
+        this.idempotencyTtl = idempotencyTtl;
+    }
+
     public static Builder path(String path) {
         return new Builder().withPath(path);
     }
@@ -204,6 +440,27 @@ public class MethodDescriptor {
         private Boolean deprecated;
 
         private List<Map<String, List<String>>> security;
+        private boolean streamingResponse;
+        private int streamingBufferSize = DEFAULT_STREAMING_BUFFER_SIZE;
+        private long maxBodySize;
+        private int maxNestingDepth;
+        private Boolean compression;
+        private int compressionThreshold;
+        private boolean etag;
+        private long timeout;
+        private int maxConcurrency;
+        private long queueTimeout;
+        private Priority priority;
+        private Boolean validation;
+        private Class<?> paramsType;
+        private long cacheTtl;
+        private int cacheMaxEntries;
+        private long cacheMaxBytes;
+        private List<String> cacheKeyParams;
+        private List<String> cacheKeyHeaders;
+        private long singleFlightWait;
+        private String idempotencyHeader;
+        private long idempotencyTtl;
 
         private Builder() {
         }
@@ -285,6 +542,26 @@ public class MethodDescriptor {
             return this;
         }
 
+        public Builder withConsumes(ContentType... consumes) {
+            return withConsumes(valuesOf(consumes));
+        }
+
+        /**
+         * Declares the produced content types, the first one being the default. Operations producing more than one
+         * content type pick the response type from the request Accept header.
+         */
+        public Builder withProduces(ContentType... produces) {
+            return withProduces(valuesOf(produces));
+        }
+
+        private static List<String> valuesOf(ContentType... contentTypes) {
+            List<String> values = new ArrayList<>(contentTypes.length);
+            for (ContentType contentType : contentTypes) {
+                values.add(contentType.getValue());
+            }
+            return values;
+        }
+
         public Builder withParams(List<ParameterDescriptor> parameters) {
             this.parameters = parameters;
             return this;
@@ -389,6 +666,220 @@ public class MethodDescriptor {
             return this;
         }
 
+        /**
+         * Serializes the response straight into the servlet output stream. Bodies that fit in the buffer are sent
+         * with a Content-Length header, larger ones are sent chunked.
+         */
+        public Builder withStreamingResponse() {
+            return withStreamingResponse(DEFAULT_STREAMING_BUFFER_SIZE);
+        }
+
+        public Builder withStreamingResponse(int bufferSize) {
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("Streaming buffer size must be positive");
+            }
+            this.streamingResponse = true;
+            this.streamingBufferSize = bufferSize;
+            return this;
+        }
+
+        /**
+         * Rejects request bodies larger than the given number of bytes with 413. Zero means no limit.
+         */
+        public Builder withMaxBodySize(long maxBodySize) {
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
+        /**
+         * Rejects request bodies whose JSON objects/arrays are nested deeper than the given depth with 400. Zero means no limit.
+         */
+        public Builder withMaxNestingDepth(int maxNestingDepth) {
+            this.maxNestingDepth = maxNestingDepth;
+            return this;
+        }
+
+        /**
+         * Compresses responses reaching the compression threshold of the {@link io.github.manusant.ss.conf.Options},
+         * with gzip or deflate according to the Accept-Encoding header.
+         */
+        public Builder withCompression() {
+            this.compression = true;
+            return this;
+        }
+
+        /**
+         * Compresses responses of at least the given number of bytes.
+         */
+        public Builder withCompression(int threshold) {
+            if (threshold <= 0) {
+                throw new IllegalArgumentException("Compression threshold must be positive");
+            }
+            this.compression = true;
+            this.compressionThreshold = threshold;
+            return this;
+        }
+
+        /**
+         * Never compresses responses, even if compression is enabled in the {@link io.github.manusant.ss.conf.Options}.
+         */
+        public Builder withoutCompression() {
+            this.compression = false;
+            return this;
+        }
+
+        /**
+         * Tags GET/HEAD responses with a strong ETag and answers 304 when the client already has the current
+         * representation. Routes implementing {@link io.github.manusant.ss.route.ConditionalRoute} are checked before
+         * the handler runs, other routes are tagged with a hash of the serialized body.
+         */
+        public Builder withETag() {
+            this.etag = true;
+            return this;
+        }
+
+        /**
+         * Answers 504 when an asynchronous handler, or a handler offloaded from the server threads, does not complete
+         * in time.
+         */
+        public Builder withTimeout(long timeout, TimeUnit unit) {
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("Timeout must be positive");
+            }
+            this.timeout = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Limits the number of requests handled at once, so a slow operation can not take every server thread.
+         * Requests over the limit are answered with 503 and a Retry-After header.
+         */
+        public Builder withMaxConcurrency(int maxConcurrency) {
+            if (maxConcurrency <= 0) {
+                throw new IllegalArgumentException("Max concurrency must be positive");
+            }
+            this.maxConcurrency = maxConcurrency;
+            return this;
+        }
+
+        /**
+         * Lets requests over the concurrency limit wait up to the given time for a free slot before being rejected.
+         */
+        public Builder withQueueTimeout(long queueTimeout, TimeUnit unit) {
+            if (queueTimeout < 0) {
+                throw new IllegalArgumentException("Queue timeout must not be negative");
+            }
+            this.queueTimeout = unit.toMillis(queueTimeout);
+            return this;
+        }
+
+        /**
+         * Declares how early the operation is shed when load shedding is enabled, e.g. health checks as
+         * {@link Priority#CRITICAL} and batch jobs as {@link Priority#LOW}.
+         */
+        public Builder withPriority(Priority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        /**
+         * Answers 400 before the handler runs when a request breaks the declared path, query, header, form or cookie
+         * parameters (required, allowEmptyValue, pattern and object/collectionOf type).
+         */
+        public Builder withValidation() {
+            this.validation = true;
+            return this;
+        }
+
+        public Builder withoutValidation() {
+            this.validation = false;
+            return this;
+        }
+
+        /**
+         * Declares the class the parameters of the operation are bound to, by field name, before a BoundRoute handler
+         * runs. Defaults to the type argument of the route.
+         */
+        public Builder withParamsType(Class<?> paramsType) {
+            this.paramsType = paramsType;
+            return this;
+        }
+
+        /**
+         * Caches the serialized 200 responses for the given time, keyed on method, path, the declared query parameters
+         * and the negotiated content type and encoding. Cache hits skip the handler and the serialization.
+         *
+         * @param maxEntries maximum number of cached responses, the least recently used are evicted first
+         * @param maxBytes   maximum size of the cached bodies
+         */
+        public Builder withResponseCache(long ttl, TimeUnit unit, int maxEntries, long maxBytes) {
+            if (ttl <= 0 || maxEntries <= 0 || maxBytes <= 0) {
+                throw new IllegalArgumentException("Cache ttl, entries and bytes must be positive");
+            }
+            this.cacheTtl = unit.toMillis(ttl);
+            this.cacheMaxEntries = maxEntries;
+            this.cacheMaxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Runs the handler once for identical concurrent requests, keyed like cached responses: requests arriving while
+         * it runs wait up to the given time for its response, and then run the handler themselves.
+         */
+        public Builder withSingleFlight(long maxWait, TimeUnit unit) {
+            if (maxWait <= 0) {
+                throw new IllegalArgumentException("Single flight wait must be positive");
+            }
+            this.singleFlightWait = unit.toMillis(maxWait);
+            return this;
+        }
+
+        /**
+         * Deduplicates retried requests by the {@value #DEFAULT_IDEMPOTENCY_HEADER} header.
+         *
+         * @see #withIdempotency(String, long, TimeUnit)
+         */
+        public Builder withIdempotency(long ttl, TimeUnit unit) {
+            return withIdempotency(DEFAULT_IDEMPOTENCY_HEADER, ttl, unit);
+        }
+
+        /**
+         * Stores the first response to a request carrying an idempotency key in the given header and replays it, for
+         * the given time, to the requests repeating that key. Duplicates arriving while the first request runs wait
+         * for its response. The header is documented as an optional header parameter.
+         */
+        public Builder withIdempotency(String headerName, long ttl, TimeUnit unit) {
+            if (headerName == null || headerName.isEmpty()) {
+                throw new IllegalArgumentException("Idempotency header is required");
+            }
+            if (ttl <= 0) {
+                throw new IllegalArgumentException("Idempotency ttl must be positive");
+            }
+            this.idempotencyHeader = headerName;
+            this.idempotencyTtl = unit.toMillis(ttl);
+            return withHeaderParam(ParameterDescriptor.newBuilder()
+                    .withName(headerName)
+                    .withDescription("Unique key of the request, requests repeating it get the response of the first one")
+                    .build());
+        }
+
+        /**
+         * Keys cached and coalesced responses on the given query parameters instead of the declared ones.
+         */
+        public Builder withCacheKeyParams(String... names) {
+            this.cacheKeyParams = Arrays.asList(names);
+            return this;
+        }
+
+        /**
+         * Keys cached and coalesced responses on the given request headers too. Responses keyed on Authorization or
+         * Cookie are marked private for the clients.
+         */
+        public Builder withCacheKeyHeaders(String... names) {
+            this.cacheKeyHeaders = Arrays.asList(names);
+            return this;
+        }
+
         public MethodDescriptor build() {
             MethodDescriptor methodDescriptor = new MethodDescriptor();
             methodDescriptor.setMethod(method);
@@ -409,6 +900,27 @@ public class MethodDescriptor {
             methodDescriptor.setExternalDocs(externalDocs);
             methodDescriptor.setDeprecated(deprecated);
             methodDescriptor.setSecurity(security);
+            methodDescriptor.setStreamingResponse(streamingResponse);
+            methodDescriptor.setStreamingBufferSize(streamingBufferSize);
+            methodDescriptor.setMaxBodySize(maxBodySize);
+            methodDescriptor.setMaxNestingDepth(maxNestingDepth);
+            methodDescriptor.setCompression(compression);
+            methodDescriptor.setCompressionThreshold(compressionThreshold);
+            methodDescriptor.setETag(etag);
+            methodDescriptor.setTimeout(timeout);
+            methodDescriptor.setMaxConcurrency(maxConcurrency);
+            methodDescriptor.setQueueTimeout(queueTimeout);
+            methodDescriptor.setPriority(priority);
+            methodDescriptor.setValidation(validation);
+            methodDescriptor.setParamsType(paramsType);
+            methodDescriptor.setCacheTtl(cacheTtl);
+            methodDescriptor.setCacheMaxEntries(cacheMaxEntries);
+            methodDescriptor.setCacheMaxBytes(cacheMaxBytes);
+            methodDescriptor.setCacheKeyParams(cacheKeyParams);
+            methodDescriptor.setCacheKeyHeaders(cacheKeyHeaders);
+            methodDescriptor.setSingleFlightWait(singleFlightWait);
+            methodDescriptor.setIdempotencyHeader(idempotencyHeader);
+            methodDescriptor.setIdempotencyTtl(idempotencyTtl);
             return methodDescriptor;
         }
     }
@@ -0,0 +1,24 @@
+package io.github.manusant.ss.exception;
+
+import io.github.manusant.ss.rest.ValidationError;
+
+/**
+ * Raised when a request parameter can not be bound to the parameters object of its operation.
+ *
+ * @author manusant
+ */
+public class BindingException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ValidationError error;
+
+    public BindingException(ValidationError error) {
+        super(error.getMessage());
+        this.error = error;
+    }
+
+    public ValidationError getError() {
+        return error;
+    }
+}
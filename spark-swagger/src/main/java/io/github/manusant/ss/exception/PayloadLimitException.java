@@ -0,0 +1,36 @@
+package io.github.manusant.ss.exception;
+
+import java.io.IOException;
+
+/**
+ * Raised while reading a request body that breaks one of the limits or content types declared on its operation.
+ *
+ * @author manusant
+ */
+public class PayloadLimitException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int status;
+
+    public PayloadLimitException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Looks for a limit violation in the cause chain of an exception thrown by a serialization engine.
+     */
+    public static PayloadLimitException find(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof PayloadLimitException) {
+                return (PayloadLimitException) cause;
+            }
+        }
+        return null;
+    }
+}
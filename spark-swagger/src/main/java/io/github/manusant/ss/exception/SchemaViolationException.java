@@ -0,0 +1,24 @@
+package io.github.manusant.ss.exception;
+
+import io.github.manusant.ss.rest.ValidationError;
+
+/**
+ * Raised when a request body breaks the schema of its operation.
+ *
+ * @author manusant
+ */
+public class SchemaViolationException extends PayloadLimitException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ValidationError error;
+
+    public SchemaViolationException(ValidationError error) {
+        super(400, error.getMessage());
+        this.error = error;
+    }
+
+    public ValidationError getError() {
+        return error;
+    }
+}
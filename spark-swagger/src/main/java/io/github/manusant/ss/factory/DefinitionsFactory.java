@@ -3,6 +3,8 @@ package io.github.manusant.ss.factory;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import io.github.manusant.ss.conf.IgnoreSpec;
+import io.github.manusant.ss.jfr.DocRecording;
+import io.github.manusant.ss.jfr.Events;
 import io.github.manusant.ss.model.Model;
 import io.github.manusant.ss.model.ModelImpl;
 import io.github.manusant.ss.model.properties.*;
@@ -28,8 +30,11 @@ public class DefinitionsFactory {
     public static IgnoreSpec ignoreSpec;
 
     public static Map<String, Model> create(Class type) {
+        DocRecording event = Events.beginDoc();
         Map<Field, Map<String, Model>> processedClasses = new HashMap<>();
-        return create(type, processedClasses);
+        Map<String, Model> definitions = create(type, processedClasses);
+        Events.endDoc(event, Events.DEFINITIONS, type, definitions.size());
+        return definitions;
     }
 
     private static Map<String, Model> create(Class type, Map<Field, Map<String, Model>> processedClasses) {
@@ -122,6 +127,9 @@ public class DefinitionsFactory {
             return property;
         } else if (File.class.isAssignableFrom(fieldClass)) {
             return new FileProperty();
+        } else if (fieldClass.equals(Object.class)) {
+            // Any JSON value
+            return new UntypedProperty();
         } else {
             RefProperty property = new RefProperty();
             property.set$ref("#/definitions/" + fieldClass.getSimpleName());
@@ -0,0 +1,45 @@
+package io.github.manusant.ss.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of one phase of the documentation generation. Created by {@link FlightRecorder}, which is not
+ * loaded on runtimes without Flight Recorder.
+ *
+ * @author manusant
+ */
+@Name("io.github.manusant.ss.Doc")
+@Label("Documentation")
+@Category("Spark-Swagger")
+@Description("Phase of the spec and UI generation")
+@StackTrace(false)
+public class DocEvent extends Event implements DocRecording {
+
+    @Label("Phase")
+    @Description("spec, definitions or ui")
+    String phase;
+
+    @Label("Type")
+    @Description("Class the definitions were created for")
+    String type;
+
+    @Label("Count")
+    @Description("Operations of the spec or definitions created")
+    int count;
+
+    @Override
+    public void finish(String phase, Class<?> type, int count) {
+        end();
+        if (shouldCommit()) {
+            this.phase = phase;
+            this.type = type != null ? type.getName() : null;
+            this.count = count;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.manusant.ss.jfr;
+
+/**
+ * Started documentation event, kept free of Flight Recorder types so the spec builders link on runtimes without it.
+ *
+ * @author manusant
+ */
+public interface DocRecording {
+
+    /**
+     * Ends and commits the event.
+     *
+     * @param type  class the definitions were created for, or null
+     * @param count operations of the spec or definitions created
+     */
+    void finish(String phase, Class<?> type, int count);
+}
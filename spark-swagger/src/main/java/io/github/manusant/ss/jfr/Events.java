@@ -0,0 +1,73 @@
+package io.github.manusant.ss.jfr;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+
+/**
+ * Emits the Flight Recorder events of spark-swagger. Events are only created while Flight Recorder records them, so
+ * callers get null and skip the event entirely otherwise, including on runtimes without Flight Recorder.
+ * <p>
+ * The recorder is loaded reflectively, so neither this class nor its callers link against jdk.jfr.
+ *
+ * @author manusant
+ */
+public final class Events {
+
+    public static final String HANDLER = "handler";
+    public static final String SERIALIZATION = "serialization";
+    public static final String SPEC = "spec";
+    public static final String DEFINITIONS = "definitions";
+    public static final String UI = "ui";
+
+    private static final Recorder RECORDER = recorder();
+
+    private Events() {
+    }
+
+    /**
+     * @return the started event, or null if route events are not recorded
+     */
+    public static RouteRecording beginRoute() {
+        return RECORDER != null ? RECORDER.beginRoute() : null;
+    }
+
+    /**
+     * Ends the event, if any.
+     *
+     * @return true if the event is to be committed, so its values are worth computing
+     */
+    public static boolean shouldCommit(RouteRecording event) {
+        return event != null && event.finish();
+    }
+
+    public static void commitRoute(RouteRecording event, String phase, MethodDescriptor operation, long requestBytes, long responseBytes) {
+        event.commit(phase, operation, requestBytes, responseBytes);
+    }
+
+    /**
+     * @return the started event, or null if documentation events are not recorded
+     */
+    public static DocRecording beginDoc() {
+        return RECORDER != null ? RECORDER.beginDoc() : null;
+    }
+
+    /**
+     * Ends and commits the event, if any.
+     *
+     * @param type  class the definitions were created for, or null
+     * @param count operations of the spec or definitions created
+     */
+    public static void endDoc(DocRecording event, String phase, Class<?> type, int count) {
+        if (event != null) {
+            event.finish(phase, type, count);
+        }
+    }
+
+    private static Recorder recorder() {
+        try {
+            Class.forName("jdk.jfr.Event", false, Events.class.getClassLoader());
+            return (Recorder) Class.forName(Events.class.getPackage().getName() + ".FlightRecorder").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+}
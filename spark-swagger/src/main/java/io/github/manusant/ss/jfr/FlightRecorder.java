@@ -0,0 +1,30 @@
+package io.github.manusant.ss.jfr;
+
+/**
+ * Recorder emitting Flight Recorder events. Loaded reflectively by {@link Events}, so along with the events it creates
+ * it is the only class linking against jdk.jfr.
+ *
+ * @author manusant
+ */
+final class FlightRecorder implements Recorder {
+
+    @Override
+    public RouteRecording beginRoute() {
+        RouteEvent event = new RouteEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Override
+    public DocRecording beginDoc() {
+        DocEvent event = new DocEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+}
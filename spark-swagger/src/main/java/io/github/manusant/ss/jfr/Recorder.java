@@ -0,0 +1,19 @@
+package io.github.manusant.ss.jfr;
+
+/**
+ * Starts the events of spark-swagger, implemented on Flight Recorder where it is available.
+ *
+ * @author manusant
+ */
+interface Recorder {
+
+    /**
+     * @return the started event, or null if route events are not recorded
+     */
+    RouteRecording beginRoute();
+
+    /**
+     * @return the started event, or null if documentation events are not recorded
+     */
+    DocRecording beginDoc();
+}
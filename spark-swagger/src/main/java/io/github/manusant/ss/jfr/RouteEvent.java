@@ -0,0 +1,66 @@
+package io.github.manusant.ss.jfr;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of the handler or the serialization of one request to an operation. Created by
+ * {@link FlightRecorder}, which is not loaded on runtimes without Flight Recorder.
+ *
+ * @author manusant
+ */
+@Name("io.github.manusant.ss.Route")
+@Label("Route")
+@Category("Spark-Swagger")
+@Description("Handler or result serialization of a request to an operation")
+@StackTrace(false)
+public class RouteEvent extends Event implements RouteRecording {
+
+    @Label("Phase")
+    @Description("handler or serialization")
+    String phase;
+
+    @Label("Method")
+    String method;
+
+    @Label("Path")
+    String path;
+
+    @Label("Operation Id")
+    String operationId;
+
+    @Label("Request Size")
+    @Description("Declared length of the request body, -1 if unknown")
+    @DataAmount
+    long requestBytes;
+
+    @Label("Response Size")
+    @Description("Bytes of the serialized response body as sent, -1 if unknown or not serialized yet")
+    @DataAmount
+    long responseBytes;
+
+    @Override
+    public boolean finish() {
+        end();
+        return shouldCommit();
+    }
+
+    @Override
+    public void commit(String phase, MethodDescriptor operation, long requestBytes, long responseBytes) {
+        this.phase = phase;
+        if (operation != null) {
+            this.method = operation.getMethod() != null ? operation.getMethod().name() : null;
+            this.path = operation.getPath();
+            this.operationId = operation.getOperationId();
+        }
+        this.requestBytes = requestBytes;
+        this.responseBytes = responseBytes;
+        commit();
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.manusant.ss.jfr;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+
+/**
+ * Started route event, kept free of Flight Recorder types so routes link on runtimes without it.
+ *
+ * @author manusant
+ */
+public interface RouteRecording {
+
+    /**
+     * Ends the event.
+     *
+     * @return true if the event is to be committed, so its values are worth computing
+     */
+    boolean finish();
+
+    void commit(String phase, MethodDescriptor operation, long requestBytes, long responseBytes);
+}
@@ -0,0 +1,18 @@
+package io.github.manusant.ss.model;
+
+public enum ContentEncoding {
+
+    GZIP("gzip"),
+    DEFLATE("deflate"),
+    IDENTITY("identity");
+
+    private final String value;
+
+    ContentEncoding(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+}
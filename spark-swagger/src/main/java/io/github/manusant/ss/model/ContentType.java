@@ -3,9 +3,13 @@ package io.github.manusant.ss.model;
 public enum ContentType {
 
     APPLICATION_ATOM_XML("application/atom+xml"),
+    APPLICATION_CBOR("application/cbor"),
     APPLICATION_FORM_URLENCODED("application/x-www-form-urlencoded"),
     APPLICATION_JSON("application/json"),
+    APPLICATION_MSGPACK("application/x-msgpack"),
+    APPLICATION_NDJSON("application/x-ndjson"),
     APPLICATION_OCTET_STREAM("application/octet-stream"),
+    APPLICATION_SMILE("application/x-jackson-smile"),
     APPLICATION_SVG_XML("application/svg+xml"),
     APPLICATION_XHTML_XML("application/xhtml+xml"),
     APPLICATION_XML("application/xml"),
@@ -24,4 +28,23 @@ public enum ContentType {
     public String getValue() {
         return value;
     }
+
+    /**
+     * Resolves a media type, ignoring case and parameters such as charset.
+     *
+     * @return the matching content type or null if it is not one of the known types
+     */
+    public static ContentType fromValue(String mediaType) {
+        if (mediaType == null) {
+            return null;
+        }
+        int paramsIndex = mediaType.indexOf(';');
+        String type = (paramsIndex >= 0 ? mediaType.substring(0, paramsIndex) : mediaType).trim();
+        for (ContentType contentType : values()) {
+            if (contentType.value.equalsIgnoreCase(type)) {
+                return contentType;
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,25 @@
+package io.github.manusant.ss.model;
+
+/**
+ * Order in which operations are shed under load, lower priorities first.
+ */
+public enum Priority {
+
+    CRITICAL(1.0),
+    HIGH(0.9),
+    NORMAL(0.75),
+    LOW(0.5);
+
+    private final double utilization;
+
+    Priority(double utilization) {
+        this.utilization = utilization;
+    }
+
+    /**
+     * @return server utilization from which requests of this priority are shed
+     */
+    public double getUtilization() {
+        return utilization;
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.manusant.ss.rest;
+
+import java.util.Map;
+
+/**
+ * Response to one of the operations of a batch request. JSON bodies are embedded as they are, text bodies as strings
+ * and other bodies as base64 strings with encoding set to "base64".
+ *
+ * @author manusant
+ */
+public class BatchResponse {
+
+    private int status;
+    private Map<String, String> headers;
+    private Object body;
+    private String encoding;
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public void setHeaders(Map<String, String> headers) {
+        this.headers = headers;
+    }
+
+    public Object getBody() {
+        return body;
+    }
+
+    public void setBody(Object body) {
+        this.body = body;
+    }
+
+    public String getEncoding() {
+        return encoding;
+    }
+
+    public void setEncoding(String encoding) {
+        this.encoding = encoding;
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.manusant.ss.rest;
+
+/**
+ * Body of the 400 response to a collection request body with an invalid element, locating it by its index.
+ *
+ * @author manusant
+ */
+public class ItemValidationError extends ValidationError {
+
+    private int index;
+
+    public ItemValidationError(int index, String parameter, String message) {
+        super(parameter, "body", message);
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Locates a violation found in an element validated on its own.
+     */
+    public static ItemValidationError of(int index, ValidationError error) {
+        String parameter = error.getParameter();
+        if (parameter == null || !parameter.startsWith("$")) {
+            return new ItemValidationError(index, "$[" + index + "]", "Item " + index + ": " + error.getMessage());
+        }
+        String location = "$[" + index + "]" + parameter.substring(1);
+        return new ItemValidationError(index, location, error.getMessage().replace("'" + parameter + "'", "'" + location + "'"));
+    }
+}
@@ -69,6 +69,48 @@ public class RestResponse {
         return new RestResponse(response);
     }
 
+    public static RestResponse methodNotAllowed(spark.Response response, String message) {
+        response.status(405);
+        response.body(message);
+        return new RestResponse(response);
+    }
+
+    public static RestResponse conflict(spark.Response response, String message) {
+        response.status(409);
+        response.body(message);
+        return new RestResponse(response);
+    }
+
+    public static RestResponse unprocessableEntity(spark.Response response, String message) {
+        response.status(422);
+        response.body(message);
+        return new RestResponse(response);
+    }
+
+    public static RestResponse payloadTooLarge(spark.Response response, String message) {
+        response.status(413);
+        response.body(message);
+        return new RestResponse(response);
+    }
+
+    public static RestResponse unsupportedMediaType(spark.Response response, String message) {
+        response.status(415);
+        response.body(message);
+        return new RestResponse(response);
+    }
+
+    public static RestResponse serviceUnavailable(spark.Response response, String message) {
+        response.status(503);
+        response.body(message);
+        return new RestResponse(response);
+    }
+
+    public static RestResponse gatewayTimeout(spark.Response response, String message) {
+        response.status(504);
+        response.body(message);
+        return new RestResponse(response);
+    }
+
     public static RestResponse notImplemented(spark.Response response) {
         response.status(501);
         response.body("Request service not implemented yet");
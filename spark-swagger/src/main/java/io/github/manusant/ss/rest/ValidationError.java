@@ -0,0 +1,42 @@
+package io.github.manusant.ss.rest;
+
+/**
+ * Body of the 400 response to a request breaking the declared parameters.
+ *
+ * @author manusant
+ */
+public class ValidationError {
+
+    private int statusCode;
+    private String parameter;
+    private String in;
+    private String message;
+
+    public ValidationError(String parameter, String in, String message) {
+        this.statusCode = 400;
+        this.parameter = parameter;
+        this.in = in;
+        this.message = message;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getParameter() {
+        return parameter;
+    }
+
+    public String getIn() {
+        return in;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public static ValidationError badRequest(spark.Response response, ValidationError error) {
+        response.status(error.getStatusCode());
+        return error;
+    }
+}
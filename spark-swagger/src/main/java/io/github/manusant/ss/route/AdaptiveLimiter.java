@@ -0,0 +1,125 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.model.Priority;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit of an operation adapted from its latency, in the style of TCP Vegas: the limit shrinks as the
+ * recent latency grows over the long term latency (requests are queueing) and grows while latency holds.
+ *
+ * @author manusant
+ */
+public final class AdaptiveLimiter {
+
+    public static final int INITIAL_LIMIT = 20;
+    public static final int MIN_LIMIT = 4;
+    public static final int MAX_LIMIT = 1000;
+
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_WINDOW_ALPHA = 2.0 / (600 + 1);
+    private static final double SHORT_WINDOW_ALPHA = 2.0 / (10 + 1);
+
+    private final String operationId;
+    private final Priority priority;
+    private final LoadShedder shedder;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shed = new LongAdder();
+    private final ReentrantLock sampling = new ReentrantLock();
+    private volatile int limit = INITIAL_LIMIT;
+    private double estimatedLimit = INITIAL_LIMIT;
+    private double longRtt;
+    private double shortRtt;
+
+    AdaptiveLimiter(String operationId, Priority priority, LoadShedder shedder) {
+        this.operationId = operationId;
+        this.priority = priority;
+        this.shedder = shedder;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return number of requests shed since startup
+     */
+    public long getShed() {
+        return shed.sum();
+    }
+
+    /**
+     * Admits the request unless the operation reached its limit or the server is too busy for its priority.
+     *
+     * @return the number of requests in flight when admitted, or -1 if the request was shed
+     */
+    int acquire() {
+        for (int current = inFlight.get(); ; current = inFlight.get()) {
+            if (current >= limit || !shedder.admits(priority)) {
+                shed.increment();
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                shedder.acquired();
+                return current + 1;
+            }
+        }
+    }
+
+    void release(long rttNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        shedder.released();
+        // Samples are dropped rather than queued behind a busy lock
+        if (sampling.tryLock()) {
+            try {
+                sample(rttNanos, inFlightAtStart);
+            } finally {
+                sampling.unlock();
+            }
+        }
+    }
+
+    private void sample(long rttNanos, int inFlightAtStart) {
+        double rtt = Math.max(1, rttNanos);
+        if (longRtt == 0) {
+            longRtt = rtt;
+            shortRtt = rtt;
+            return;
+        }
+        shortRtt += (rtt - shortRtt) * SHORT_WINDOW_ALPHA;
+        longRtt += (rtt - longRtt) * LONG_WINDOW_ALPHA;
+        if (longRtt / shortRtt > 2) {
+            // Latency dropped for good, let the baseline catch up
+            longRtt *= 0.95;
+        }
+        if (inFlightAtStart < estimatedLimit / 2) {
+            // Too little traffic to tell whether the limit is too low
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / shortRtt));
+        double queueSize = Math.sqrt(estimatedLimit);
+        double newLimit = estimatedLimit * gradient + queueSize;
+        newLimit = estimatedLimit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        estimatedLimit = Math.max(MIN_LIMIT, Math.min(MAX_LIMIT, newLimit));
+        int current = (int) estimatedLimit;
+        if (current != limit) {
+            shedder.limitChanged(current - limit);
+            limit = current;
+        }
+    }
+}
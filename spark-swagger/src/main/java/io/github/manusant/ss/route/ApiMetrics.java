@@ -0,0 +1,97 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Metrics of the operations bound through ApiEndpoints, keyed by method and path.
+ *
+ * @author manusant
+ */
+public final class ApiMetrics {
+
+    private final double resourceSampleRate;
+    private final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private volatile OperationMetrics[] ordered = new OperationMetrics[0];
+
+    public ApiMetrics() {
+        this(0);
+    }
+
+    /**
+     * @param resourceSampleRate share of requests, between 0 and 1, whose heap allocation and CPU time are measured
+     */
+    public ApiMetrics(double resourceSampleRate) {
+        this.resourceSampleRate = Math.max(0, Math.min(1, resourceSampleRate));
+    }
+
+    public double getResourceSampleRate() {
+        return resourceSampleRate;
+    }
+
+    /**
+     * @return the metrics of the operation, created on first use
+     */
+    public OperationMetrics operation(MethodDescriptor operation) {
+        return operations.computeIfAbsent(keyOf(operation), key -> added(new OperationMetrics(operation, resourceSampleRate)));
+    }
+
+    /**
+     * @return the metrics of the operation bound to the given method and path, or null if there is none
+     */
+    public OperationMetrics get(String method, String path) {
+        return operations.get(method + " " + path);
+    }
+
+    public Collection<OperationMetrics> getOperations() {
+        return Collections.unmodifiableCollection(operations.values());
+    }
+
+    public List<OperationMetricsSnapshot> snapshot() {
+        List<OperationMetricsSnapshot> snapshots = new ArrayList<>(operations.size());
+        for (OperationMetrics metrics : operations.values()) {
+            snapshots.add(metrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * Takes the values recorded so far by every operation and starts over, for reporters publishing intervals.
+     */
+    public List<OperationMetricsSnapshot> snapshotAndReset() {
+        List<OperationMetricsSnapshot> snapshots = new ArrayList<>(operations.size());
+        for (OperationMetrics metrics : operations.values()) {
+            snapshots.add(metrics.snapshotAndReset());
+        }
+        return snapshots;
+    }
+
+    public void reset() {
+        operations.values().forEach(OperationMetrics::reset);
+    }
+
+    /**
+     * @return the operations in the order they were bound, iterated without allocating when metrics are rendered
+     */
+    OperationMetrics[] ordered() {
+        return ordered;
+    }
+
+    private synchronized OperationMetrics added(OperationMetrics metrics) {
+        OperationMetrics[] grown = Arrays.copyOf(ordered, ordered.length + 1);
+        grown[ordered.length] = metrics;
+        ordered = grown;
+        return metrics;
+    }
+
+    private static String keyOf(MethodDescriptor operation) {
+        return (operation.getMethod() != null ? operation.getMethod().name() : "ANY") + " " + operation.getPath();
+    }
+}
@@ -0,0 +1,492 @@
+package io.github.manusant.ss.route;
+
+import lombok.extern.slf4j.Slf4j;
+import spark.ExceptionHandlerImpl;
+import spark.ExceptionMapper;
+import spark.HaltException;
+import spark.Request;
+import spark.RequestResponseFactory;
+import spark.Response;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static io.github.manusant.ss.rest.RestResponse.error;
+import static io.github.manusant.ss.rest.RestResponse.gatewayTimeout;
+import static io.github.manusant.ss.rest.RestResponse.serviceUnavailable;
+import static java.text.MessageFormat.format;
+
+/**
+ * Response of a request detached from Spark, completed by whichever comes first: the handler result or the operation
+ * timeout.
+ *
+ * @author manusant
+ */
+@Slf4j
+final class AsyncExchange {
+
+    private static final String ATTRIBUTE = AsyncExchange.class.getName();
+    private static final ScheduledExecutorService TIMER = timer();
+
+    private final Request request;
+    private final AsyncContext context;
+    private final HttpServletResponse raw;
+    private final Response response;
+    private final RouteDescriptor descriptor;
+    private volatile Future<?> task;
+    private ScheduledFuture<?> timeout;
+    private boolean responded;
+    private List<Runnable> callbacks;
+
+    private AsyncExchange(Request request, AsyncContext context, RouteDescriptor descriptor) {
+        this.request = request;
+        this.context = context;
+        this.raw = (HttpServletResponse) context.getResponse();
+        this.response = RequestResponseFactory.create(new GuardedResponse(raw));
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * Detaches the request from Spark so it can be completed from another thread.
+     *
+     * @return the exchange, or null if the request can not complete asynchronously
+     */
+    static AsyncExchange start(Request request, Response response, RouteDescriptor descriptor) {
+        AsyncContext context = AsyncServer.detach(request, response);
+        if (context == null) {
+            return null;
+        }
+        AsyncExchange exchange = new AsyncExchange(request, context, descriptor);
+        request.raw().setAttribute(ATTRIBUTE, exchange);
+        long timeoutMillis = descriptor.getTimeout();
+        if (timeoutMillis > 0) {
+            exchange.timeout = TIMER.schedule(exchange::expire, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        return exchange;
+    }
+
+    /**
+     * Completes the response with the outcome of the future, blocking the server thread only if the request can not be
+     * detached from Spark.
+     */
+    static Object await(Request request, Response response, CompletionStage<?> stage, RouteDescriptor descriptor) {
+        if (stage == null) {
+            log.error("Spark-Swagger: async route of {} returned no CompletionStage", request.pathInfo());
+            return RouteHelper.prepareResponse(request, response, error(response, "Async route returned no CompletionStage"), descriptor);
+        }
+        CompletableFuture<?> future = stage.toCompletableFuture();
+        AsyncExchange exchange = start(request, response, descriptor);
+        if (exchange == null) {
+            return join(request, response, future, descriptor);
+        }
+        exchange.task = future;
+        future.whenComplete((result, failure) -> {
+            if (failure != null) {
+                exchange.fail(failure);
+            } else {
+                exchange.respond(result);
+            }
+        });
+        return "";
+    }
+
+    private static Object join(Request request, Response response, CompletableFuture<?> future, RouteDescriptor descriptor) {
+        Object result;
+        try {
+            long timeoutMillis = descriptor.getTimeout();
+            result = timeoutMillis > 0 ? future.get(timeoutMillis, TimeUnit.MILLISECONDS) : future.get();
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            result = gatewayTimeout(response, timeoutMessage(descriptor));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = serviceUnavailable(response, "Request interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e);
+            if (cause instanceof HaltException) {
+                throw (HaltException) cause;
+            }
+            return failure(request, response, cause, descriptor);
+        }
+        return result != null ? RouteHelper.prepareResponse(request, response, result, descriptor) : null;
+    }
+
+    /**
+     * Runs the callback once the response of a detached request is written, right before it is completed.
+     *
+     * @return false if the request was not detached, so its response is complete once the route returns
+     */
+    static boolean whenComplete(Request request, Runnable callback) {
+        Object exchange = request.raw().getAttribute(ATTRIBUTE);
+        if (!(exchange instanceof AsyncExchange)) {
+            return false;
+        }
+        ((AsyncExchange) exchange).whenComplete(callback);
+        return true;
+    }
+
+    /**
+     * @return true if the request was detached from Spark, so its response completes after the route returns
+     */
+    static boolean isDetached(Request request) {
+        return request.raw().getAttribute(ATTRIBUTE) instanceof AsyncExchange;
+    }
+
+    private void whenComplete(Runnable callback) {
+        synchronized (this) {
+            if (!responded) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList<>(2);
+                }
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    Response response() {
+        return response;
+    }
+
+    void bind(Future<?> task) {
+        this.task = task;
+    }
+
+    /**
+     * Serializes the handler result and completes the response.
+     */
+    void respond(Object result) {
+        synchronized (this) {
+            if (responded) {
+                return;
+            }
+            try {
+                write(result != null ? RouteHelper.prepareResponse(request, response, result, descriptor) : notFound());
+            } catch (RuntimeException e) {
+                if (raw.isCommitted()) {
+                    log.error("Spark-Swagger: failed to write async response", e);
+                } else {
+                    discardBody();
+                    write(failure(request, response, e, descriptor));
+                }
+            }
+            complete();
+        }
+    }
+
+    /**
+     * Writes a body already serialized by the handler and completes the response.
+     */
+    void respondSerialized(Object body) {
+        synchronized (this) {
+            if (responded) {
+                return;
+            }
+            write(body != null ? body : notFound());
+            complete();
+        }
+    }
+
+    void fail(Throwable failure) {
+        synchronized (this) {
+            if (responded) {
+                return;
+            }
+            if (!raw.isCommitted()) {
+                discardBody();
+                Throwable cause = unwrap(failure);
+                if (cause instanceof HaltException) {
+                    HaltException halt = (HaltException) cause;
+                    response.status(halt.statusCode());
+                    write(halt.body());
+                } else {
+                    write(failure(request, response, cause, descriptor));
+                }
+            }
+            complete();
+        }
+    }
+
+    private void expire() {
+        synchronized (this) {
+            if (responded) {
+                return;
+            }
+            if (!raw.isCommitted()) {
+                discardBody();
+                write(RouteHelper.prepareResponse(request, response, gatewayTimeout(response, timeoutMessage(descriptor)), descriptor));
+            }
+            complete();
+        }
+        Future<?> current = task;
+        if (current != null) {
+            current.cancel(true);
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Answers a failed handler like Spark answers the exceptions of its routes: through the exception handler
+     * registered for it, or with a 500 that does not expose the exception otherwise.
+     *
+     * @return the body to write
+     */
+    @SuppressWarnings("unchecked")
+    private static Object failure(Request request, Response response, Throwable cause, RouteDescriptor descriptor) {
+        if (cause instanceof RejectedExecutionException) {
+            return RouteHelper.prepareResponse(request, response, serviceUnavailable(response, "Server is too busy to handle the request"), descriptor);
+        }
+        if (cause instanceof CancellationException) {
+            return RouteHelper.prepareResponse(request, response, gatewayTimeout(response, "Request cancelled"), descriptor);
+        }
+        ExceptionMapper exceptionMapper = descriptor.getExceptionMapper();
+        ExceptionHandlerImpl<Exception> handler = exceptionMapper != null && cause instanceof Exception ? exceptionMapper.getHandler((Exception) cause) : null;
+        if (handler != null) {
+            try {
+                handler.handle((Exception) cause, request, response);
+                return response.body() != null ? response.body() : "";
+            } catch (RuntimeException e) {
+                log.error("Spark-Swagger: exception handler of {} failed", cause.getClass().getName(), e);
+            }
+        } else {
+            log.error("Spark-Swagger: async route failed", cause);
+        }
+        return RouteHelper.prepareResponse(request, response, error(response), descriptor);
+    }
+
+    private static String timeoutMessage(RouteDescriptor descriptor) {
+        return format("Request not handled within {0} ms", String.valueOf(descriptor.getTimeout()));
+    }
+
+    private String notFound() {
+        response.status(404);
+        return "";
+    }
+
+    /**
+     * Drops whatever the handler wrote so far, keeping headers set by before filters.
+     */
+    private void discardBody() {
+        raw.resetBuffer();
+        raw.setHeader("Content-Length", null);
+        raw.setHeader("Content-Encoding", null);
+        raw.setHeader("ETag", null);
+        raw.setContentType(null);
+    }
+
+    private void write(Object body) {
+        try {
+            if (body instanceof byte[]) {
+                raw.getOutputStream().write((byte[]) body);
+            } else if (body != null && !"".equals(body)) {
+                if (raw.getContentType() == null) {
+                    raw.setContentType("text/html; charset=utf-8");
+                }
+                raw.getOutputStream().write(body.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            log.debug("Spark-Swagger: failed to write async response", e);
+        }
+    }
+
+    private void complete() {
+        responded = true;
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+        // Callbacks run first, while the status and written body can still be read from the response
+        if (callbacks != null) {
+            for (Runnable callback : callbacks) {
+                try {
+                    callback.run();
+                } catch (RuntimeException e) {
+                    log.warn("Spark-Swagger: async completion callback failed", e);
+                }
+            }
+        }
+        context.complete();
+    }
+
+    private static ScheduledExecutorService timer() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "spark-swagger-timeout");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Lets the handler build its response until the exchange is responded, ignoring whatever it does afterwards.
+     */
+    private final class GuardedResponse extends HttpServletResponseWrapper {
+
+        private GuardedOutputStream outputStream;
+
+        private GuardedResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            synchronized (AsyncExchange.this) {
+                if (!responded) {
+                    super.setStatus(sc);
+                }
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            synchronized (AsyncExchange.this) {
+                if (!responded) {
+                    super.setHeader(name, value);
+                }
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            synchronized (AsyncExchange.this) {
+                if (!responded) {
+                    super.addHeader(name, value);
+                }
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            synchronized (AsyncExchange.this) {
+                if (!responded) {
+                    super.setIntHeader(name, value);
+                }
+            }
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            synchronized (AsyncExchange.this) {
+                if (!responded) {
+                    super.setDateHeader(name, date);
+                }
+            }
+        }
+
+        @Override
+        public void setContentType(String type) {
+            synchronized (AsyncExchange.this) {
+                if (!responded) {
+                    super.setContentType(type);
+                }
+            }
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            synchronized (AsyncExchange.this) {
+                if (!responded) {
+                    super.setContentLength(len);
+                }
+            }
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            synchronized (AsyncExchange.this) {
+                if (!responded) {
+                    super.setContentLengthLong(len);
+                }
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            synchronized (AsyncExchange.this) {
+                if (outputStream == null) {
+                    outputStream = new GuardedOutputStream(super.getOutputStream());
+                }
+                return outputStream;
+            }
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            return new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+        }
+    }
+
+    private final class GuardedOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream out;
+
+        private GuardedOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            synchronized (AsyncExchange.this) {
+                ensureOpen();
+                out.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (AsyncExchange.this) {
+                ensureOpen();
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (AsyncExchange.this) {
+                if (!responded) {
+                    out.flush();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Closed when the exchange completes
+            flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+
+        private void ensureOpen() throws IOException {
+            if (responded) {
+                throw new IOException("Response already completed");
+            }
+        }
+    }
+}
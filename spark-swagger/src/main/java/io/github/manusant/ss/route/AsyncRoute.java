@@ -0,0 +1,44 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import spark.Request;
+import spark.Response;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Route whose result completes later. The server thread is released as soon as the handler returns its future.
+ *
+ * @author manusant
+ */
+public abstract class AsyncRoute implements DescribedRoute {
+
+    private volatile RouteDescriptor descriptor;
+
+    public abstract CompletionStage<?> onRequest(Request request, Response response);
+
+    @Override
+    public void describe(MethodDescriptor methodDescriptor, OperationBinding binding) {
+        this.descriptor = RouteDescriptor.bind(getClass(), methodDescriptor, binding);
+    }
+
+    protected RouteDescriptor descriptor() {
+        RouteDescriptor current = descriptor;
+        if (current == null) {
+            current = RouteDescriptor.of(getClass());
+            descriptor = current;
+        }
+        return current;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) {
+        RouteDescriptor routeDescriptor = descriptor();
+        Object notModified = RouteHelper.checkNotModified(request, response, this, routeDescriptor);
+        if (notModified != null) {
+            return notModified;
+        }
+        long start = System.nanoTime();
+        return AsyncExchange.await(request, response, RouteHelper.handlerTime(routeDescriptor, start, onRequest(request, response)), routeDescriptor);
+    }
+}
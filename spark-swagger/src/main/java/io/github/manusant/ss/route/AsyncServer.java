@@ -0,0 +1,241 @@
+package io.github.manusant.ss.route;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import spark.ExceptionMapper;
+import spark.Request;
+import spark.Response;
+import spark.Service;
+import spark.embeddedserver.EmbeddedServer;
+import spark.embeddedserver.EmbeddedServerFactory;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyServer;
+import spark.embeddedserver.jetty.JettyHandler;
+import spark.embeddedserver.jetty.JettyServerFactory;
+import spark.http.matching.MatcherFilter;
+import spark.route.Routes;
+import spark.staticfiles.StaticFilesConfiguration;
+
+import javax.servlet.*;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+
+/**
+ * Embedded Jetty server on which routes can complete their responses asynchronously.
+ * <p>
+ * Once a route returns, Spark runs the after filters and writes the returned body, closing the response. Requests
+ * detached from Spark through {@link #detach(Request, Response)} look committed to Spark instead, so their response is
+ * left to whoever completes the request.
+ *
+ * @author manusant
+ */
+@Slf4j
+public final class AsyncServer {
+
+    public static final String IDENTIFIER = "spark-swagger-async-jetty";
+
+    private AsyncServer() {
+    }
+
+    /**
+     * Makes the service run on the async capable server, in place of the server registered under the default
+     * identifier. Has no effect if the service already runs on it, started mapping routes or uses a custom embedded
+     * server.
+     */
+    public static synchronized void install(Service spark) {
+        if (IDENTIFIER.equals(spark.embeddedServerIdentifier())) {
+            return;
+        }
+        if (!EmbeddedServers.defaultIdentifier().equals(spark.embeddedServerIdentifier())) {
+            log.warn("Spark-Swagger: custom embedded server in use, async routes will block server threads");
+            return;
+        }
+        EmbeddedServers.add(IDENTIFIER, new Factory());
+        try {
+            spark.embeddedServerIdentifier(IDENTIFIER);
+        } catch (IllegalStateException e) {
+            log.warn("Spark-Swagger: routes were mapped before the first async route was bound, async routes will block server threads. Bind async routes first or enable virtual threads");
+        }
+    }
+
+    /**
+     * Puts the request in async mode and hands its response over to the caller.
+     *
+     * @return the async context of the request, or null if the request can not complete asynchronously
+     */
+    public static AsyncContext detach(Request request, Response response) {
+        HttpServletResponse raw = response.raw();
+        HttpServletRequest rawRequest = request.raw();
+        if (!(raw instanceof DetachableResponse) || !rawRequest.isAsyncSupported()) {
+            return null;
+        }
+        AsyncContext context = rawRequest.startAsync();
+        context.setTimeout(0);
+        ((DetachableResponse) raw).detached = true;
+        return context;
+    }
+
+    private static final class Factory implements EmbeddedServerFactory {
+
+        @Override
+        public EmbeddedServer create(Routes routes, StaticFilesConfiguration staticFiles, ExceptionMapper exceptionMapper, boolean hasMultipleHandler) {
+            MatcherFilter matcherFilter = new MatcherFilter(routes, staticFiles, exceptionMapper, false, hasMultipleHandler);
+            matcherFilter.init(null);
+            JettyHandler handler = new JettyHandler(new DetachingFilter(matcherFilter));
+            handler.getSessionCookieConfig().setHttpOnly(true);
+            return new EmbeddedJettyServer(new ServerFactory(), handler);
+        }
+    }
+
+    /**
+     * Same servers Spark creates by default.
+     */
+    private static final class ServerFactory implements JettyServerFactory {
+
+        @Override
+        public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+            if (maxThreads > 0) {
+                int min = minThreads > 0 ? minThreads : 8;
+                int idleTimeout = threadTimeoutMillis > 0 ? threadTimeoutMillis : 60000;
+                return new Server(new QueuedThreadPool(maxThreads, min, idleTimeout));
+            }
+            return new Server();
+        }
+
+        @Override
+        public Server create(ThreadPool threadPool) {
+            return threadPool != null ? new Server(threadPool) : new Server();
+        }
+    }
+
+    private static final class DetachingFilter implements Filter {
+
+        private final Filter delegate;
+
+        private DetachingFilter(Filter delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void init(FilterConfig filterConfig) throws ServletException {
+            delegate.init(filterConfig);
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+            delegate.doFilter(request, new DetachableResponse((HttpServletResponse) response), chain);
+        }
+
+        @Override
+        public void destroy() {
+            delegate.destroy();
+        }
+    }
+
+    /**
+     * Once detached, looks committed and ignores changes, so neither Spark nor after filters touch a response being
+     * completed by another thread.
+     */
+    private static final class DetachableResponse extends HttpServletResponseWrapper {
+
+        private volatile boolean detached;
+
+        private DetachableResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public boolean isCommitted() {
+            return detached || super.isCommitted();
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            if (!detached) {
+                super.setStatus(sc);
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (!detached) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (!detached) {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (!detached) {
+                super.setIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if (!detached) {
+                super.addIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setDateHeader(String name, long date) {
+            if (!detached) {
+                super.setDateHeader(name, date);
+            }
+        }
+
+        @Override
+        public void addDateHeader(String name, long date) {
+            if (!detached) {
+                super.addDateHeader(name, date);
+            }
+        }
+
+        @Override
+        public void addCookie(Cookie cookie) {
+            if (!detached) {
+                super.addCookie(cookie);
+            }
+        }
+
+        @Override
+        public void setContentType(String type) {
+            if (!detached) {
+                super.setContentType(type);
+            }
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            if (!detached) {
+                super.sendRedirect(location);
+            }
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            if (!detached) {
+                super.sendError(sc);
+            }
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            if (!detached) {
+                super.sendError(sc, msg);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.exception.PayloadLimitException;
+import spark.Request;
+import spark.Response;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Typed route whose result completes later. The body is read before the handler runs, then the server thread is
+ * released as soon as the handler returns its future.
+ *
+ * @author manusant
+ */
+public abstract class AsyncTypedRoute<T> implements DescribedRoute {
+
+    private volatile RouteDescriptor descriptor;
+
+    public abstract CompletionStage<?> onRequest(T body, Request request, Response response);
+
+    @Override
+    public void describe(MethodDescriptor methodDescriptor, OperationBinding binding) {
+        this.descriptor = RouteDescriptor.bind(getClass(), methodDescriptor, binding);
+    }
+
+    protected RouteDescriptor descriptor() {
+        RouteDescriptor current = descriptor;
+        if (current == null) {
+            current = RouteDescriptor.of(getClass());
+            descriptor = current;
+        }
+        return current;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) {
+        RouteDescriptor routeDescriptor = descriptor();
+        Object notModified = RouteHelper.checkNotModified(request, response, this, routeDescriptor);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        T requestObject;
+        try {
+            requestObject = RouteHelper.readBody(request, routeDescriptor);
+        } catch (PayloadLimitException e) {
+            return RouteHelper.prepareResponse(request, response, RouteHelper.rejection(response, e), routeDescriptor);
+        }
+        long start = System.nanoTime();
+        return AsyncExchange.await(request, response, RouteHelper.handlerTime(routeDescriptor, start, onRequest(requestObject, request, response)), routeDescriptor);
+    }
+}
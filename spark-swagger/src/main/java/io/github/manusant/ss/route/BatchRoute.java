@@ -0,0 +1,451 @@
+package io.github.manusant.ss.route;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.exception.PayloadLimitException;
+import io.github.manusant.ss.model.ContentEncoding;
+import io.github.manusant.ss.model.HttpMethod;
+import io.github.manusant.ss.rest.BatchRequest;
+import io.github.manusant.ss.rest.BatchResponse;
+import lombok.extern.slf4j.Slf4j;
+import spark.ExceptionMapper;
+import spark.Request;
+import spark.RequestResponseFactory;
+import spark.Response;
+import spark.Service;
+import spark.http.matching.MatcherFilter;
+import spark.route.Routes;
+import spark.staticfiles.StaticFilesConfiguration;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static io.github.manusant.ss.rest.RestResponse.badRequest;
+import static io.github.manusant.ss.rest.RestResponse.error;
+import static java.text.MessageFormat.format;
+
+/**
+ * Runs the operations of a batch request in-process through the request matcher of Spark, answering all of them in one
+ * response.
+ * <p>
+ * Operations go through every before, after and afterAfter filter of the service, the route decorations and the
+ * exception handlers, as their own requests would. Consecutive GET, HEAD and OPTIONS operations run in parallel, while
+ * any other operation waits for the ones before it and is waited for by the ones after it, so writes apply in the order
+ * they were sent.
+ *
+ * @author manusant
+ */
+@Slf4j
+public class BatchRoute implements DescribedRoute {
+
+    public static final String PATH = "/batch";
+    public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+    public static final int DEFAULT_CONCURRENCY = 64;
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+    private static final String ATTRIBUTE = BatchRoute.class.getName();
+    private static final Set<String> NOT_INHERITED = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        // Describe the body or the state of the batch request, not of its operations
+        Collections.addAll(NOT_INHERITED, "Content-Length", "Content-Type", "Content-Encoding", "Transfer-Encoding",
+                "Accept-Encoding", "Expect", "If-Match", "If-None-Match", "If-Modified-Since", "If-Unmodified-Since",
+                "If-Range", "Range", MethodDescriptor.DEFAULT_IDEMPOTENCY_HEADER);
+    }
+
+    private final Service spark;
+    private final String apiPath;
+    private final int maxBatchSize;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+    private volatile MatcherFilter matcher;
+    private RouteDescriptor descriptor;
+
+    /**
+     * @param maxBatchSize most operations accepted in one batch request
+     * @param concurrency  most operations running in parallel across every batch request, past which operations run
+     *                     one after the other on the thread handling their batch request
+     */
+    public BatchRoute(Service spark, String apiPath, int maxBatchSize, int concurrency) {
+        this.spark = spark;
+        this.apiPath = apiPath;
+        this.maxBatchSize = maxBatchSize > 0 ? maxBatchSize : DEFAULT_MAX_BATCH_SIZE;
+        int permits = concurrency > 0 ? concurrency : DEFAULT_CONCURRENCY;
+        this.permits = new Semaphore(permits);
+        this.executor = RouteExecutors.handlerExecutor(permits);
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    @Override
+    public void describe(MethodDescriptor descriptor, OperationBinding binding) {
+        this.descriptor = RouteDescriptor.unbound(descriptor, binding);
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        if (request.raw().getAttribute(ATTRIBUTE) != null) {
+            return RouteHelper.prepareResponse(request, response, badRequest(response, "Batch requests can not be nested"), descriptor);
+        }
+        List<BatchRequest> batch;
+        try (InputStream in = new LimitedBodyStream(request.raw().getInputStream(), descriptor.getMaxBodySize(), descriptor.getMaxNestingDepth())) {
+            batch = parse(in);
+        } catch (PayloadLimitException e) {
+            return RouteHelper.prepareResponse(request, response, RouteHelper.rejection(response, e), descriptor);
+        } catch (JsonParseException e) {
+            return RouteHelper.prepareResponse(request, response, badRequest(response, format("Malformed batch request: {0}", e.getOriginalMessage())), descriptor);
+        }
+
+        HttpServletRequest raw = request.raw();
+        // Inherited by the operations, which copy the attributes of the batch request
+        raw.setAttribute(ATTRIBUTE, Boolean.TRUE);
+        Map<String, List<String>> inherited = inheritedHeaders(raw);
+        BatchResponse[] responses = new BatchResponse[batch.size()];
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            BatchRequest operation = batch.get(i);
+            if (!isSafe(operation)) {
+                await(running);
+                responses[i] = dispatch(raw, response.raw(), inherited, operation);
+                continue;
+            }
+            // The last operation of a parallel run is left to this thread, which would only wait otherwise
+            boolean last = i + 1 == batch.size() || !isSafe(batch.get(i + 1));
+            if (!last && permits.tryAcquire()) {
+                int index = i;
+                try {
+                    running.add(executor.submit(() -> {
+                        try {
+                            responses[index] = dispatch(raw, response.raw(), inherited, operation);
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                    continue;
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                }
+            }
+            responses[i] = dispatch(raw, response.raw(), inherited, operation);
+        }
+        await(running);
+
+        response.type("application/json");
+        byte[] body = write(responses);
+        ContentEncoding encoding = ContentEncoding.IDENTITY;
+        if (descriptor.isCompressed()) {
+            response.raw().addHeader("Vary", "Accept-Encoding");
+            encoding = Compression.negotiate(request.headers("Accept-Encoding"));
+        }
+        return Compression.compress(response, body, encoding, descriptor.getCompressionThreshold());
+    }
+
+    private List<BatchRequest> parse(InputStream in) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException(parser, "expected an array of operations");
+            }
+            List<BatchRequest> batch = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "expected an operation object");
+                }
+                if (batch.size() == maxBatchSize) {
+                    throw new PayloadLimitException(413, format("Batch request exceeds the maximum of {0} operations", maxBatchSize));
+                }
+                batch.add(parseOperation(parser));
+            }
+            return batch;
+        }
+    }
+
+    private static BatchRequest parseOperation(JsonParser parser) throws IOException {
+        BatchRequest operation = new BatchRequest();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "method":
+                    operation.setMethod(parser.getValueAsString());
+                    break;
+                case "path":
+                    operation.setPath(parser.getValueAsString());
+                    break;
+                case "headers":
+                    if (value == JsonToken.START_OBJECT) {
+                        Map<String, String> headers = new LinkedHashMap<>();
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String name = parser.getCurrentName();
+                            parser.nextToken();
+                            headers.put(name, parser.getValueAsString());
+                            parser.skipChildren();
+                        }
+                        operation.setHeaders(headers);
+                    } else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "body":
+                    if (value == JsonToken.VALUE_STRING) {
+                        operation.setBody(parser.getText());
+                    } else if (value != JsonToken.VALUE_NULL) {
+                        // Kept as written, so numbers reach the handler with their precision
+                        ByteArrayOutputStream json = new ByteArrayOutputStream(256);
+                        try (JsonGenerator generator = FACTORY.createGenerator(json)) {
+                            generator.copyCurrentStructure(parser);
+                        }
+                        operation.setBody(json.toByteArray());
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return operation;
+    }
+
+    private BatchResponse dispatch(HttpServletRequest batch, HttpServletResponse batchResponse, Map<String, List<String>> inherited, BatchRequest operation) {
+        BatchedResponse raw = new BatchedResponse(batchResponse);
+        Response response = RequestResponseFactory.create(raw);
+        HttpMethod method = methodOf(operation.getMethod());
+        String path = operation.getPath();
+        if (method == null || path == null || !path.startsWith("/")) {
+            return respond(raw, reject(response, badRequest(response, "Batch operations need a method and a path starting with /")));
+        }
+        int query = path.indexOf('?');
+        String uri = apiPath + (query >= 0 ? path.substring(0, query) : path);
+
+        Object body = operation.getBody();
+        byte[] bytes = body instanceof byte[] ? (byte[]) body : body != null ? ((String) body).getBytes(StandardCharsets.UTF_8) : new byte[0];
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        headers.putAll(inherited);
+        if (operation.getHeaders() != null) {
+            operation.getHeaders().forEach((name, value) -> headers.put(name, Collections.singletonList(value)));
+        }
+        if (body != null && !headers.containsKey("Content-Type")) {
+            headers.put("Content-Type", Collections.singletonList(body instanceof byte[] ? "application/json" : "text/plain; charset=utf-8"));
+        }
+        BatchedRequest rawRequest = new BatchedRequest(batch, method.name(), uri, query >= 0 ? path.substring(query + 1) : null, headers, bytes);
+        try {
+            // Spark matches the route and filters, maps exceptions and writes the body, as for requests of its own
+            matcher().doFilter(rawRequest, raw, null);
+        } catch (IOException | ServletException | RuntimeException e) {
+            log.error("Spark-Swagger: batch operation {} {} failed", method, path, e);
+            raw.reset();
+            return respond(raw, reject(response, error(response)));
+        }
+        return respond(raw, null);
+    }
+
+    private MatcherFilter matcher() {
+        MatcherFilter matcher = this.matcher;
+        if (matcher == null) {
+            // Spark does not expose the routes and exception handlers it matches requests with
+            Routes routes = fieldOf(spark, "routes");
+            ExceptionMapper exceptionMapper = fieldOf(spark, "exceptionMapper");
+            // Static files are left out, operations only reach routes
+            matcher = new MatcherFilter(routes, new StaticFilesConfiguration(), exceptionMapper, false, false);
+            matcher.init(null);
+            this.matcher = matcher;
+        }
+        return matcher;
+    }
+
+    private static <T> T fieldOf(Service spark, String name) {
+        try {
+            return SparkInternals.fieldOf(spark, name);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(format("Spark service has no accessible ''{0}'', batch requests are not supported by this Spark version", name), e);
+        }
+    }
+
+    private Object reject(Response response, Object rejection) {
+        return RouteHelper.prepareResponse(response, rejection, descriptor);
+    }
+
+    private static BatchResponse respond(BatchedResponse raw, Object result) {
+        byte[] written = raw.written();
+        byte[] body = bytesOf(result);
+        if (written.length > 0 && body.length > 0) {
+            byte[] joined = Arrays.copyOf(written, written.length + body.length);
+            System.arraycopy(body, 0, joined, written.length, body.length);
+            body = joined;
+        } else if (written.length > 0) {
+            body = written;
+        }
+
+        BatchResponse response = new BatchResponse();
+        response.setStatus(raw.getStatus());
+        Map<String, String> headers = new LinkedHashMap<>();
+        raw.headers().forEach((name, values) -> headers.put(name, String.join(", ", values)));
+        response.setHeaders(headers);
+        if (body.length > 0) {
+            String contentType = raw.getContentType();
+            if (raw.containsHeader("Content-Encoding")) {
+                response.setBody(Base64.getEncoder().encodeToString(body));
+                response.setEncoding("base64");
+            } else if (isJson(contentType) && isJson(body)) {
+                response.setBody(body);
+            } else if (isText(contentType)) {
+                response.setBody(new String(body, charsetOf(contentType)));
+            } else {
+                response.setBody(Base64.getEncoder().encodeToString(body));
+                response.setEncoding("base64");
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Serializes the body a route returned the way Spark writes it.
+     */
+    private static byte[] bytesOf(Object result) {
+        if (result == null) {
+            return new byte[0];
+        }
+        if (result instanceof byte[]) {
+            return (byte[]) result;
+        }
+        if (result instanceof InputStream) {
+            try (InputStream in = (InputStream) result) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+                byte[] buffer = new byte[4096];
+                for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] write(BatchResponse[] responses) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(256 * responses.length);
+        try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+            generator.writeStartArray();
+            for (BatchResponse response : responses) {
+                generator.writeStartObject();
+                generator.writeNumberField("status", response.getStatus());
+                generator.writeObjectFieldStart("headers");
+                for (Map.Entry<String, String> header : response.getHeaders().entrySet()) {
+                    generator.writeStringField(header.getKey(), header.getValue());
+                }
+                generator.writeEndObject();
+                Object body = response.getBody();
+                if (body instanceof byte[]) {
+                    generator.writeFieldName("body");
+                    generator.writeRawValue(new String((byte[]) body, StandardCharsets.UTF_8));
+                } else if (body != null) {
+                    generator.writeStringField("body", (String) body);
+                }
+                if (response.getEncoding() != null) {
+                    generator.writeStringField("encoding", response.getEncoding());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        return out.toByteArray();
+    }
+
+    private static void await(List<Future<?>> running) throws InterruptedException {
+        for (Future<?> operation : running) {
+            try {
+                operation.get();
+            } catch (ExecutionException e) {
+                // Operations answer their own failures, so only errors get here
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+        running.clear();
+    }
+
+    private static Map<String, List<String>> inheritedHeaders(HttpServletRequest batch) {
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (String name : Collections.list(batch.getHeaderNames())) {
+            if (!NOT_INHERITED.contains(name)) {
+                headers.put(name, Collections.list(batch.getHeaders(name)));
+            }
+        }
+        return headers;
+    }
+
+    private static boolean isSafe(BatchRequest operation) {
+        HttpMethod method = methodOf(operation.getMethod());
+        return method == HttpMethod.GET || method == HttpMethod.HEAD || method == HttpMethod.OPTIONS;
+    }
+
+    private static HttpMethod methodOf(String method) {
+        if (method == null) {
+            return null;
+        }
+        try {
+            return HttpMethod.valueOf(method.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json");
+    }
+
+    private static boolean isJson(byte[] body) {
+        try (JsonParser parser = FACTORY.createParser(body)) {
+            if (parser.nextToken() == null) {
+                return false;
+            }
+            parser.skipChildren();
+            return parser.nextToken() == null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isText(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.contains("json") || type.contains("xml") || type.contains("javascript")
+                || type.contains("x-www-form-urlencoded") || type.contains("charset=");
+    }
+
+    private static Charset charsetOf(String contentType) {
+        int charset = contentType != null ? contentType.toLowerCase(Locale.ROOT).indexOf("charset=") : -1;
+        if (charset < 0) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(contentType.substring(charset + 8).split(";")[0].trim().replace("\"", ""));
+        } catch (RuntimeException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package io.github.manusant.ss.route;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+/**
+ * Operation of a batch request, dispatched in-process. Connection details and the session come from the batch
+ * request, everything describing the operation itself from the batch entry.
+ *
+ * @author manusant
+ */
+final class BatchedRequest extends HttpServletRequestWrapper {
+
+    private final String method;
+    private final String uri;
+    private final String queryString;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+    private final Map<String, String[]> parameters;
+    private final Map<String, Object> attributes;
+    private ServletInputStream in;
+    private BufferedReader reader;
+
+    BatchedRequest(HttpServletRequest batch, String method, String uri, String queryString, Map<String, List<String>> headers, byte[] body) {
+        super(batch);
+        this.method = method;
+        this.uri = uri;
+        this.queryString = queryString;
+        this.headers = headers;
+        this.body = body;
+        this.parameters = parametersOf(queryString);
+        // Own attributes, so operations running side by side do not see each other's state
+        this.attributes = new HashMap<>();
+        for (String name : Collections.list(batch.getAttributeNames())) {
+            attributes.put(name, batch.getAttribute(name));
+        }
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    @Override
+    public String getMethod() {
+        return method;
+    }
+
+    @Override
+    public String getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public StringBuffer getRequestURL() {
+        return new StringBuffer(getScheme()).append("://").append(getServerName()).append(':').append(getServerPort()).append(uri);
+    }
+
+    @Override
+    public String getServletPath() {
+        return "";
+    }
+
+    @Override
+    public String getPathInfo() {
+        return uri;
+    }
+
+    @Override
+    public String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values != null ? values.get(0) : null;
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return Collections.enumeration(values != null ? values : Collections.emptyList());
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(headers.keySet());
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = getHeader(name);
+        return value != null ? Integer.parseInt(value) : -1;
+    }
+
+    @Override
+    public long getDateHeader(String name) {
+        String value = getHeader(name);
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    @Override
+    public int getContentLength() {
+        return body.length;
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return body.length;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        String contentType = getContentType();
+        int charset = contentType != null ? contentType.toLowerCase(Locale.ROOT).indexOf("charset=") : -1;
+        return charset >= 0 ? contentType.substring(charset + 8).trim() : null;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        if (in == null) {
+            in = new BodyInputStream(body);
+        }
+        return in;
+    }
+
+    @Override
+    public BufferedReader getReader() throws UnsupportedEncodingException {
+        if (reader == null) {
+            String charset = getCharacterEncoding();
+            reader = new BufferedReader(new InputStreamReader(getInputStream(), charset != null ? charset : StandardCharsets.UTF_8.name()));
+        }
+        return reader;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = parameters.get(name);
+        return values != null ? values[0] : null;
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        return Collections.unmodifiableMap(parameters);
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        return parameters.get(name);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(attributes.keySet());
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void removeAttribute(String name) {
+        attributes.remove(name);
+    }
+
+    @Override
+    public boolean isAsyncSupported() {
+        // Async routes block the batch worker instead of detaching the batch request
+        return false;
+    }
+
+    @Override
+    public boolean isAsyncStarted() {
+        return false;
+    }
+
+    @Override
+    public AsyncContext startAsync() {
+        throw new IllegalStateException("Operations of a batch request can not run asynchronously");
+    }
+
+    @Override
+    public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) {
+        throw new IllegalStateException("Operations of a batch request can not run asynchronously");
+    }
+
+    private static Map<String, String[]> parametersOf(String queryString) {
+        Map<String, String[]> parameters = new LinkedHashMap<>();
+        if (queryString == null || queryString.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : queryString.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String name = decode(separator >= 0 ? pair.substring(0, separator) : pair);
+            String value = separator >= 0 ? decode(pair.substring(separator + 1)) : "";
+            String[] values = parameters.get(name);
+            if (values == null) {
+                parameters.put(name, new String[]{value});
+            } else {
+                String[] appended = Arrays.copyOf(values, values.length + 1);
+                appended[values.length] = value;
+                parameters.put(name, appended);
+            }
+        }
+        return parameters;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+
+    private static final class BodyInputStream extends ServletInputStream {
+
+        private final ByteArrayInputStream in;
+
+        private BodyInputStream(byte[] body) {
+            this.in = new ByteArrayInputStream(body);
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return in.available();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new IllegalStateException("Operations of a batch request can not read asynchronously");
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package io.github.manusant.ss.route;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * Response of an operation of a batch request, kept in memory until the batch response is written. Nothing reaches
+ * the response of the batch request.
+ *
+ * @author manusant
+ */
+final class BatchedResponse extends HttpServletResponseWrapper {
+
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+    private int status = SC_OK;
+    private String characterEncoding;
+    private Locale locale;
+    private ServletOutputStream out;
+    private PrintWriter writer;
+
+    BatchedResponse(HttpServletResponse batch) {
+        super(batch);
+    }
+
+    /**
+     * @return what the operation wrote to its output
+     */
+    byte[] written() {
+        if (writer != null) {
+            writer.flush();
+        }
+        return body.toByteArray();
+    }
+
+    Map<String, List<String>> headers() {
+        return headers;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        this.status = sc;
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+        this.status = sc;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public void sendError(int sc) {
+        sendError(sc, null);
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        resetBuffer();
+        this.status = sc;
+        if (msg != null) {
+            byte[] bytes = msg.getBytes(StandardCharsets.UTF_8);
+            body.write(bytes, 0, bytes.length);
+        }
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+        resetBuffer();
+        this.status = SC_FOUND;
+        setHeader("Location", location);
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (value == null) {
+            headers.remove(name);
+        } else {
+            List<String> values = new ArrayList<>(1);
+            values.add(value);
+            headers.put(name, values);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (value != null) {
+            headers.computeIfAbsent(name, key -> new ArrayList<>(1)).add(value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        setHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        addHeader(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        setHeader(name, formatDate(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        addHeader(name, formatDate(date));
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String getHeader(String name) {
+        List<String> values = headers.get(name);
+        return values != null ? values.get(0) : null;
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        List<String> values = headers.get(name);
+        return values != null ? new ArrayList<>(values) : Collections.emptyList();
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return new ArrayList<>(headers.keySet());
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        StringBuilder header = new StringBuilder(cookie.getName()).append('=').append(cookie.getValue());
+        if (cookie.getPath() != null) {
+            header.append("; Path=").append(cookie.getPath());
+        }
+        if (cookie.getMaxAge() >= 0) {
+            header.append("; Max-Age=").append(cookie.getMaxAge());
+        }
+        if (cookie.getSecure()) {
+            header.append("; Secure");
+        }
+        if (cookie.isHttpOnly()) {
+            header.append("; HttpOnly");
+        }
+        addHeader("Set-Cookie", header.toString());
+    }
+
+    @Override
+    public void setContentType(String type) {
+        setHeader("Content-Type", type);
+    }
+
+    @Override
+    public String getContentType() {
+        return getHeader("Content-Type");
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+        this.characterEncoding = charset;
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return characterEncoding != null ? characterEncoding : StandardCharsets.ISO_8859_1.name();
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        // Computed from the captured body
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        // Computed from the captured body
+    }
+
+    @Override
+    public void setLocale(Locale locale) {
+        this.locale = locale;
+    }
+
+    @Override
+    public Locale getLocale() {
+        return locale != null ? locale : Locale.getDefault();
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        if (out == null) {
+            out = new BodyOutputStream();
+        }
+        return out;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        if (writer == null) {
+            Charset charset = characterEncoding != null ? Charset.forName(characterEncoding) : StandardCharsets.UTF_8;
+            writer = new PrintWriter(new OutputStreamWriter(body, charset));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+        // Everything is buffered until the batch completes
+    }
+
+    @Override
+    public int getBufferSize() {
+        return body.size();
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void reset() {
+        resetBuffer();
+        headers.clear();
+        status = SC_OK;
+    }
+
+    @Override
+    public void resetBuffer() {
+        if (writer != null) {
+            writer.flush();
+        }
+        body.reset();
+    }
+
+    private static String formatDate(long date) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(date).atZone(ZoneOffset.UTC));
+    }
+
+    private final class BodyOutputStream extends ServletOutputStream {
+
+        @Override
+        public void write(int b) {
+            body.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            body.write(b, off, len);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            throw new IllegalStateException("Operations of a batch request can not write asynchronously");
+        }
+    }
+}
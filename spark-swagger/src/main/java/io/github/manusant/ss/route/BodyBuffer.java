@@ -0,0 +1,46 @@
+package io.github.manusant.ss.route;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Request body read into memory, exposing its buffer without copying it.
+ *
+ * @author manusant
+ */
+final class BodyBuffer extends ByteArrayOutputStream {
+
+    private static final int DEFAULT_SIZE = 1024;
+    private static final int MAX_INITIAL_SIZE = 1024 * 1024;
+
+    private BodyBuffer(int size) {
+        super(size);
+    }
+
+    static BodyBuffer empty() {
+        return new BodyBuffer(DEFAULT_SIZE);
+    }
+
+    static BodyBuffer read(InputStream in, int contentLength) throws IOException {
+        BodyBuffer buffer = new BodyBuffer(contentLength > 0 ? Math.min(contentLength, MAX_INITIAL_SIZE) : DEFAULT_SIZE);
+        byte[] chunk = BufferPool.acquire(8192);
+        try {
+            for (int read; (read = in.read(chunk)) != -1; ) {
+                buffer.write(chunk, 0, read);
+            }
+        } finally {
+            BufferPool.release(chunk);
+        }
+        return buffer;
+    }
+
+    byte[] bytes() {
+        return buf;
+    }
+
+    InputStream asInputStream() {
+        return new ByteArrayInputStream(buf, 0, count);
+    }
+}
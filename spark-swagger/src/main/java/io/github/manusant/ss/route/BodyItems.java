@@ -0,0 +1,212 @@
+package io.github.manusant.ss.route;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import io.github.manusant.ss.exception.PayloadLimitException;
+import io.github.manusant.ss.exception.SchemaViolationException;
+import io.github.manusant.ss.model.ContentType;
+import io.github.manusant.ss.rest.ItemValidationError;
+import io.github.manusant.ss.rest.ValidationError;
+import io.github.manusant.ss.serialization.Codec;
+import spark.Request;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Elements of a JSON array request body, parsed one at a time as they are consumed so only the current element is held
+ * in memory. The body limits of the operation are enforced while reading, and elements breaking the body schema of a
+ * validated operation or that can not be bound to the element type fail with an {@link ItemValidationError} locating
+ * them by index.
+ * <p>
+ * Failures surface from {@link #hasNext()} and {@link #next()} as an {@link UncheckedIOException} wrapping a
+ * {@link PayloadLimitException}, mapped to its error response by {@link StreamingTypedRoute}.
+ *
+ * @author manusant
+ */
+public final class BodyItems<T> implements Iterator<T>, AutoCloseable {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final InputStream in;
+    private final JsonParser parser;
+    private final Codec codec;
+    private final Type itemType;
+    private final BodySchemaValidator itemSchema;
+    private final BodyBuffer item = BodyBuffer.empty();
+    private int index = -1;
+    private boolean fetched;
+    private boolean finished;
+
+    private BodyItems(InputStream in, JsonParser parser, Codec codec, Type itemType, BodySchemaValidator itemSchema) {
+        this.in = in;
+        this.parser = parser;
+        this.codec = codec;
+        this.itemType = itemType;
+        this.itemSchema = itemSchema;
+    }
+
+    /**
+     * Starts reading the request body, which must be a JSON array unless it is empty.
+     *
+     * @throws PayloadLimitException if the body is too large, not JSON or not an array
+     */
+    static <T> BodyItems<T> open(Request request, RouteDescriptor descriptor) throws PayloadLimitException {
+        long maxBodySize = descriptor.getMaxBodySize();
+        if (maxBodySize > 0 && request.contentLength() > maxBodySize) {
+            throw new PayloadLimitException(413, format("Request body exceeds the maximum size of {0} bytes", String.valueOf(maxBodySize)));
+        }
+        Codec codec = RouteHelper.bodyCodec(request, descriptor);
+        if (codec.getContentType() != ContentType.APPLICATION_JSON) {
+            throw new PayloadLimitException(415, format("Content type ''{0}'' can not be streamed", request.contentType()));
+        }
+        InputStream in = null;
+        try {
+            in = new LimitedBodyStream(RouteHelper.bodyStream(request), maxBodySize, descriptor.getMaxNestingDepth());
+            JsonParser parser = FACTORY.createParser(in);
+            BodyItems<T> items = new BodyItems<>(in, parser, codec, descriptor.getBodyType(), descriptor.getBodySchema());
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                // Empty body, no elements
+                items.finished = true;
+            } else if (token != JsonToken.START_ARRAY) {
+                items.close();
+                throw new PayloadLimitException(400, "Request body must be a JSON array");
+            }
+            return items;
+        } catch (JsonProcessingException e) {
+            closeQuietly(in);
+            throw new PayloadLimitException(400, format("Malformed JSON: {0}", e.getOriginalMessage()));
+        } catch (PayloadLimitException e) {
+            closeQuietly(in);
+            throw e;
+        } catch (IOException e) {
+            closeQuietly(in);
+            PayloadLimitException limitException = PayloadLimitException.find(e);
+            if (limitException != null) {
+                throw limitException;
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the index of the element last returned by {@link #next()}, or -1 before the first one
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Reports the element last returned by {@link #next()} as invalid, for handlers answering with
+     * {@link ValidationError#badRequest}.
+     */
+    public ItemValidationError invalid(String message) {
+        return new ItemValidationError(index, "$[" + index + "]", "Item " + index + ": " + message);
+    }
+
+    /**
+     * @return the remaining elements as a sequential stream, closing the body when the stream is closed
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED), false).onClose(this::close);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!fetched && !finished) {
+            fetch();
+        }
+        return !finished;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+        index++;
+        try {
+            return codec.read(item.asInputStream(), itemType);
+        } catch (IOException | RuntimeException e) {
+            String message = e instanceof JsonProcessingException ? ((JsonProcessingException) e).getOriginalMessage() : e.getMessage();
+            throw failure(new SchemaViolationException(new ItemValidationError(index, "$[" + index + "]",
+                    format("Item {0} can not be read: {1}", index, message))));
+        }
+    }
+
+    /**
+     * Copies the next element into the item buffer, validating it against the element schema.
+     */
+    private void fetch() {
+        try {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.END_ARRAY) {
+                finished = true;
+                if (parser.nextToken() != null) {
+                    throw failure(new PayloadLimitException(400, "Unexpected content after the request body"));
+                }
+                return;
+            }
+            if (token == null) {
+                throw failure(new PayloadLimitException(400, "Malformed JSON: unexpected end of the request body"));
+            }
+            item.reset();
+            try (JsonGenerator generator = FACTORY.createGenerator(item)) {
+                generator.copyCurrentStructure(parser);
+            }
+            if (itemSchema != null) {
+                ValidationError violation = itemSchema.validate(item.bytes(), 0, item.size());
+                if (violation != null) {
+                    throw failure(new SchemaViolationException(ItemValidationError.of(index + 1, violation)));
+                }
+            }
+            fetched = true;
+        } catch (JsonProcessingException e) {
+            throw failure(new PayloadLimitException(400, format("Malformed JSON: {0}", e.getOriginalMessage())));
+        } catch (IOException e) {
+            PayloadLimitException limitException = PayloadLimitException.find(e);
+            throw limitException != null ? failure(limitException) : new UncheckedIOException(e);
+        }
+    }
+
+    private UncheckedIOException failure(PayloadLimitException e) {
+        finished = true;
+        return new UncheckedIOException(e);
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        try {
+            parser.close();
+        } catch (IOException e) {
+            // Body is abandoned either way
+        }
+        closeQuietly(in);
+    }
+
+    private static void closeQuietly(InputStream in) {
+        if (in != null) {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Body is abandoned either way
+            }
+        }
+    }
+}
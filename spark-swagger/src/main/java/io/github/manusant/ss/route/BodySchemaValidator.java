@@ -0,0 +1,423 @@
+package io.github.manusant.ss.route;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.factory.DefinitionsFactory;
+import io.github.manusant.ss.model.ArrayModel;
+import io.github.manusant.ss.model.Model;
+import io.github.manusant.ss.model.ModelImpl;
+import io.github.manusant.ss.model.RefModel;
+import io.github.manusant.ss.model.properties.*;
+import io.github.manusant.ss.rest.ValidationError;
+
+import java.io.IOException;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Request body schema compiled once per operation from the models the spec is generated with. Bodies are checked in a
+ * single streaming pass over their JSON tokens, without building a tree, stopping at the first violation.
+ *
+ * @author manusant
+ */
+public final class BodySchemaValidator {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private final Node root;
+
+    private BodySchemaValidator(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles the schema of the operation body, from the body model when one is declared and otherwise from the body
+     * type.
+     *
+     * @return the validator, or null if the body is not a JSON object or array
+     */
+    public static BodySchemaValidator compile(MethodDescriptor operation, Type bodyType) {
+        if (operation != null && operation.getBody() != null && operation.getBody().getModel() != null) {
+            return new BodySchemaValidator(new Compiler(Collections.emptyMap()).model(operation.getBody().getModel()));
+        }
+        boolean collection = false;
+        Type itemType = bodyType;
+        if (bodyType instanceof ParameterizedType && Collection.class.isAssignableFrom((Class<?>) ((ParameterizedType) bodyType).getRawType())) {
+            collection = true;
+            itemType = ((ParameterizedType) bodyType).getActualTypeArguments()[0];
+        } else if (bodyType instanceof GenericArrayType) {
+            collection = true;
+            itemType = ((GenericArrayType) bodyType).getGenericComponentType();
+        } else if (bodyType instanceof Class && ((Class<?>) bodyType).isArray()) {
+            collection = true;
+            itemType = ((Class<?>) bodyType).getComponentType();
+        }
+        if (!(itemType instanceof Class) || !isObject((Class<?>) itemType)) {
+            return null;
+        }
+        Class<?> type = (Class<?>) itemType;
+        Map<String, Model> definitions = DefinitionsFactory.create(type);
+        Compiler compiler = new Compiler(definitions);
+        Node node = compiler.model(definitions.get(type.getSimpleName()));
+        return new BodySchemaValidator(collection ? new ArrayNode(node, null, null) : node);
+    }
+
+    /**
+     * @return the first violation found, or null if the body matches the schema
+     */
+    public ValidationError validate(byte[] body, int offset, int length) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(body, offset, length)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) {
+                return null;
+            }
+            Violation violation = root.validate(parser, token);
+            if (violation == null && parser.nextToken() != null) {
+                violation = new Violation("unexpected content after the body");
+            }
+            return violation != null ? violation.toError() : null;
+        } catch (JsonProcessingException e) {
+            return new ValidationError("$", "body", "Malformed JSON: " + e.getOriginalMessage());
+        }
+    }
+
+    private static boolean isObject(Class<?> type) {
+        return !type.isPrimitive() && !type.isEnum() && !type.getName().startsWith("java.");
+    }
+
+    private static final class Violation {
+
+        private final String message;
+        private final Deque<String> path = new ArrayDeque<>();
+
+        private Violation(String message) {
+            this.message = message;
+        }
+
+        private Violation at(String segment) {
+            path.addFirst(segment);
+            return this;
+        }
+
+        private ValidationError toError() {
+            StringBuilder location = new StringBuilder("$");
+            for (String segment : path) {
+                location.append(segment);
+            }
+            return new ValidationError(location.toString(), "body", "Body property '" + location + "' " + message);
+        }
+    }
+
+    private abstract static class Node {
+
+        /**
+         * Consumes the value starting at the current token.
+         */
+        abstract Violation validate(JsonParser parser, JsonToken token) throws IOException;
+
+        static Violation expected(JsonParser parser, JsonToken token, String type) throws IOException {
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                parser.skipChildren();
+            }
+            return new Violation("must be " + type);
+        }
+    }
+
+    private static final class AnyNode extends Node {
+
+        private static final AnyNode INSTANCE = new AnyNode();
+
+        @Override
+        Violation validate(JsonParser parser, JsonToken token) throws IOException {
+            parser.skipChildren();
+            return null;
+        }
+    }
+
+    private static final class RefNode extends Node {
+
+        private Node target = AnyNode.INSTANCE;
+
+        @Override
+        Violation validate(JsonParser parser, JsonToken token) throws IOException {
+            return target.validate(parser, token);
+        }
+    }
+
+    private static final class ObjectNode extends Node {
+
+        private final Map<String, Node> properties;
+        private final Map<String, Integer> required;
+
+        private ObjectNode(Map<String, Node> properties, Map<String, Integer> required) {
+            this.properties = properties;
+            this.required = required;
+        }
+
+        @Override
+        Violation validate(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_OBJECT) {
+                return expected(parser, token, "an object");
+            }
+            boolean[] present = required.isEmpty() ? null : new boolean[required.size()];
+            for (JsonToken next = parser.nextToken(); next == JsonToken.FIELD_NAME; next = parser.nextToken()) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (value == JsonToken.VALUE_NULL) {
+                    // Same as absent
+                    continue;
+                }
+                Node property = properties.get(name);
+                if (property == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                Violation violation = property.validate(parser, value);
+                if (violation != null) {
+                    return violation.at("." + name);
+                }
+                if (present != null) {
+                    Integer index = required.get(name);
+                    if (index != null) {
+                        present[index] = true;
+                    }
+                }
+            }
+            if (present != null) {
+                for (Map.Entry<String, Integer> entry : required.entrySet()) {
+                    if (!present[entry.getValue()]) {
+                        return new Violation("is required").at("." + entry.getKey());
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class ArrayNode extends Node {
+
+        private final Node items;
+        private final Integer minItems;
+        private final Integer maxItems;
+
+        private ArrayNode(Node items, Integer minItems, Integer maxItems) {
+            this.items = items;
+            this.minItems = minItems;
+            this.maxItems = maxItems;
+        }
+
+        @Override
+        Violation validate(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.START_ARRAY) {
+                return expected(parser, token, "an array");
+            }
+            int count = 0;
+            for (JsonToken next = parser.nextToken(); next != JsonToken.END_ARRAY; next = parser.nextToken()) {
+                if (next != JsonToken.VALUE_NULL) {
+                    Violation violation = items.validate(parser, next);
+                    if (violation != null) {
+                        return violation.at("[" + count + "]");
+                    }
+                }
+                count++;
+            }
+            if (minItems != null && count < minItems) {
+                return new Violation("must have at least " + minItems + " items");
+            }
+            if (maxItems != null && count > maxItems) {
+                return new Violation("must have at most " + maxItems + " items");
+            }
+            return null;
+        }
+    }
+
+    private static final class StringNode extends Node {
+
+        private final Set<String> values;
+        private final Integer minLength;
+        private final Integer maxLength;
+        private final Pattern pattern;
+        private final boolean uuid;
+        private final boolean constrained;
+
+        private StringNode(List<String> values, Integer minLength, Integer maxLength, String pattern, boolean uuid) {
+            this.values = values != null && !values.isEmpty() ? new LinkedHashSet<>(values) : null;
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+            this.pattern = pattern != null ? Pattern.compile(pattern) : null;
+            this.uuid = uuid;
+            this.constrained = this.values != null || minLength != null || maxLength != null || this.pattern != null || uuid;
+        }
+
+        @Override
+        Violation validate(JsonParser parser, JsonToken token) throws IOException {
+            if (token != JsonToken.VALUE_STRING) {
+                return expected(parser, token, "a string");
+            }
+            if (!constrained) {
+                return null;
+            }
+            String value = parser.getText();
+            if (values != null && !values.contains(value)) {
+                return new Violation("must be one of " + values);
+            }
+            if (minLength != null && value.length() < minLength) {
+                return new Violation("must have at least " + minLength + " characters");
+            }
+            if (maxLength != null && value.length() > maxLength) {
+                return new Violation("must have at most " + maxLength + " characters");
+            }
+            if (uuid && !RequestValidator.isUuid(value, 0, value.length())) {
+                return new Violation("must be a UUID");
+            }
+            if (pattern != null && !pattern.matcher(value).matches()) {
+                return new Violation("must match " + pattern.pattern());
+            }
+            return null;
+        }
+    }
+
+    private static final class NumberNode extends Node {
+
+        private final boolean integral;
+        private final boolean int32;
+        private final BigDecimal minimum;
+        private final BigDecimal maximum;
+        private final boolean exclusiveMinimum;
+        private final boolean exclusiveMaximum;
+
+        private NumberNode(AbstractNumericProperty property) {
+            this.integral = property instanceof BaseIntegerProperty;
+            this.int32 = property instanceof IntegerProperty;
+            this.minimum = property.getMinimum();
+            this.maximum = property.getMaximum();
+            this.exclusiveMinimum = Boolean.TRUE.equals(property.getExclusiveMinimum());
+            this.exclusiveMaximum = Boolean.TRUE.equals(property.getExclusiveMaximum());
+        }
+
+        @Override
+        Violation validate(JsonParser parser, JsonToken token) throws IOException {
+            if (token == JsonToken.VALUE_NUMBER_INT) {
+                JsonParser.NumberType type = parser.getNumberType();
+                if (integral && (type == JsonParser.NumberType.BIG_INTEGER || int32 && type == JsonParser.NumberType.LONG)) {
+                    return new Violation("must be a " + (int32 ? "32" : "64") + " bit integer");
+                }
+            } else if (token != JsonToken.VALUE_NUMBER_FLOAT || integral) {
+                return expected(parser, token, integral ? "an integer" : "a number");
+            }
+            if (minimum != null || maximum != null) {
+                double value = parser.getDoubleValue();
+                if (minimum != null) {
+                    int compare = Double.compare(value, minimum.doubleValue());
+                    if (compare < 0 || exclusiveMinimum && compare == 0) {
+                        return new Violation("must be " + (exclusiveMinimum ? "greater than " : "at least ") + minimum.toPlainString());
+                    }
+                }
+                if (maximum != null) {
+                    int compare = Double.compare(value, maximum.doubleValue());
+                    if (compare > 0 || exclusiveMaximum && compare == 0) {
+                        return new Violation("must be " + (exclusiveMaximum ? "less than " : "at most ") + maximum.toPlainString());
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final class BooleanNode extends Node {
+
+        private static final BooleanNode INSTANCE = new BooleanNode();
+
+        @Override
+        Violation validate(JsonParser parser, JsonToken token) throws IOException {
+            return token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE ? null : expected(parser, token, "a boolean");
+        }
+    }
+
+    /**
+     * Builds the node tree, sharing one node per definition so recursive models terminate.
+     */
+    private static final class Compiler {
+
+        private final Map<String, Model> definitions;
+        private final Map<String, RefNode> references = new HashMap<>();
+
+        private Compiler(Map<String, Model> definitions) {
+            this.definitions = definitions;
+        }
+
+        private Node model(Model model) {
+            if (model instanceof ArrayModel) {
+                ArrayModel array = (ArrayModel) model;
+                return new ArrayNode(property(array.getItems()), array.getMinItems(), array.getMaxItems());
+            } else if (model instanceof RefModel) {
+                return reference(((RefModel) model).getSimpleRef());
+            } else if (model instanceof ModelImpl) {
+                return object(model.getProperties());
+            }
+            return AnyNode.INSTANCE;
+        }
+
+        private Node object(Map<String, Property> properties) {
+            if (properties == null || properties.isEmpty()) {
+                return new ObjectNode(Collections.emptyMap(), Collections.emptyMap());
+            }
+            Map<String, Node> nodes = new HashMap<>();
+            Map<String, Integer> required = new LinkedHashMap<>();
+            for (Map.Entry<String, Property> entry : properties.entrySet()) {
+                nodes.put(entry.getKey(), property(entry.getValue()));
+                if (entry.getValue().getRequired()) {
+                    required.put(entry.getKey(), required.size());
+                }
+            }
+            return new ObjectNode(nodes, required);
+        }
+
+        private Node property(Property property) {
+            if (property == null) {
+                return AnyNode.INSTANCE;
+            } else if (property instanceof RefProperty) {
+                return reference(((RefProperty) property).getSimpleRef());
+            } else if (property instanceof ArrayProperty) {
+                ArrayProperty array = (ArrayProperty) property;
+                return new ArrayNode(property(array.getItems()), array.getMinItems(), array.getMaxItems());
+            } else if (property instanceof ObjectProperty) {
+                return object(((ObjectProperty) property).getProperties());
+            } else if (property instanceof AbstractNumericProperty) {
+                return new NumberNode((AbstractNumericProperty) property);
+            } else if (property instanceof BooleanProperty) {
+                return BooleanNode.INSTANCE;
+            } else if (property instanceof ByteArrayProperty) {
+                // Base64 text or an array of bytes, depending on the serialization engine
+                return AnyNode.INSTANCE;
+            } else if (property instanceof StringProperty) {
+                StringProperty string = (StringProperty) property;
+                return new StringNode(string.getEnum(), string.getMinLength(), string.getMaxLength(), string.getPattern(), false);
+            } else if (property instanceof UUIDProperty) {
+                return new StringNode(null, null, null, null, true);
+            }
+            // Maps, dates, files and untyped values are left to the serialization engine
+            return AnyNode.INSTANCE;
+        }
+
+        private Node reference(String name) {
+            RefNode reference = references.get(name);
+            if (reference == null) {
+                reference = new RefNode();
+                references.put(name, reference);
+                Model model = definitions.get(name);
+                if (model != null) {
+                    reference.target = model(model);
+                }
+            }
+            return reference;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.exception.BindingException;
+import io.github.manusant.ss.jfr.Events;
+import io.github.manusant.ss.jfr.RouteRecording;
+import io.github.manusant.ss.rest.ValidationError;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Route receiving the request parameters already bound to a parameters object.
+ *
+ * @author manusant
+ */
+public abstract class BoundRoute<P> implements DescribedRoute {
+
+    private volatile RouteDescriptor descriptor;
+
+    public abstract Object onRequest(P params, Request request, Response response);
+
+    @Override
+    public void describe(MethodDescriptor methodDescriptor, OperationBinding binding) {
+        this.descriptor = RouteDescriptor.bind(getClass(), methodDescriptor, binding);
+    }
+
+    protected RouteDescriptor descriptor() {
+        RouteDescriptor current = descriptor;
+        if (current == null) {
+            current = RouteDescriptor.of(getClass());
+            descriptor = current;
+        }
+        return current;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) {
+        RouteDescriptor routeDescriptor = descriptor();
+        Object notModified = RouteHelper.checkNotModified(request, response, this, routeDescriptor);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        P params;
+        try {
+            params = routeDescriptor.bindParams(request);
+        } catch (BindingException e) {
+            return RouteHelper.prepareResponse(request, response, ValidationError.badRequest(response, e.getError()), routeDescriptor);
+        }
+
+        long start = System.nanoTime();
+        ResourceUsage.Sample sample = RouteHelper.handlerSample(routeDescriptor);
+        RouteRecording event = Events.beginRoute();
+        Object result = onRequest(params, request, response);
+        RouteHelper.handlerTime(routeDescriptor, start, sample);
+        RouteHelper.handlerEvent(request, routeDescriptor, event);
+        if (result != null) {
+            return RouteHelper.prepareResponse(request, response, result, routeDescriptor);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.exception.BindingException;
+import io.github.manusant.ss.exception.PayloadLimitException;
+import io.github.manusant.ss.jfr.Events;
+import io.github.manusant.ss.jfr.RouteRecording;
+import io.github.manusant.ss.rest.ValidationError;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Typed route receiving the request parameters already bound to a parameters object.
+ *
+ * @author manusant
+ */
+public abstract class BoundTypedRoute<P, T> implements DescribedRoute {
+
+    private volatile RouteDescriptor descriptor;
+
+    public abstract Object onRequest(P params, T body, Request request, Response response);
+
+    @Override
+    public void describe(MethodDescriptor methodDescriptor, OperationBinding binding) {
+        this.descriptor = RouteDescriptor.bind(getClass(), methodDescriptor, binding);
+    }
+
+    protected RouteDescriptor descriptor() {
+        RouteDescriptor current = descriptor;
+        if (current == null) {
+            current = RouteDescriptor.of(getClass());
+            descriptor = current;
+        }
+        return current;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) {
+        RouteDescriptor routeDescriptor = descriptor();
+        Object notModified = RouteHelper.checkNotModified(request, response, this, routeDescriptor);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        P params;
+        T requestObject;
+        try {
+            params = routeDescriptor.bindParams(request);
+            requestObject = RouteHelper.readBody(request, routeDescriptor);
+        } catch (BindingException e) {
+            return RouteHelper.prepareResponse(request, response, ValidationError.badRequest(response, e.getError()), routeDescriptor);
+        } catch (PayloadLimitException e) {
+            return RouteHelper.prepareResponse(request, response, RouteHelper.rejection(response, e), routeDescriptor);
+        }
+
+        long start = System.nanoTime();
+        ResourceUsage.Sample sample = RouteHelper.handlerSample(routeDescriptor);
+        RouteRecording event = Events.beginRoute();
+        Object result = onRequest(params, requestObject, request, response);
+        RouteHelper.handlerTime(routeDescriptor, start, sample);
+        RouteHelper.handlerEvent(request, routeDescriptor, event);
+        return RouteHelper.prepareResponse(request, response, result, routeDescriptor);
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.manusant.ss.route;
+
+/**
+ * Per-thread pool of byte buffers reused across requests served by the same thread.
+ *
+ * @author manusant
+ */
+public final class BufferPool {
+
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
+    private BufferPool() {
+    }
+
+    /**
+     * Takes a buffer of at least the given size. The buffer is owned by the caller until it is released.
+     */
+    public static byte[] acquire(int minSize) {
+        byte[] buffer = BUFFERS.get();
+        if (buffer != null && buffer.length >= minSize) {
+            BUFFERS.remove();
+            return buffer;
+        }
+        return new byte[minSize];
+    }
+
+    public static void release(byte[] buffer) {
+        if (buffer != null && buffer.length <= MAX_POOLED_SIZE) {
+            byte[] pooled = BUFFERS.get();
+            if (pooled == null || pooled.length < buffer.length) {
+                BUFFERS.set(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.manusant.ss.route;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Lock-free semaphore bounding how many requests of an operation are handled at once.
+ *
+ * @author manusant
+ */
+public final class Bulkhead {
+
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final int maxConcurrency;
+    private final long queueTimeoutNanos;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public Bulkhead(int maxConcurrency, long queueTimeoutMillis) {
+        this.maxConcurrency = maxConcurrency;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Takes a slot, waiting up to the queue timeout for one to be released.
+     *
+     * @return false if the operation stayed saturated
+     */
+    public boolean acquire() {
+        if (tryAcquire()) {
+            return true;
+        }
+        if (queueTimeoutNanos <= 0) {
+            return false;
+        }
+        long deadline = System.nanoTime() + queueTimeoutNanos;
+        long backoff = MIN_BACKOFF_NANOS;
+        for (long remaining = queueTimeoutNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(Math.min(backoff, remaining));
+            if (tryAcquire()) {
+                return true;
+            }
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            backoff = Math.min(backoff << 1, MAX_BACKOFF_NANOS);
+        }
+        return false;
+    }
+
+    public boolean tryAcquire() {
+        for (int current = inFlight.get(); current < maxConcurrency; current = inFlight.get()) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return seconds a rejected client should wait before retrying
+     */
+    public long retryAfterSeconds() {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(queueTimeoutNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import spark.Request;
+import spark.Response;
+
+import static io.github.manusant.ss.rest.RestResponse.serviceUnavailable;
+import static java.text.MessageFormat.format;
+
+/**
+ * Rejects requests of a saturated operation with 503 instead of letting them take more server threads.
+ *
+ * @author manusant
+ */
+public class BulkheadRoute implements spark.Route {
+
+    private final spark.Route delegate;
+    private final Bulkhead bulkhead;
+    private final RouteDescriptor descriptor;
+
+    public BulkheadRoute(spark.Route delegate, MethodDescriptor operation, OperationBinding binding) {
+        this.delegate = delegate;
+        this.bulkhead = new Bulkhead(operation.getMaxConcurrency(), operation.getQueueTimeout());
+        this.descriptor = RouteDescriptor.unbound(operation, binding);
+    }
+
+    public spark.Route getDelegate() {
+        return delegate;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        if (!bulkhead.acquire()) {
+            response.header("Retry-After", String.valueOf(bulkhead.retryAfterSeconds()));
+            Object rejection = serviceUnavailable(response, format("Operation is handling {0} requests already", String.valueOf(bulkhead.getMaxConcurrency())));
+            return RouteHelper.prepareResponse(request, response, rejection, descriptor);
+        }
+        try {
+            return delegate.handle(request, response);
+        } finally {
+            // Detached requests hold their slot until their response completes
+            if (!AsyncExchange.whenComplete(request, bulkhead::release)) {
+                bulkhead.release();
+            }
+        }
+    }
+}
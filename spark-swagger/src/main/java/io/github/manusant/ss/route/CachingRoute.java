@@ -0,0 +1,134 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.route.ResponseCache.CachedResponse;
+import spark.Request;
+import spark.RequestResponseFactory;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Answers requests with the response cached for their method, path and key parameters/headers, skipping the handler
+ * and the serialization until the entry expires. Only 200 responses are cached.
+ *
+ * @author manusant
+ */
+public class CachingRoute implements spark.Route {
+
+    private static final String PENDING = CachingRoute.class.getName();
+
+    private final spark.Route delegate;
+    private final ResponseCache cache;
+    private final ResponseKey key;
+    private final String cacheControl;
+
+    public CachingRoute(spark.Route delegate, ResponseCache cache, MethodDescriptor operation) {
+        this.delegate = delegate;
+        this.cache = cache;
+        this.key = new ResponseKey(operation);
+        this.cacheControl = (key.isPrivate() ? "private" : "public") + ", max-age=";
+    }
+
+    public spark.Route getDelegate() {
+        return delegate;
+    }
+
+    public ResponseCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Answers the request from the cache, remembering the miss for the handler that loads the response.
+     *
+     * @return the cached body, or null if the handler has to run
+     */
+    public Object lookup(Request request, Response response) throws IOException {
+        String requestKey = key.of(request);
+        long generation = cache.generation();
+        CachedResponse cached = cache.get(requestKey);
+        if (cached != null) {
+            return replay(request, response, cached);
+        }
+        request.raw().setAttribute(PENDING, new Pending(requestKey, generation));
+        return null;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        Object pending = request.raw().getAttribute(PENDING);
+        if (pending == null) {
+            Object cached = lookup(request, response);
+            if (cached != null) {
+                return cached;
+            }
+            pending = request.raw().getAttribute(PENDING);
+        }
+        request.raw().removeAttribute(PENDING);
+        return load(request, response, (Pending) pending);
+    }
+
+    private Object load(Request request, Response response, Pending pending) throws Exception {
+        HttpServletResponse raw = response.raw();
+        String ownCacheControl = null;
+        if (!raw.containsHeader("Cache-Control")) {
+            ownCacheControl = cacheControl + cache.getTtl() / 1000;
+            raw.setHeader("Cache-Control", ownCacheControl);
+        }
+        CapturingResponse capturing = new CapturingResponse(raw, (int) Math.min(Integer.MAX_VALUE, cache.getMaxEntryBytes()));
+        boolean cached = false;
+        try {
+            Object body = delegate.handle(request, RequestResponseFactory.create(capturing));
+            byte[] bytes = raw.getStatus() == 200 ? capturing.bodyOf(body) : null;
+            if (bytes == null) {
+                return body;
+            }
+            String handlerCacheControl = raw.getHeader("Cache-Control");
+            cache.put(pending.key, cache.newEntry(request.uri(), bytes, CapturingResponse.headersOf(raw),
+                    handlerCacheControl != null && !handlerCacheControl.equals(ownCacheControl) ? handlerCacheControl : null), pending.generation);
+            cached = true;
+            // Already encoded for the cache, so Spark does not encode the string again
+            return body instanceof String ? bytes : body;
+        } finally {
+            if (!cached && ownCacheControl != null && !raw.isCommitted()) {
+                // Errors and responses that can not be cached are not cached by clients either
+                raw.setHeader("Cache-Control", null);
+            }
+        }
+    }
+
+    private Object replay(Request request, Response response, CachedResponse cached) throws IOException {
+        HttpServletResponse raw = response.raw();
+        long now = System.nanoTime();
+        raw.setStatus(200);
+        CapturingResponse.replayHeaders(raw, cached.headers);
+        raw.setHeader("Cache-Control", cached.cacheControl != null ? cached.cacheControl : cacheControl + cached.maxAge(now));
+        raw.setHeader("Age", String.valueOf(cached.age(now)));
+
+        String etag = CapturingResponse.header(cached.headers, "ETag");
+        String ifNoneMatch = request.headers("If-None-Match");
+        if (etag != null && ifNoneMatch != null && isConditional(request) && ETags.matches(ifNoneMatch, etag)) {
+            raw.setStatus(304);
+            raw.setContentLength(-1);
+            return "";
+        }
+        return CapturingResponse.replayBody(raw, cached.headers, cached.body);
+    }
+
+    private static boolean isConditional(Request request) {
+        String method = request.requestMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    private static final class Pending {
+
+        private final String key;
+        private final long generation;
+
+        private Pending(String key, long generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package io.github.manusant.ss.route;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps a copy of what the handler writes to the output stream, so the serialized response can be sent again.
+ *
+ * @author manusant
+ */
+final class CapturingResponse extends HttpServletResponseWrapper {
+
+    private static final String[] REPLAYED_HEADERS = {"Content-Type", "Content-Encoding", "Content-Language", "ETag", "Last-Modified", "Location", "Vary"};
+
+    private final int limit;
+    private ByteArrayOutputStream captured;
+    private ServletOutputStream out;
+    private boolean unavailable;
+
+    /**
+     * @param limit largest body kept, larger bodies are not captured
+     */
+    CapturingResponse(HttpServletResponse response, int limit) {
+        super(response);
+        this.limit = limit;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (out == null) {
+            out = new CapturingOutputStream(super.getOutputStream());
+        }
+        return out;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        unavailable = true;
+        return super.getWriter();
+    }
+
+    /**
+     * @return the body sent to the client for the value the handler returned, or null if it was not captured
+     */
+    byte[] bodyOf(Object body) {
+        if (unavailable) {
+            return null;
+        }
+        boolean written = captured != null && captured.size() > 0;
+        if (body instanceof String) {
+            String text = (String) body;
+            if (written) {
+                return text.isEmpty() ? captured.toByteArray() : null;
+            }
+            return text.getBytes(StandardCharsets.UTF_8);
+        }
+        if (body instanceof byte[]) {
+            byte[] bytes = (byte[]) body;
+            if (written) {
+                return bytes.length == 0 ? captured.toByteArray() : null;
+            }
+            return bytes;
+        }
+        return null;
+    }
+
+    /**
+     * @return name/value pairs of the response headers describing the body
+     */
+    static String[] headersOf(HttpServletResponse raw) {
+        List<String> headers = new ArrayList<>(8);
+        for (String name : REPLAYED_HEADERS) {
+            for (String value : raw.getHeaders(name)) {
+                headers.add(name);
+                headers.add(value);
+            }
+        }
+        return headers.toArray(new String[0]);
+    }
+
+    static void replayHeaders(HttpServletResponse raw, String[] headers) {
+        for (int i = 0; i < headers.length; i += 2) {
+            if (!headers[i].equals("Vary")) {
+                raw.setHeader(headers[i], headers[i + 1]);
+            } else if (!raw.getHeaders("Vary").contains(headers[i + 1])) {
+                raw.addHeader("Vary", headers[i + 1]);
+            }
+        }
+    }
+
+    /**
+     * @return the body for Spark to write, empty if it was written already
+     */
+    static Object replayBody(HttpServletResponse raw, String[] headers, byte[] body) throws IOException {
+        if (header(headers, "Content-Encoding") == null) {
+            return body;
+        }
+        // Written here, Spark would compress the body a second time once it sees the Content-Encoding header
+        raw.setContentLength(body.length);
+        raw.getOutputStream().write(body);
+        return "";
+    }
+
+    static String header(String[] headers, String name) {
+        for (int i = 0; i < headers.length; i += 2) {
+            if (headers[i].equalsIgnoreCase(name)) {
+                return headers[i + 1];
+            }
+        }
+        return null;
+    }
+
+    private void capture(byte[] b, int off, int len) {
+        if (unavailable) {
+            return;
+        }
+        if (captured == null) {
+            captured = new ByteArrayOutputStream(Math.min(limit, Math.max(len, 1024)));
+        }
+        if (captured.size() + (long) len > limit) {
+            unavailable = true;
+            captured = null;
+            return;
+        }
+        captured.write(b, off, len);
+    }
+
+    private final class CapturingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream out;
+
+        private CapturingOutputStream(ServletOutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            capture(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+}
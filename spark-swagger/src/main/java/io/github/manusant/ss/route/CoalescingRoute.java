@@ -0,0 +1,74 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.route.SingleFlight.SharedResponse;
+import spark.Request;
+import spark.RequestResponseFactory;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs the handler once for identical concurrent requests, answering the ones arriving while it runs with the same
+ * serialized response. Only 200 responses are shared.
+ *
+ * @author manusant
+ */
+public class CoalescingRoute implements spark.Route {
+
+    private static final int MAX_SHARED_BODY_SIZE = 8 * 1024 * 1024;
+
+    private final spark.Route delegate;
+    private final SingleFlight singleFlight;
+    private final ResponseKey key;
+
+    public CoalescingRoute(spark.Route delegate, SingleFlight singleFlight, MethodDescriptor operation) {
+        this.delegate = delegate;
+        this.singleFlight = singleFlight;
+        this.key = new ResponseKey(operation);
+    }
+
+    public spark.Route getDelegate() {
+        return delegate;
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        String requestKey = key.of(request);
+        CompletableFuture<SharedResponse> flight = new CompletableFuture<>();
+        CompletableFuture<SharedResponse> running = singleFlight.join(requestKey, flight);
+        if (running != null) {
+            SharedResponse shared = singleFlight.await(running);
+            return shared != null ? replay(response, shared) : delegate.handle(request, response);
+        }
+
+        HttpServletResponse raw = response.raw();
+        SharedResponse shared = null;
+        try {
+            CapturingResponse capturing = new CapturingResponse(raw, MAX_SHARED_BODY_SIZE);
+            Object body = delegate.handle(request, RequestResponseFactory.create(capturing));
+            // Other statuses may depend on more than the key, e.g. a 304 on If-None-Match
+            byte[] bytes = raw.getStatus() == 200 ? capturing.bodyOf(body) : null;
+            if (bytes == null) {
+                return body;
+            }
+            shared = new SharedResponse(raw.getStatus(), CapturingResponse.headersOf(raw), bytes);
+            // Already encoded for the waiting requests, so Spark does not encode the string again
+            return body instanceof String ? bytes : body;
+        } finally {
+            singleFlight.complete(requestKey, flight, shared);
+        }
+    }
+
+    private static Object replay(Response response, SharedResponse shared) throws Exception {
+        HttpServletResponse raw = response.raw();
+        raw.setStatus(shared.status);
+        CapturingResponse.replayHeaders(raw, shared.headers);
+        return CapturingResponse.replayBody(raw, shared.headers, shared.body);
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.model.ContentEncoding;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Holds back the first bytes of a streamed body until it reaches the compression threshold. Bodies that never reach it
+ * are written as they are, larger ones are compressed from the start.
+ *
+ * @author manusant
+ */
+public class CompressingStream extends OutputStream {
+
+    private final HttpServletResponse response;
+    private final OutputStream target;
+    private final ContentEncoding encoding;
+    // The pooled buffer may be larger, the configured threshold still decides when compression starts
+    private final int threshold;
+    private byte[] pending;
+    private int count;
+    private DeflatingStream out;
+    private boolean closed;
+
+    public CompressingStream(HttpServletResponse response, OutputStream target, ContentEncoding encoding, int threshold) {
+        this.response = response;
+        this.target = target;
+        this.encoding = encoding;
+        this.threshold = Math.max(threshold, 1);
+        this.pending = BufferPool.acquire(this.threshold);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (out == null) {
+            if (count + length < threshold) {
+                System.arraycopy(bytes, offset, pending, count, length);
+                count += length;
+                return;
+            }
+            start();
+        }
+        out.write(bytes, offset, length);
+    }
+
+    private void start() throws IOException {
+        // Target has not written anything to the client yet, so the header still goes out
+        response.setHeader("Content-Encoding", encoding.getValue());
+        out = new DeflatingStream(target, encoding);
+        out.write(pending, 0, count);
+        release();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            out.flush();
+        }
+    }
+
+    /**
+     * Starts compressing even if the threshold was not reached yet and flushes what was compressed so far, so the client
+     * can decompress everything written up to now.
+     */
+    public void push() throws IOException {
+        if (out == null) {
+            start();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (out != null) {
+                out.close();
+            } else {
+                target.write(pending, 0, count);
+            }
+            target.close();
+        } finally {
+            release();
+        }
+    }
+
+    private void release() {
+        if (pending != null) {
+            BufferPool.release(pending);
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.model.ContentEncoding;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Response compression negotiated from the request Accept-Encoding header.
+ *
+ * @author manusant
+ */
+public final class Compression {
+
+    private static final int MAX_CACHED_HEADERS = 64;
+    private static final Map<String, ContentEncoding> ENCODINGS = new ConcurrentHashMap<>();
+
+    private Compression() {
+    }
+
+    /**
+     * @return the preferred encoding accepted by the client, identity if the body should not be compressed
+     */
+    public static ContentEncoding negotiate(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return ContentEncoding.IDENTITY;
+        }
+        ContentEncoding encoding = ENCODINGS.get(acceptEncoding);
+        if (encoding == null) {
+            encoding = parse(acceptEncoding);
+            if (ENCODINGS.size() >= MAX_CACHED_HEADERS) {
+                ENCODINGS.clear();
+            }
+            ENCODINGS.put(acceptEncoding, encoding);
+        }
+        return encoding;
+    }
+
+    static ContentEncoding parse(String acceptEncoding) {
+        ContentEncoding best = ContentEncoding.IDENTITY;
+        float bestQuality = 0f;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].trim();
+            float quality = 1f;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0f;
+                    }
+                }
+            }
+            ContentEncoding encoding;
+            if (coding.equalsIgnoreCase("gzip") || coding.equals("*")) {
+                encoding = ContentEncoding.GZIP;
+            } else if (coding.equalsIgnoreCase("deflate")) {
+                encoding = ContentEncoding.DEFLATE;
+            } else {
+                continue;
+            }
+            // Gzip wins ties, deflate is implemented inconsistently by some clients
+            if (quality > bestQuality || (quality == bestQuality && quality > 0f && encoding == ContentEncoding.GZIP)) {
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Compresses a serialized body reaching the threshold and writes it to the client.
+     *
+     * @return an empty body when the compressed body was written, otherwise the body as it was
+     */
+    public static Object compress(Response response, Object body, ContentEncoding encoding, int threshold) {
+        HttpServletResponse raw = response.raw();
+        if (encoding == ContentEncoding.IDENTITY || raw.isCommitted() || raw.containsHeader("Content-Encoding")) {
+            return body;
+        }
+        byte[] bytes;
+        if (body instanceof String) {
+            bytes = ((String) body).getBytes(StandardCharsets.UTF_8);
+        } else if (body instanceof byte[]) {
+            bytes = (byte[]) body;
+        } else {
+            return body;
+        }
+        if (bytes.length < threshold) {
+            return body;
+        }
+        byte[] compressed = compress(bytes, encoding);
+        if (compressed.length >= bytes.length) {
+            return body;
+        }
+        try {
+            // Written here, Spark would gzip the body a second time once it sees the Content-Encoding header
+            raw.setHeader("Content-Encoding", encoding.getValue());
+            raw.setContentLength(compressed.length);
+            raw.getOutputStream().write(compressed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "";
+    }
+
+    public static byte[] compress(byte[] bytes, ContentEncoding encoding) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        try (DeflatingStream deflating = new DeflatingStream(out, encoding)) {
+            deflating.write(bytes, 0, bytes.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.manusant.ss.route;
+
+import spark.Request;
+
+/**
+ * Implemented by routes that can tell the version of a resource without building it. For operations with an ETag, a
+ * request the client is already up to date for is answered with 304 before the handler runs.
+ *
+ * @author manusant
+ */
+public interface ConditionalRoute {
+
+    /**
+     * @return a version of the resource addressed by the request, used as its ETag, or null if unknown
+     */
+    default Object version(Request request) {
+        return null;
+    }
+
+    /**
+     * @return the last modification time of the resource addressed by the request in epoch millis, or a negative
+     * value if unknown
+     */
+    default long lastModified(Request request) {
+        return -1;
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.model.ContentType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the response content type of an operation from the request Accept header.
+ *
+ * @author manusant
+ */
+public final class ContentNegotiation {
+
+    private static final int MAX_CACHED_HEADERS = 256;
+
+    // Clients send a handful of distinct Accept headers, so each one is parsed once
+    private static final Map<String, List<MediaRange>> RANGES = new ConcurrentHashMap<>();
+
+    private ContentNegotiation() {
+    }
+
+    /**
+     * @param accept   the Accept header, may be null
+     * @param produces content types of the operation, in order of preference
+     * @return the best produced type acceptable to the client, or the first produced type when none is acceptable
+     */
+    public static ContentType negotiate(String accept, ContentType[] produces) {
+        if (accept == null || accept.isEmpty()) {
+            return produces[0];
+        }
+        for (MediaRange range : ranges(accept)) {
+            for (ContentType contentType : produces) {
+                if (range.matches(contentType.getValue())) {
+                    return contentType;
+                }
+            }
+        }
+        return produces[0];
+    }
+
+    private static List<MediaRange> ranges(String accept) {
+        List<MediaRange> ranges = RANGES.get(accept);
+        if (ranges == null) {
+            ranges = parse(accept);
+            if (RANGES.size() >= MAX_CACHED_HEADERS) {
+                RANGES.clear();
+            }
+            RANGES.put(accept, ranges);
+        }
+        return ranges;
+    }
+
+    static List<MediaRange> parse(String accept) {
+        List<MediaRange> ranges = new ArrayList<>();
+        for (String part : accept.split(",")) {
+            String[] tokens = part.split(";");
+            String type = tokens[0].trim().toLowerCase();
+            if (type.isEmpty()) {
+                continue;
+            }
+            if (type.equals("*")) {
+                type = "*/*";
+            }
+            float quality = 1f;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        quality = Float.parseFloat(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0f;
+                    }
+                }
+            }
+            if (quality > 0f) {
+                ranges.add(new MediaRange(type, quality));
+            }
+        }
+        // Stable sort, so ranges of equal quality and specificity keep the client's order
+        Collections.sort(ranges);
+        return ranges;
+    }
+
+    static final class MediaRange implements Comparable<MediaRange> {
+
+        private final String type;
+        private final float quality;
+        private final int specificity;
+
+        MediaRange(String type, float quality) {
+            this.type = type;
+            this.quality = quality;
+            this.specificity = type.equals("*/*") ? 0 : type.endsWith("/*") ? 1 : 2;
+        }
+
+        boolean matches(String mediaType) {
+            switch (specificity) {
+                case 0:
+                    return true;
+                case 1:
+                    return mediaType.regionMatches(true, 0, type, 0, type.length() - 1);
+                default:
+                    return mediaType.equalsIgnoreCase(type);
+            }
+        }
+
+        @Override
+        public int compareTo(MediaRange other) {
+            int byQuality = Float.compare(other.quality, quality);
+            return byQuality != 0 ? byQuality : Integer.compare(other.specificity, specificity);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package io.github.manusant.ss.route;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Bounded pool of {@link Deflater}s, so compressed responses do not allocate (and later finalize) native zlib state per
+ * request.
+ *
+ * @author manusant
+ */
+public final class DeflaterPool {
+
+    private static final int LEVEL = 6;
+    private static final int MAX_POOLED = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    // Raw deflaters for gzip framing and zlib wrapped ones for the deflate encoding
+    private static final BlockingQueue<Deflater> RAW = new ArrayBlockingQueue<>(MAX_POOLED);
+    private static final BlockingQueue<Deflater> WRAPPED = new ArrayBlockingQueue<>(MAX_POOLED);
+
+    private DeflaterPool() {
+    }
+
+    public static Deflater acquire(boolean nowrap) {
+        Deflater deflater = (nowrap ? RAW : WRAPPED).poll();
+        return deflater != null ? deflater : new Deflater(LEVEL, nowrap);
+    }
+
+    public static void release(Deflater deflater, boolean nowrap) {
+        deflater.reset();
+        if (!(nowrap ? RAW : WRAPPED).offer(deflater)) {
+            deflater.end();
+        }
+    }
+}
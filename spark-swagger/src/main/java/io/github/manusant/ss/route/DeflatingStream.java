@@ -0,0 +1,102 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.model.ContentEncoding;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses everything written to it with a pooled {@link Deflater}, framed as gzip or zlib according to the content
+ * encoding. Closing it finishes the compressed body but leaves the target stream open.
+ *
+ * @author manusant
+ */
+public class DeflatingStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final OutputStream target;
+    private final boolean gzip;
+    private final CRC32 crc;
+    private Deflater deflater;
+    private byte[] buffer;
+
+    public DeflatingStream(OutputStream target, ContentEncoding encoding) throws IOException {
+        this.target = target;
+        this.gzip = encoding == ContentEncoding.GZIP;
+        this.crc = gzip ? new CRC32() : null;
+        this.deflater = DeflaterPool.acquire(gzip);
+        this.buffer = BufferPool.acquire(BUFFER_SIZE);
+        if (gzip) {
+            target.write(GZIP_HEADER);
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        if (gzip) {
+            crc.update(bytes, offset, length);
+        }
+        deflater.setInput(bytes, offset, length);
+        while (!deflater.needsInput()) {
+            deflate(Deflater.NO_FLUSH);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        deflate(Deflater.SYNC_FLUSH);
+        target.flush();
+    }
+
+    private void deflate(int flush) throws IOException {
+        int length;
+        while ((length = deflater.deflate(buffer, 0, buffer.length, flush)) > 0) {
+            target.write(buffer, 0, length);
+            if (length < buffer.length) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (deflater == null) {
+            return;
+        }
+        try {
+            deflater.finish();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                target.write(buffer, 0, length);
+            }
+            if (gzip) {
+                writeInt((int) crc.getValue());
+                writeInt((int) deflater.getBytesRead());
+            }
+        } finally {
+            DeflaterPool.release(deflater, gzip);
+            BufferPool.release(buffer);
+            deflater = null;
+            buffer = null;
+        }
+    }
+
+    private void writeInt(int value) throws IOException {
+        target.write(value & 0xff);
+        target.write((value >> 8) & 0xff);
+        target.write((value >> 16) & 0xff);
+        target.write((value >> 24) & 0xff);
+    }
+}
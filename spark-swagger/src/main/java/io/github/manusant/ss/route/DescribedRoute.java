@@ -0,0 +1,16 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+
+/**
+ * A route that can be told which documented operation it serves when it is bound by an ApiEndpoint.
+ *
+ * @author manusant
+ */
+public interface DescribedRoute extends spark.Route {
+
+    /**
+     * @param binding runtime state of the operation, such as its metrics
+     */
+    void describe(MethodDescriptor descriptor, OperationBinding binding);
+}
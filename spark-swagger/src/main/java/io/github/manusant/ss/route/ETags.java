@@ -0,0 +1,218 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.model.ContentEncoding;
+import io.github.manusant.ss.model.ContentType;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Strong ETags and conditional GET support. Body tags are an xxHash64 of the serialized bytes, which is far cheaper
+ * than a cryptographic digest and good enough to tell representations apart.
+ *
+ * @author manusant
+ */
+public final class ETags {
+
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+    private ETags() {
+    }
+
+    /**
+     * Answers 304 if the version supplied by the route matches the request preconditions, otherwise tags the
+     * response with it.
+     *
+     * @return an empty body if the client is up to date, otherwise null so the handler runs
+     */
+    public static Object checkNotModified(Request request, Response response, ConditionalRoute route, String representation) {
+        if (!isConditional(request)) {
+            return null;
+        }
+        HttpServletResponse raw = response.raw();
+        Object version = route.version(request);
+        String etag = null;
+        if (version != null) {
+            etag = quote(version + representation);
+            raw.setHeader("ETag", etag);
+        }
+        long lastModified = route.lastModified(request);
+        if (lastModified >= 0) {
+            raw.setDateHeader("Last-Modified", lastModified);
+        }
+
+        String ifNoneMatch = request.headers("If-None-Match");
+        if (ifNoneMatch != null) {
+            return etag != null && matches(ifNoneMatch, etag) ? notModified(response) : null;
+        }
+        if (lastModified >= 0) {
+            long ifModifiedSince = ifModifiedSince(request);
+            if (ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000) {
+                return notModified(response);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tags a successful response with a hash of its serialized body, unless the route already tagged it.
+     *
+     * @return an empty body if the client already has this body, otherwise the body as bytes
+     */
+    public static Object tag(Request request, Response response, Object body, String representation) {
+        HttpServletResponse raw = response.raw();
+        int status = raw.getStatus();
+        if (!isConditional(request) || status < 200 || status >= 300 || raw.containsHeader("ETag") || raw.isCommitted()) {
+            return body;
+        }
+        byte[] bytes;
+        if (body instanceof String) {
+            bytes = ((String) body).getBytes(StandardCharsets.UTF_8);
+        } else if (body instanceof byte[]) {
+            bytes = (byte[]) body;
+        } else {
+            return body;
+        }
+        String etag = quote(Long.toHexString(hash(bytes, 0, bytes.length)) + representation);
+        raw.setHeader("ETag", etag);
+        String ifNoneMatch = request.headers("If-None-Match");
+        if (ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+            return notModified(response);
+        }
+        return bytes;
+    }
+
+    /**
+     * @return a suffix telling apart the representations of the same resource, so each one gets its own ETag
+     */
+    public static String representation(ContentType negotiated, ContentEncoding encoding) {
+        if (negotiated == null) {
+            return encoding == ContentEncoding.IDENTITY ? "" : "-" + encoding.getValue();
+        }
+        String contentType = "-" + negotiated.name().toLowerCase();
+        return encoding == ContentEncoding.IDENTITY ? contentType : contentType + "-" + encoding.getValue();
+    }
+
+    /**
+     * Weak comparison, as required for If-None-Match.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        String opaqueTag = opaque(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaque(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static long hash(byte[] bytes, int offset, int length) {
+        int end = offset + length;
+        int i = offset;
+        long hash;
+        if (length >= 32) {
+            long v1 = PRIME1 + PRIME2;
+            long v2 = PRIME2;
+            long v3 = 0;
+            long v4 = -PRIME1;
+            for (int limit = end - 32; i <= limit; i += 32) {
+                v1 = round(v1, readLong(bytes, i));
+                v2 = round(v2, readLong(bytes, i + 8));
+                v3 = round(v3, readLong(bytes, i + 16));
+                v4 = round(v4, readLong(bytes, i + 24));
+            }
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += length;
+        for (; i <= end - 8; i += 8) {
+            hash ^= round(0, readLong(bytes, i));
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (i <= end - 4) {
+            hash ^= (readInt(bytes, i) & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+            i += 4;
+        }
+        for (; i < end; i++) {
+            hash ^= (bytes[i] & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    private static long round(long accumulator, long input) {
+        accumulator += input * PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME1;
+    }
+
+    private static long merge(long hash, long accumulator) {
+        hash ^= round(0, accumulator);
+        return hash * PRIME1 + PRIME4;
+    }
+
+    private static long readLong(byte[] bytes, int i) {
+        return (bytes[i] & 0xFFL)
+                | (bytes[i + 1] & 0xFFL) << 8
+                | (bytes[i + 2] & 0xFFL) << 16
+                | (bytes[i + 3] & 0xFFL) << 24
+                | (bytes[i + 4] & 0xFFL) << 32
+                | (bytes[i + 5] & 0xFFL) << 40
+                | (bytes[i + 6] & 0xFFL) << 48
+                | (bytes[i + 7] & 0xFFL) << 56;
+    }
+
+    private static int readInt(byte[] bytes, int i) {
+        return (bytes[i] & 0xFF)
+                | (bytes[i + 1] & 0xFF) << 8
+                | (bytes[i + 2] & 0xFF) << 16
+                | (bytes[i + 3] & 0xFF) << 24;
+    }
+
+    private static boolean isConditional(Request request) {
+        String method = request.requestMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    private static long ifModifiedSince(Request request) {
+        try {
+            return request.raw().getDateHeader("If-Modified-Since");
+        } catch (IllegalArgumentException e) {
+            // Malformed date, ignored as RFC 7232 requires
+            return -1;
+        }
+    }
+
+    private static Object notModified(Response response) {
+        HttpServletResponse raw = response.raw();
+        raw.setStatus(304);
+        raw.setContentLength(-1);
+        return "";
+    }
+
+    private static String quote(String value) {
+        return '"' + value + '"';
+    }
+
+    private static String opaque(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
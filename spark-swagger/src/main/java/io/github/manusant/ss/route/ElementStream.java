@@ -0,0 +1,285 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.conf.TypifyProvider;
+import io.github.manusant.ss.model.ContentEncoding;
+import io.github.manusant.ss.model.ContentType;
+import io.github.manusant.ss.serialization.Codec;
+import lombok.extern.slf4j.Slf4j;
+import spark.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.BaseStream;
+
+/**
+ * Writes the elements of a collection one at a time, as a JSON array or as newline delimited JSON, pushing what was
+ * written to the client periodically. Handlers may return an {@link Iterator}, a {@link java.util.stream.Stream} or a
+ * {@link Spliterator} so elements are produced while the response is written instead of being collected first.
+ *
+ * @author manusant
+ */
+@Slf4j
+final class ElementStream {
+
+    private static final long PUSH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private ElementStream() {
+    }
+
+    /**
+     * @return true if the elements of the result are produced as they are consumed
+     */
+    static boolean isLazy(Object result) {
+        return result instanceof Iterator || result instanceof BaseStream || result instanceof Spliterator;
+    }
+
+    /**
+     * @return true if the result is a sequence of elements that can be written one at a time
+     */
+    static boolean isElements(Object result) {
+        return isLazy(result) || result instanceof Iterable || (result != null && result.getClass().isArray());
+    }
+
+    /**
+     * Collects the elements of a lazy result, for content types that are not written element by element.
+     */
+    static List<Object> collect(Object result) {
+        List<Object> elements = new ArrayList<>();
+        try {
+            Iterator<?> iterator = iteratorOf(result);
+            while (iterator.hasNext()) {
+                elements.add(iterator.next());
+            }
+        } finally {
+            closeSource(result);
+        }
+        return elements;
+    }
+
+    /**
+     * Writes the elements of the result straight into the servlet output stream, stopping quietly if the client goes
+     * away. Streams and closeable iterators are closed once written.
+     *
+     * @return an empty body, so Spark has nothing left to write
+     */
+    static Object write(Response response, Object result, boolean ndjson, int bufferSize, ContentEncoding encoding, int compressionThreshold) {
+        Codec codec = TypifyProvider.codec(ContentType.APPLICATION_JSON);
+        ResponseStream responseStream = new ResponseStream(response.raw(), bufferSize);
+        CompressingStream compressingStream = encoding != ContentEncoding.IDENTITY
+                ? new CompressingStream(response.raw(), responseStream, encoding, compressionThreshold)
+                : null;
+        ElementOutput out = new ElementOutput(compressingStream != null ? compressingStream : responseStream, ndjson);
+        long written = 0;
+        try {
+            Iterator<?> iterator = iteratorOf(result);
+            long pushed = System.nanoTime();
+            if (!ndjson) {
+                out.separator('[');
+            }
+            while (iterator.hasNext()) {
+                Object element = iterator.next();
+                if (!ndjson && written > 0) {
+                    out.separator(',');
+                }
+                codec.write(element, out);
+                if (ndjson) {
+                    out.separator('\n');
+                }
+                written++;
+                if (System.nanoTime() - pushed >= PUSH_INTERVAL_NANOS) {
+                    if (compressingStream != null) {
+                        out.push(compressingStream);
+                    }
+                    out.push(responseStream);
+                    pushed = System.nanoTime();
+                }
+            }
+            if (!ndjson) {
+                out.separator(']');
+            }
+            out.complete();
+        } catch (IOException | RuntimeException e) {
+            // Engines may wrap the failure of their target
+            if (out.failure == null) {
+                if (e instanceof IOException) {
+                    throw new UncheckedIOException((IOException) e);
+                }
+                throw (RuntimeException) e;
+            }
+            log.debug("Spark-Swagger: Client went away after {} streamed elements: {}", written, out.failure.getMessage());
+            out.abandon();
+        } finally {
+            closeSource(result);
+        }
+        return "";
+    }
+
+    private static Iterator<?> iteratorOf(Object result) {
+        if (result instanceof Iterator) {
+            return (Iterator<?>) result;
+        }
+        if (result instanceof BaseStream) {
+            return ((BaseStream<?, ?>) result).iterator();
+        }
+        if (result instanceof Spliterator) {
+            return Spliterators.iterator((Spliterator<?>) result);
+        }
+        if (result instanceof Iterable) {
+            return ((Iterable<?>) result).iterator();
+        }
+        return new ArrayIterator(result);
+    }
+
+    private static void closeSource(Object result) {
+        if (result instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) result).close();
+            } catch (Exception e) {
+                log.warn("Spark-Swagger: Failed to close streamed elements", e);
+            }
+        }
+    }
+
+    /**
+     * Output the elements are encoded into. Codecs flushing or closing their target do not reach the response, and the
+     * line breaks of pretty printed elements are dropped so every element stays on its own line. Failures of the
+     * response itself are kept, telling a client that went away apart from an element that could not be encoded.
+     */
+    private static final class ElementOutput extends OutputStream {
+
+        private final OutputStream target;
+        private final boolean singleLine;
+        private IOException failure;
+
+        private ElementOutput(OutputStream target, boolean singleLine) {
+            this.target = target;
+            this.singleLine = singleLine;
+        }
+
+        void separator(int b) throws IOException {
+            try {
+                target.write(b);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        void push(ResponseStream stream) throws IOException {
+            try {
+                stream.push();
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        void push(CompressingStream stream) throws IOException {
+            try {
+                stream.push();
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        void complete() throws IOException {
+            try {
+                target.close();
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        void abandon() {
+            try {
+                target.close();
+            } catch (IOException | RuntimeException e) {
+                // Client is gone, the buffers are released regardless
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (singleLine && (b == '\n' || b == '\r')) {
+                return;
+            }
+            separator(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (!singleLine) {
+                write(bytes, offset, length, target);
+                return;
+            }
+            // JSON strings escape line breaks, so any raw one is whitespace added by pretty printing
+            int start = offset;
+            int end = offset + length;
+            for (int i = offset; i < end; i++) {
+                if (bytes[i] == '\n' || bytes[i] == '\r') {
+                    write(bytes, start, i - start, target);
+                    start = i + 1;
+                }
+            }
+            write(bytes, start, end - start, target);
+        }
+
+        private void write(byte[] bytes, int offset, int length, OutputStream target) throws IOException {
+            if (length == 0) {
+                return;
+            }
+            try {
+                target.write(bytes, offset, length);
+            } catch (IOException e) {
+                throw failed(e);
+            }
+        }
+
+        @Override
+        public void flush() {
+            // Pushed periodically instead of after every element
+        }
+
+        @Override
+        public void close() {
+            // Codecs close their target, the response is completed once every element is written
+        }
+
+        private IOException failed(IOException e) {
+            failure = e;
+            return e;
+        }
+    }
+
+    private static final class ArrayIterator implements Iterator<Object> {
+
+        private final Object array;
+        private final int length;
+        private int index;
+
+        private ArrayIterator(Object array) {
+            this.array = array;
+            this.length = Array.getLength(array);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < length;
+        }
+
+        @Override
+        public Object next() {
+            if (index >= length) {
+                throw new NoSuchElementException();
+            }
+            return Array.get(array, index++);
+        }
+    }
+}
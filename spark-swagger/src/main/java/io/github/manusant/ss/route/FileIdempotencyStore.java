@@ -0,0 +1,133 @@
+package io.github.manusant.ss.route;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link IdempotencyStore} keeping each response in a file of a directory, so stored responses survive restarts.
+ * Expired files are removed as new responses are stored.
+ *
+ * @author manusant
+ */
+@Slf4j
+public class FileIdempotencyStore implements IdempotencyStore {
+
+    private static final int MAGIC = 0x53534931;
+    private static final String SUFFIX = ".response";
+    private static final int PURGE_INTERVAL = 256;
+
+    private final Path directory;
+    private final AtomicInteger puts = new AtomicInteger();
+
+    public FileIdempotencyStore(Path directory) {
+        try {
+            this.directory = Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public IdempotentResponse get(String key) {
+        Path file = fileOf(key);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            long expiresAt = in.readLong();
+            if (System.currentTimeMillis() >= expiresAt) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            if (!in.readUTF().equals(key)) {
+                // Another key with the same hash
+                return null;
+            }
+            long fingerprint = in.readLong();
+            int status = in.readInt();
+            String[] headers = new String[in.readInt()];
+            for (int i = 0; i < headers.length; i++) {
+                headers[i] = in.readUTF();
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new IdempotentResponse(status, headers, body, fingerprint, expiresAt);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            log.warn("Spark-Swagger: unable to read stored response of {}", key, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(String key, IdempotentResponse response) {
+        Path file = fileOf(key);
+        try {
+            Path temp = Files.createTempFile(directory, null, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeLong(response.getExpiresAt());
+                out.writeUTF(key);
+                out.writeLong(response.getFingerprint());
+                out.writeInt(response.getStatus());
+                out.writeInt(response.getHeaders().length);
+                for (String header : response.getHeaders()) {
+                    out.writeUTF(header);
+                }
+                out.writeInt(response.getBody().length);
+                out.write(response.getBody());
+            }
+            // Readers see either the previous file or the complete new one
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Spark-Swagger: unable to store response of {}", key, e);
+        }
+        if (puts.incrementAndGet() % PURGE_INTERVAL == 0) {
+            purgeExpired();
+        }
+    }
+
+    /**
+     * Removes the files of expired responses.
+     */
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                    if (in.readInt() == MAGIC && in.readLong() > now) {
+                        continue;
+                    }
+                } catch (IOException e) {
+                    // Unreadable, removed below
+                }
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Spark-Swagger: unable to purge expired responses from {}", directory, e);
+        }
+    }
+
+    private Path fileOf(String key) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return directory.resolve(Long.toHexString(ETags.hash(bytes, 0, bytes.length)) + SUFFIX);
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.manusant.ss.route;
+
+/**
+ * Where the responses of idempotent operations are kept, by operation and idempotency key. Set through
+ * {@link io.github.manusant.ss.conf.Options}, responses are kept in memory by default.
+ *
+ * @author manusant
+ */
+public interface IdempotencyStore {
+
+    /**
+     * @return the response stored for the key, or null if there is none or it expired
+     */
+    IdempotentResponse get(String key);
+
+    void put(String key, IdempotentResponse response);
+}
@@ -0,0 +1,52 @@
+package io.github.manusant.ss.route;
+
+/**
+ * Response stored for an idempotency key, replayed to the requests repeating the key.
+ *
+ * @author manusant
+ */
+public final class IdempotentResponse {
+
+    private final int status;
+    private final String[] headers;
+    private final byte[] body;
+    private final long fingerprint;
+    private final long expiresAt;
+
+    /**
+     * @param headers     name/value pairs of the headers describing the body
+     * @param fingerprint hash of the request the response was sent to
+     * @param expiresAt   epoch millis the response is no longer replayed from
+     */
+    public IdempotentResponse(int status, String[] headers, byte[] body, long fingerprint, long expiresAt) {
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.fingerprint = fingerprint;
+        this.expiresAt = expiresAt;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+}
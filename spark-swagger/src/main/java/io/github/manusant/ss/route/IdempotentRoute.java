@@ -0,0 +1,170 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.exception.PayloadLimitException;
+import spark.Request;
+import spark.RequestResponseFactory;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static io.github.manusant.ss.rest.RestResponse.conflict;
+import static io.github.manusant.ss.rest.RestResponse.unprocessableEntity;
+import static java.text.MessageFormat.format;
+
+/**
+ * Replays the stored response of an idempotency key to the requests repeating it, so retried writes are not applied
+ * twice. Requests without the key run as usual, and server errors are not stored so they can be retried.
+ * <p>
+ * Retries are told apart from other requests reusing a key by method, path and body. Bodies of unknown length and
+ * bodies of streaming routes are not part of it, since reading them up front would consume them or hold them in
+ * memory.
+ *
+ * @author manusant
+ */
+public class IdempotentRoute implements spark.Route {
+
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final long DEFAULT_WAIT = TimeUnit.SECONDS.toMillis(30);
+    private static final int MAX_STORED_BODY_SIZE = 8 * 1024 * 1024;
+
+    private final spark.Route delegate;
+    private final IdempotencyStore store;
+    private final RouteDescriptor descriptor;
+    private final String header;
+    private final String scope;
+    private final long ttl;
+    private final long maxWait;
+    private final boolean hashBody;
+    private final Map<String, CompletableFuture<IdempotentResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotentRoute(spark.Route delegate, IdempotencyStore store, MethodDescriptor operation) {
+        this(delegate, store, operation, OperationBinding.NONE, true);
+    }
+
+    /**
+     * @param hashBody false for routes reading their body as a stream, so it is left for the handler
+     */
+    public IdempotentRoute(spark.Route delegate, IdempotencyStore store, MethodDescriptor operation, OperationBinding binding, boolean hashBody) {
+        this.hashBody = hashBody;
+        this.delegate = delegate;
+        this.store = store;
+        this.descriptor = RouteDescriptor.unbound(operation, binding);
+        this.header = operation.getIdempotencyHeader();
+        this.scope = LoadShedder.operationIdOf(operation) + " ";
+        this.ttl = operation.getIdempotencyTtl();
+        this.maxWait = operation.getTimeout() > 0 ? operation.getTimeout() : DEFAULT_WAIT;
+    }
+
+    public spark.Route getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        String idempotencyKey = request.headers(header);
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            return delegate.handle(request, response);
+        }
+        String key = scope + idempotencyKey;
+        long fingerprint;
+        try {
+            fingerprint = fingerprintOf(request);
+        } catch (PayloadLimitException e) {
+            return RouteHelper.prepareResponse(request, response, RouteHelper.rejection(response, e), descriptor);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWait);
+        while (true) {
+            IdempotentResponse stored = store.get(key);
+            if (stored != null) {
+                return replay(request, response, stored, fingerprint);
+            }
+            CompletableFuture<IdempotentResponse> flight = new CompletableFuture<>();
+            CompletableFuture<IdempotentResponse> running = inFlight.putIfAbsent(key, flight);
+            if (running == null) {
+                return execute(request, response, key, fingerprint, flight);
+            }
+            try {
+                stored = running.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                Object rejection = conflict(response, format("A request with {0} ''{1}'' is still in progress", header, idempotencyKey));
+                return RouteHelper.prepareResponse(request, response, rejection, descriptor);
+            } catch (ExecutionException e) {
+                stored = null;
+            }
+            if (stored != null) {
+                return replay(request, response, stored, fingerprint);
+            }
+            // The first request failed, so this one takes its place
+        }
+    }
+
+    private Object execute(Request request, Response response, String key, long fingerprint, CompletableFuture<IdempotentResponse> flight) throws Exception {
+        IdempotentResponse stored = null;
+        try {
+            // Stored by a request that completed between the lookup and the registration of this flight
+            stored = store.get(key);
+            if (stored != null) {
+                return replay(request, response, stored, fingerprint);
+            }
+            HttpServletResponse raw = response.raw();
+            CapturingResponse capturing = new CapturingResponse(raw, MAX_STORED_BODY_SIZE);
+            Object body = delegate.handle(request, RequestResponseFactory.create(capturing));
+            byte[] bytes = raw.getStatus() < 500 ? capturing.bodyOf(body) : null;
+            if (bytes == null) {
+                return body;
+            }
+            stored = new IdempotentResponse(raw.getStatus(), CapturingResponse.headersOf(raw), bytes, fingerprint, System.currentTimeMillis() + ttl);
+            store.put(key, stored);
+            // Already encoded for the store, so Spark does not encode the string again
+            return body instanceof String ? bytes : body;
+        } finally {
+            inFlight.remove(key, flight);
+            flight.complete(stored);
+        }
+    }
+
+    private Object replay(Request request, Response response, IdempotentResponse stored, long fingerprint) throws Exception {
+        if (stored.getFingerprint() != fingerprint) {
+            Object rejection = unprocessableEntity(response, format("{0} was already used by a different request", header));
+            return RouteHelper.prepareResponse(request, response, rejection, descriptor);
+        }
+        HttpServletResponse raw = response.raw();
+        raw.setStatus(stored.getStatus());
+        CapturingResponse.replayHeaders(raw, stored.getHeaders());
+        raw.setHeader(REPLAYED_HEADER, "true");
+        return CapturingResponse.replayBody(raw, stored.getHeaders(), stored.getBody());
+    }
+
+    /**
+     * Hash of the method, path and body of the request, telling a retry apart from another request reusing the key.
+     */
+    private long fingerprintOf(Request request) throws IOException {
+        long maxBodySize = descriptor.getMaxBodySize();
+        if (maxBodySize > 0 && request.contentLength() > maxBodySize) {
+            // Declared length is already too large, reject before reading anything
+            throw new PayloadLimitException(413, format("Request body exceeds the maximum size of {0} bytes", String.valueOf(maxBodySize)));
+        }
+        long bodyHash = 0;
+        if (request.raw() instanceof BatchedRequest) {
+            byte[] body = ((BatchedRequest) request.raw()).getBody();
+            bodyHash = ETags.hash(body, 0, body.length);
+        } else if (hashBody && request.contentLength() > 0) {
+            // Spark keeps the body it reads for the handler, bounded by the declared length checked above
+            try (InputStream in = new LimitedBodyStream(request.raw().getInputStream(), maxBodySize, 0)) {
+                BodyBuffer body = BodyBuffer.read(in, request.contentLength());
+                bodyHash = ETags.hash(body.bytes(), 0, body.size());
+            }
+        }
+        return 31 * (31 * bodyHash + request.requestMethod().hashCode()) + request.uri().hashCode();
+    }
+}
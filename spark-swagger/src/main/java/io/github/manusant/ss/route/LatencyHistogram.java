@@ -0,0 +1,158 @@
+package io.github.manusant.ss.route;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency recorder with log-linear buckets: every power of two is split in 32 buckets, so recorded values
+ * keep about 3% precision from nanoseconds up to {@link #MAX_VALUE}, like an HdrHistogram with fixed precision.
+ * <p>
+ * Counts are kept in stripes picked by thread, starting with a single stripe and growing when recording threads
+ * collide, so recording takes a few atomic operations and never allocates.
+ *
+ * @author manusant
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Largest value told apart from others, about 18 minutes in nanoseconds. Larger values are recorded as this one.
+     */
+    public static final long MAX_VALUE = (1L << 40) - 1;
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = (40 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+    private static final int SLOTS = BUCKETS + 2;
+    private static final int MAX_STRIPES = Integer.highestOneBit(Math.max(1, Math.min(16, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+
+    private volatile AtomicLongArray[] stripes = {new AtomicLongArray(SLOTS)};
+
+    /**
+     * Records a duration in nanoseconds. Negative durations are recorded as zero.
+     */
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        AtomicLongArray[] current = stripes;
+        AtomicLongArray stripe = current[(int) Thread.currentThread().getId() & (current.length - 1)];
+        stripe.getAndIncrement(indexOf(value));
+        long sum = stripe.get(SUM);
+        if (!stripe.compareAndSet(SUM, sum, sum + value)) {
+            stripe.getAndAdd(SUM, value);
+            grow(current);
+        }
+        for (long max = stripe.get(MAX); value > max; max = stripe.get(MAX)) {
+            if (stripe.compareAndSet(MAX, max, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return the values recorded so far
+     */
+    public LatencySnapshot snapshot() {
+        return collect(false);
+    }
+
+    /**
+     * Takes the values recorded so far and starts over. The count, sum and max of a value recorded meanwhile each end
+     * up in this snapshot or in the next one, never in both, but not necessarily in the same one: counts and sums add
+     * up across snapshots, while within a snapshot the count, sum and max are only approximately consistent.
+     */
+    public LatencySnapshot snapshotAndReset() {
+        return collect(true);
+    }
+
+    public void reset() {
+        collect(true);
+    }
+
+    private LatencySnapshot collect(boolean reset) {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        long max = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += reset ? stripe.getAndSet(i, 0) : stripe.get(i);
+            }
+            sum += reset ? stripe.getAndSet(SUM, 0) : stripe.get(SUM);
+            max = Math.max(max, reset ? stripe.getAndSet(MAX, 0) : stripe.get(MAX));
+        }
+        return new LatencySnapshot(counts, sum, max);
+    }
+
+    /**
+     * Reads the histogram straight from its stripes, without allocating a snapshot, for periodic rendering.
+     *
+     * @param percentiles ascending percentiles, between 0 and 100
+     * @param into receives the count, the total, the max and then the value at each percentile
+     */
+    void read(double[] percentiles, long[] into) {
+        AtomicLongArray[] current = stripes;
+        long count = 0;
+        long sum = 0;
+        long max = 0;
+        for (AtomicLongArray stripe : current) {
+            for (int i = 0; i < BUCKETS; i++) {
+                count += stripe.get(i);
+            }
+            sum += stripe.get(SUM);
+            max = Math.max(max, stripe.get(MAX));
+        }
+        into[0] = count;
+        into[1] = sum;
+        into[2] = max;
+        int next = 0;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS && next < percentiles.length && count > 0; i++) {
+            for (AtomicLongArray stripe : current) {
+                seen += stripe.get(i);
+            }
+            while (next < percentiles.length && seen >= Math.max(1, (long) Math.ceil(percentiles[next] / 100 * count))) {
+                into[3 + next++] = Math.min(upperBoundOf(i), max);
+            }
+        }
+        // Values recorded meanwhile may leave the highest ranks unreached
+        while (next < percentiles.length) {
+            into[3 + next++] = count > 0 ? max : 0;
+        }
+    }
+
+    private synchronized void grow(AtomicLongArray[] contended) {
+        if (stripes != contended || contended.length >= MAX_STRIPES) {
+            return;
+        }
+        AtomicLongArray[] grown = new AtomicLongArray[contended.length * 2];
+        System.arraycopy(contended, 0, grown, 0, contended.length);
+        for (int i = contended.length; i < grown.length; i++) {
+            grown[i] = new AtomicLongArray(SLOTS);
+        }
+        stripes = grown;
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return the smallest value recorded in the bucket
+     */
+    static long lowerBoundOf(int index) {
+        int magnitude = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        return magnitude == 0 ? subBucket : (long) (SUB_BUCKETS + subBucket) << (magnitude - 1);
+    }
+
+    /**
+     * @return the largest value recorded in the bucket
+     */
+    static long upperBoundOf(int index) {
+        int magnitude = index / SUB_BUCKETS;
+        return lowerBoundOf(index) + (magnitude == 0 ? 0 : (1L << (magnitude - 1)) - 1);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.manusant.ss.route;
+
+/**
+ * Values of a {@link LatencyHistogram} at one point in time. All durations are in nanoseconds, percentiles within the
+ * precision of the histogram buckets.
+ *
+ * @author manusant
+ */
+public final class LatencySnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    LatencySnapshot(long[] counts, long totalNanos, long maxNanos) {
+        long total = 0;
+        for (long bucketCount : counts) {
+            total += bucketCount;
+        }
+        this.counts = counts;
+        this.count = total;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return sum of the recorded durations
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public double getMeanNanos() {
+        return count > 0 ? (double) totalNanos / count : 0;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the duration the given percentage of the recorded durations does not exceed, 0 if nothing was recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.upperBoundOf(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * @param earlier snapshot of the same histogram taken before this one, without a reset in between
+     * @return the durations recorded between both snapshots. Its max is the max of this snapshot, an upper bound
+     */
+    public LatencySnapshot since(LatencySnapshot earlier) {
+        long[] window = new long[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            window[i] = Math.max(0, counts[i] - earlier.counts[i]);
+        }
+        return new LatencySnapshot(window, Math.max(0, totalNanos - earlier.totalNanos), maxNanos);
+    }
+
+    /**
+     * @return how many recorded durations did not exceed the given one, counting whole buckets
+     */
+    public long getCountAtOrBelow(long nanos) {
+        long below = 0;
+        for (int i = 0; i < counts.length && LatencyHistogram.upperBoundOf(i) <= nanos; i++) {
+            below += counts[i];
+        }
+        return below;
+    }
+}
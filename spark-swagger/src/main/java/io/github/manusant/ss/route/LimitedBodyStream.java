@@ -0,0 +1,105 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.exception.PayloadLimitException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Request body stream enforcing a maximum size and JSON nesting depth while the body is being read.
+ * <p>
+ * Depth is tracked on raw bytes, which is safe for UTF-8 since multi-byte sequences never contain ASCII bytes.
+ *
+ * @author manusant
+ */
+public class LimitedBodyStream extends InputStream {
+
+    private final InputStream in;
+    private final long maxSize;
+    private final int maxDepth;
+    private long count;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    public LimitedBodyStream(InputStream in, long maxSize, int maxDepth) {
+        this.in = in;
+        this.maxSize = maxSize;
+        this.maxDepth = maxDepth;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) {
+            count(1);
+            if (maxDepth > 0) {
+                track((byte) b);
+            }
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        int read = in.read(bytes, offset, length);
+        if (read > 0) {
+            count(read);
+            if (maxDepth > 0) {
+                for (int i = offset; i < offset + read; i++) {
+                    track(bytes[i]);
+                }
+            }
+        }
+        return read;
+    }
+
+    private void count(int read) throws PayloadLimitException {
+        count += read;
+        if (maxSize > 0 && count > maxSize) {
+            throw new PayloadLimitException(413, format("Request body exceeds the maximum size of {0} bytes", String.valueOf(maxSize)));
+        }
+    }
+
+    private void track(byte b) throws PayloadLimitException {
+        if (inString) {
+            if (escaped) {
+                escaped = false;
+            } else if (b == '\\') {
+                escaped = true;
+            } else if (b == '"') {
+                inString = false;
+            }
+            return;
+        }
+        switch (b) {
+            case '"':
+                inString = true;
+                break;
+            case '{':
+            case '[':
+                if (++depth > maxDepth) {
+                    throw new PayloadLimitException(400, format("Request body exceeds the maximum nesting depth of {0}", maxDepth));
+                }
+                break;
+            case '}':
+            case ']':
+                depth--;
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
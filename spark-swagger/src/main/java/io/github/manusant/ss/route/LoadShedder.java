@@ -0,0 +1,71 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.model.Priority;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limiters of the operations bound through ApiEndpoints. Besides each operation limit, requests are shed by
+ * priority as the whole server fills up: low priority operations first, critical ones only at their own limit.
+ *
+ * @author manusant
+ */
+public final class LoadShedder {
+
+    private final Map<String, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger capacity = new AtomicInteger();
+
+    /**
+     * @return the limiter of the operation, created on first use
+     */
+    public AdaptiveLimiter limiter(MethodDescriptor operation) {
+        return limiters.computeIfAbsent(operationIdOf(operation), operationId -> {
+            Priority priority = operation.getPriority() != null ? operation.getPriority() : Priority.NORMAL;
+            capacity.addAndGet(AdaptiveLimiter.INITIAL_LIMIT);
+            return new AdaptiveLimiter(operationId, priority, this);
+        });
+    }
+
+    /**
+     * @return limiters by operationId, or method and path for operations without an id
+     */
+    public Map<String, AdaptiveLimiter> getLimiters() {
+        return Collections.unmodifiableMap(limiters);
+    }
+
+    /**
+     * @return requests in flight over the sum of the operation limits
+     */
+    public double getUtilization() {
+        int total = capacity.get();
+        return total > 0 ? (double) inFlight.get() / total : 0;
+    }
+
+    boolean admits(Priority priority) {
+        return priority == Priority.CRITICAL || getUtilization() < priority.getUtilization();
+    }
+
+    void acquired() {
+        inFlight.incrementAndGet();
+    }
+
+    void released() {
+        inFlight.decrementAndGet();
+    }
+
+    void limitChanged(int delta) {
+        capacity.addAndGet(delta);
+    }
+
+    static String operationIdOf(MethodDescriptor operation) {
+        if (operation.getOperationId() != null) {
+            return operation.getOperationId();
+        }
+        return (operation.getMethod() != null ? operation.getMethod().name() : "ANY") + " " + operation.getPath();
+    }
+}
@@ -0,0 +1,53 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import spark.Request;
+import spark.Response;
+
+import static io.github.manusant.ss.rest.RestResponse.serviceUnavailable;
+
+/**
+ * Sheds requests with 503 once the adaptive limit of the operation is reached, feeding it the latency of the
+ * requests it admits.
+ *
+ * @author manusant
+ */
+public class LoadSheddingRoute implements spark.Route {
+
+    private final spark.Route delegate;
+    private final AdaptiveLimiter limiter;
+    private final RouteDescriptor descriptor;
+
+    public LoadSheddingRoute(spark.Route delegate, AdaptiveLimiter limiter, MethodDescriptor operation, OperationBinding binding) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.descriptor = RouteDescriptor.unbound(operation, binding);
+    }
+
+    public spark.Route getDelegate() {
+        return delegate;
+    }
+
+    public AdaptiveLimiter getLimiter() {
+        return limiter;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        int inFlight = limiter.acquire();
+        if (inFlight < 0) {
+            response.header("Retry-After", "1");
+            Object rejection = serviceUnavailable(response, "Server is too busy to handle the request");
+            return RouteHelper.prepareResponse(request, response, rejection, descriptor);
+        }
+        long start = System.nanoTime();
+        try {
+            return delegate.handle(request, response);
+        } finally {
+            // Detached requests are measured until their response completes
+            if (!AsyncExchange.whenComplete(request, () -> limiter.release(System.nanoTime() - start, inFlight))) {
+                limiter.release(System.nanoTime() - start, inFlight);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.manusant.ss.route;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * {@link IdempotencyStore} keeping responses in memory, bounded by entries and bytes and evicting the least recently
+ * used first.
+ *
+ * @author manusant
+ */
+public class MemoryIdempotencyStore implements IdempotencyStore {
+
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<String, IdempotentResponse> responses = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    public MemoryIdempotencyStore() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    public MemoryIdempotencyStore(int maxEntries, long maxBytes) {
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Store entries and bytes must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized IdempotentResponse get(String key) {
+        IdempotentResponse response = responses.get(key);
+        if (response != null && response.isExpired(System.currentTimeMillis())) {
+            responses.remove(key);
+            bytes -= response.getBody().length;
+            return null;
+        }
+        return response;
+    }
+
+    @Override
+    public synchronized void put(String key, IdempotentResponse response) {
+        if (response.getBody().length > maxBytes) {
+            return;
+        }
+        IdempotentResponse previous = responses.put(key, response);
+        if (previous != null) {
+            bytes -= previous.getBody().length;
+        }
+        bytes += response.getBody().length;
+        Iterator<IdempotentResponse> eldest = responses.values().iterator();
+        while ((responses.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            IdempotentResponse evicted = eldest.next();
+            if (evicted == response) {
+                break;
+            }
+            bytes -= evicted.getBody().length;
+            eldest.remove();
+        }
+    }
+
+    public synchronized int size() {
+        return responses.size();
+    }
+}
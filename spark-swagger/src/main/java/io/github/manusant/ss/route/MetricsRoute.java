@@ -0,0 +1,226 @@
+package io.github.manusant.ss.route;
+
+import spark.Request;
+import spark.Response;
+
+import java.io.OutputStream;
+
+/**
+ * Renders the metrics of the documented operations in the OpenMetrics text format: completed requests, error
+ * responses by status, requests in flight, request and response body sizes, latency quantiles and, when requests are
+ * sampled, heap allocation and CPU time.
+ * <p>
+ * Scrapes are rendered one at a time into a text buffer and a byte buffer kept between scrapes, with the labels of each
+ * operation escaped once when it is bound, so frequent scrapes of large APIs do not churn the heap.
+ *
+ * @author manusant
+ */
+public class MetricsRoute implements spark.Route {
+
+    public static final String PATH = "/metrics";
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private static final String PREFIX = "spark_swagger_";
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final ApiMetrics metrics;
+    private final StringBuilder text = new StringBuilder(16 * 1024);
+    private final long[] reading = new long[3 + PERCENTILES.length];
+    private byte[] bytes = new byte[16 * 1024];
+
+    public MetricsRoute(ApiMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        response.type(CONTENT_TYPE);
+        synchronized (this) {
+            render(metrics.ordered());
+            int length = encode();
+            response.raw().setContentLength(length);
+            OutputStream out = response.raw().getOutputStream();
+            out.write(bytes, 0, length);
+            out.flush();
+        }
+        return "";
+    }
+
+    private void render(OperationMetrics[] operations) {
+        StringBuilder out = text;
+        out.setLength(0);
+
+        family("requests", "counter", null, "Completed requests.");
+        for (OperationMetrics operation : operations) {
+            sample("requests", "_total", operation).append(operation.getRequests()).append('\n');
+        }
+
+        family("errors", "counter", null, "Completed requests answered with a 4xx or 5xx status.");
+        for (OperationMetrics operation : operations) {
+            for (int status = OperationMetrics.firstErrorStatus(); status <= OperationMetrics.lastErrorStatus(); status++) {
+                long errors = operation.errors(status);
+                if (errors > 0) {
+                    labels("errors", "_total", operation).append(",status=\"").append(status).append("\"} ").append(errors).append('\n');
+                }
+            }
+        }
+
+        family("in_flight_requests", "gauge", null, "Requests being handled.");
+        for (OperationMetrics operation : operations) {
+            sample("in_flight_requests", "", operation).append(operation.getInFlight()).append('\n');
+        }
+
+        family("request_size_bytes", "summary", "bytes", "Request body sizes, for requests of known length.");
+        for (OperationMetrics operation : operations) {
+            sample("request_size_bytes", "_sum", operation).append(operation.requestBytes()).append('\n');
+            sample("request_size_bytes", "_count", operation).append(operation.requestsSized()).append('\n');
+        }
+
+        family("response_size_bytes", "summary", "bytes", "Response body sizes as sent, for responses of known length.");
+        for (OperationMetrics operation : operations) {
+            sample("response_size_bytes", "_sum", operation).append(operation.responseBytes()).append('\n');
+            sample("response_size_bytes", "_count", operation).append(operation.responsesSized()).append('\n');
+        }
+
+        durations("request_duration_seconds", "Time requests spent in the operation route, decorations included.", operations, 0);
+        durations("handler_duration_seconds", "Time spent in operation handlers.", operations, 1);
+        durations("serialization_duration_seconds", "Time spent serializing operation results.", operations, 2);
+        if (metrics.getResourceSampleRate() > 0) {
+            usage("handler_allocated_bytes", "bytes", "Heap bytes allocated by operation handlers, on sampled requests.", operations, false, false);
+            usage("handler_cpu_seconds", "seconds", "CPU time of operation handlers, on sampled requests.", operations, false, true);
+            usage("serialization_allocated_bytes", "bytes", "Heap bytes allocated serializing operation results, on sampled requests.", operations, true, false);
+            usage("serialization_cpu_seconds", "seconds", "CPU time serializing operation results, on sampled requests.", operations, true, true);
+        }
+
+        out.append("# EOF\n");
+    }
+
+    private void durations(String name, String help, OperationMetrics[] operations, int stage) {
+        family(name, "summary", "seconds", help);
+        for (OperationMetrics operation : operations) {
+            LatencyHistogram histogram = stage == 0 ? operation.getTotal() : stage == 1 ? operation.getHandler() : operation.getSerialization();
+            histogram.read(PERCENTILES, reading);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                seconds(labels(name, "", operation).append(",quantile=\"").append(QUANTILES[i]).append("\"} "), reading[3 + i]).append('\n');
+            }
+            seconds(sample(name, "_sum", operation), reading[1]).append('\n');
+            sample(name, "_count", operation).append(reading[0]).append('\n');
+        }
+    }
+
+    private void usage(String name, String unit, String help, OperationMetrics[] operations, boolean serialization, boolean cpu) {
+        family(name, "summary", unit, help);
+        for (OperationMetrics operation : operations) {
+            ResourceUsage usage = serialization ? operation.getSerializationUsage() : operation.getHandlerUsage();
+            if (cpu) {
+                seconds(sample(name, "_sum", operation), usage.cpuNanos()).append('\n');
+            } else {
+                sample(name, "_sum", operation).append(usage.allocatedBytes()).append('\n');
+            }
+            sample(name, "_count", operation).append(usage.samples()).append('\n');
+        }
+    }
+
+    private void family(String name, String type, String unit, String help) {
+        text.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+        if (unit != null) {
+            text.append("# UNIT ").append(PREFIX).append(name).append(' ').append(unit).append('\n');
+        }
+        text.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    }
+
+    /**
+     * Appends the metric name and labels of a sample, up to the space before its value.
+     */
+    private StringBuilder sample(String name, String suffix, OperationMetrics operation) {
+        return labels(name, suffix, operation).append("} ");
+    }
+
+    /**
+     * Appends the metric name and the labels of the operation, leaving the label set open for more labels.
+     */
+    private StringBuilder labels(String name, String suffix, OperationMetrics operation) {
+        return text.append(PREFIX).append(name).append(suffix).append('{').append(operation.labels());
+    }
+
+    /**
+     * Appends a duration in seconds with up to nine decimals, using integer arithmetic only.
+     */
+    private static StringBuilder seconds(StringBuilder out, long nanos) {
+        out.append(nanos / NANOS_PER_SECOND);
+        long fraction = nanos % NANOS_PER_SECOND;
+        if (fraction > 0) {
+            out.append('.');
+            long digits = NANOS_PER_SECOND / 10;
+            while (fraction > 0) {
+                out.append((char) ('0' + fraction / digits));
+                fraction %= digits;
+                digits /= 10;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Encodes the rendered text as UTF-8 into the byte buffer, growing it when needed.
+     *
+     * @return the length of the encoded text
+     */
+    private int encode() {
+        int length = text.length();
+        if (bytes.length < length * 3) {
+            bytes = new byte[length * 3];
+        }
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes[count++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[count++] = (byte) (0xC0 | c >> 6);
+                bytes[count++] = (byte) (0x80 | c & 0x3F);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                bytes[count++] = (byte) (0xF0 | codePoint >> 18);
+                bytes[count++] = (byte) (0x80 | codePoint >> 12 & 0x3F);
+                bytes[count++] = (byte) (0x80 | codePoint >> 6 & 0x3F);
+                bytes[count++] = (byte) (0x80 | codePoint & 0x3F);
+            } else {
+                bytes[count++] = (byte) (0xE0 | c >> 12);
+                bytes[count++] = (byte) (0x80 | c >> 6 & 0x3F);
+                bytes[count++] = (byte) (0x80 | c & 0x3F);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the OpenMetrics labels identifying an operation, with their values escaped
+     */
+    static String labels(String method, String path, String operationId) {
+        StringBuilder labels = new StringBuilder("method=\"").append(method).append("\",path=\"");
+        escape(labels, path);
+        labels.append('"');
+        if (operationId != null) {
+            labels.append(",operation_id=\"");
+            escape(labels, operationId);
+            labels.append('"');
+        }
+        return labels.toString();
+    }
+
+    private static void escape(StringBuilder out, String value) {
+        for (int i = 0; value != null && i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                out.append('\\').append(c);
+            } else if (c == '\n') {
+                out.append("\\n");
+            } else {
+                out.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import spark.Request;
+import spark.Response;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static io.github.manusant.ss.rest.RestResponse.serviceUnavailable;
+
+/**
+ * Runs a blocking route on a handler executor, releasing the server thread while the handler runs.
+ *
+ * @author manusant
+ */
+public class OffloadedRoute implements spark.Route {
+
+    private final spark.Route delegate;
+    private final ExecutorService executor;
+    private final RouteDescriptor descriptor;
+
+    public OffloadedRoute(spark.Route delegate, ExecutorService executor, MethodDescriptor operation, OperationBinding binding) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.descriptor = RouteDescriptor.unbound(operation, binding);
+    }
+
+    public spark.Route getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        if (delegate instanceof CachingRoute) {
+            // Cache hits are answered on the server thread
+            Object cached = ((CachingRoute) delegate).lookup(request, response);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        AsyncExchange exchange = AsyncExchange.start(request, response, descriptor);
+        if (exchange == null) {
+            return delegate.handle(request, response);
+        }
+        try {
+            Future<?> task = executor.submit(() -> {
+                try {
+                    exchange.respondSerialized(delegate.handle(request, exchange.response()));
+                } catch (Throwable e) {
+                    exchange.fail(e);
+                }
+            });
+            exchange.bind(task);
+        } catch (RejectedExecutionException e) {
+            exchange.respond(serviceUnavailable(exchange.response(), "Server is too busy to handle the request"));
+        }
+        return "";
+    }
+}
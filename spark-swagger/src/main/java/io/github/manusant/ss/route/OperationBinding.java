@@ -0,0 +1,58 @@
+package io.github.manusant.ss.route;
+
+import lombok.extern.slf4j.Slf4j;
+import spark.ExceptionMapper;
+import spark.Service;
+
+/**
+ * Runtime state an operation is bound with by its ApiEndpoint, kept apart from the MethodDescriptor documenting it.
+ *
+ * @author manusant
+ */
+@Slf4j
+public final class OperationBinding {
+
+    public static final OperationBinding NONE = new OperationBinding(null, null);
+
+    private final OperationMetrics metrics;
+    private final ExceptionMapper exceptionMapper;
+
+    /**
+     * @param metrics         metrics of the operation, or null if they are not recorded
+     * @param exceptionMapper exception handlers answering the failures of handlers running off the server thread, or
+     *                        null to answer them with a plain 500
+     */
+    public OperationBinding(OperationMetrics metrics, ExceptionMapper exceptionMapper) {
+        this.metrics = metrics;
+        this.exceptionMapper = exceptionMapper;
+    }
+
+    /**
+     * Binds an operation served by the Spark service, so the exception handlers registered on it also answer the
+     * failures of offloaded and asynchronous handlers.
+     */
+    public static OperationBinding of(Service spark, OperationMetrics metrics) {
+        return new OperationBinding(metrics, exceptionMapperOf(spark));
+    }
+
+    /**
+     * @return the metrics of the operation, or null if they are not recorded
+     */
+    public OperationMetrics getMetrics() {
+        return metrics;
+    }
+
+    public ExceptionMapper getExceptionMapper() {
+        return exceptionMapper;
+    }
+
+    private static ExceptionMapper exceptionMapperOf(Service spark) {
+        try {
+            // Spark does not expose the exception handlers of a service
+            return SparkInternals.fieldOf(spark, "exceptionMapper");
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Spark-Swagger: exception handlers of the Spark service are not accessible, failures of offloaded and asynchronous routes are answered with 500", e);
+            return null;
+        }
+    }
+}
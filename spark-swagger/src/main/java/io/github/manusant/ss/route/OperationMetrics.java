@@ -0,0 +1,198 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of one documented operation: latency histograms of its handler, of the serialization of its results and of
+ * the whole time requests spent in the operation route, decorations included, along with request, error and payload
+ * size counts and, when sampled, the heap allocation and CPU time of its handler and serialization. Recording never
+ * allocates.
+ *
+ * @author manusant
+ */
+public final class OperationMetrics {
+
+    private static final int FIRST_ERROR_STATUS = 400;
+    private static final int ERROR_STATUSES = 200;
+
+    private final String method;
+    private final String path;
+    private final String operationId;
+    private final String labels;
+    private final LatencyHistogram handler = new LatencyHistogram();
+    private final LatencyHistogram serialization = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final ResourceUsage handlerUsage;
+    private final ResourceUsage serializationUsage;
+    private final LongAdder requests = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLongArray errors = new AtomicLongArray(ERROR_STATUSES);
+    private final LongAdder requestBytes = new LongAdder();
+    private final LongAdder requestsSized = new LongAdder();
+    private final LongAdder responseBytes = new LongAdder();
+    private final LongAdder responsesSized = new LongAdder();
+
+    OperationMetrics(MethodDescriptor operation, double resourceSampleRate) {
+        this.handlerUsage = new ResourceUsage(resourceSampleRate);
+        this.serializationUsage = new ResourceUsage(resourceSampleRate);
+        this.method = operation.getMethod() != null ? operation.getMethod().name() : "ANY";
+        this.path = operation.getPath();
+        this.operationId = operation.getOperationId();
+        this.labels = MetricsRoute.labels(method, path, operationId);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the documented operationId, or null if the operation does not declare one
+     */
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public LatencyHistogram getHandler() {
+        return handler;
+    }
+
+    public LatencyHistogram getSerialization() {
+        return serialization;
+    }
+
+    public LatencyHistogram getTotal() {
+        return total;
+    }
+
+    /**
+     * @return heap allocation and CPU time of the handler, on sampled requests
+     */
+    public ResourceUsage getHandlerUsage() {
+        return handlerUsage;
+    }
+
+    /**
+     * @return heap allocation and CPU time of the serialization of results, on sampled requests
+     */
+    public ResourceUsage getSerializationUsage() {
+        return serializationUsage;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return completed requests
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * @return completed requests answered with a 5xx status
+     */
+    public long getServerErrors() {
+        long serverErrors = 0;
+        for (int status = 500; status <= lastErrorStatus(); status++) {
+            serverErrors += errors(status);
+        }
+        return serverErrors;
+    }
+
+    void started() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records a completed request.
+     *
+     * @param status       status of the response, 500 if the route failed
+     * @param requestSize  bytes of the request body, negative if unknown
+     * @param responseSize bytes of the response body, negative if unknown
+     */
+    void completed(long elapsed, int status, long requestSize, long responseSize) {
+        inFlight.decrementAndGet();
+        requests.increment();
+        total.record(elapsed);
+        if (status >= FIRST_ERROR_STATUS && status < FIRST_ERROR_STATUS + ERROR_STATUSES) {
+            errors.getAndIncrement(status - FIRST_ERROR_STATUS);
+        }
+        if (requestSize >= 0) {
+            requestBytes.add(requestSize);
+            requestsSized.increment();
+        }
+        if (responseSize >= 0) {
+            responseBytes.add(responseSize);
+            responsesSized.increment();
+        }
+    }
+
+    public OperationMetricsSnapshot snapshot() {
+        return new OperationMetricsSnapshot(this, handler.snapshot(), serialization.snapshot(), total.snapshot(),
+                handlerUsage.snapshot(), serializationUsage.snapshot(), requests.sum(), errorCounts(false), requestBytes.sum(), requestsSized.sum(), responseBytes.sum(), responsesSized.sum());
+    }
+
+    /**
+     * Takes the metrics recorded so far and starts over. The in flight count is kept.
+     */
+    public OperationMetricsSnapshot snapshotAndReset() {
+        return new OperationMetricsSnapshot(this, handler.snapshotAndReset(), serialization.snapshotAndReset(), total.snapshotAndReset(),
+                handlerUsage.snapshotAndReset(), serializationUsage.snapshotAndReset(), requests.sumThenReset(), errorCounts(true), requestBytes.sumThenReset(), requestsSized.sumThenReset(), responseBytes.sumThenReset(), responsesSized.sumThenReset());
+    }
+
+    public void reset() {
+        snapshotAndReset();
+    }
+
+    private long[] errorCounts(boolean reset) {
+        long[] counts = new long[ERROR_STATUSES];
+        for (int i = 0; i < ERROR_STATUSES; i++) {
+            counts[i] = reset ? errors.getAndSet(i, 0) : errors.get(i);
+        }
+        return counts;
+    }
+
+    /**
+     * @return the OpenMetrics labels of the operation, escaped once
+     */
+    String labels() {
+        return labels;
+    }
+
+    long errors(int status) {
+        return errors.get(status - FIRST_ERROR_STATUS);
+    }
+
+    static int firstErrorStatus() {
+        return FIRST_ERROR_STATUS;
+    }
+
+    static int lastErrorStatus() {
+        return FIRST_ERROR_STATUS + ERROR_STATUSES - 1;
+    }
+
+    long requestBytes() {
+        return requestBytes.sum();
+    }
+
+    long requestsSized() {
+        return requestsSized.sum();
+    }
+
+    long responseBytes() {
+        return responseBytes.sum();
+    }
+
+    long responsesSized() {
+        return responsesSized.sum();
+    }
+}
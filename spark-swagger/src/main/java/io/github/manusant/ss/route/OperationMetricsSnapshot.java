@@ -0,0 +1,132 @@
+package io.github.manusant.ss.route;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Metrics of one documented operation at one point in time.
+ *
+ * @author manusant
+ */
+public final class OperationMetricsSnapshot {
+
+    private final String method;
+    private final String path;
+    private final String operationId;
+    private final int inFlight;
+    private final LatencySnapshot handler;
+    private final LatencySnapshot serialization;
+    private final LatencySnapshot total;
+    private final ResourceUsageSnapshot handlerUsage;
+    private final ResourceUsageSnapshot serializationUsage;
+    private final long requests;
+    private final Map<Integer, Long> errors;
+    private final long requestBytes;
+    private final long requestsSized;
+    private final long responseBytes;
+    private final long responsesSized;
+
+    OperationMetricsSnapshot(OperationMetrics operation, LatencySnapshot handler, LatencySnapshot serialization, LatencySnapshot total,
+                             ResourceUsageSnapshot handlerUsage, ResourceUsageSnapshot serializationUsage, long requests, long[] errorCounts, long requestBytes, long requestsSized, long responseBytes, long responsesSized) {
+        this.method = operation.getMethod();
+        this.path = operation.getPath();
+        this.operationId = operation.getOperationId();
+        this.inFlight = operation.getInFlight();
+        this.handler = handler;
+        this.serialization = serialization;
+        this.total = total;
+        this.handlerUsage = handlerUsage;
+        this.serializationUsage = serializationUsage;
+        this.requests = requests;
+        Map<Integer, Long> errors = new TreeMap<>();
+        for (int i = 0; i < errorCounts.length; i++) {
+            if (errorCounts[i] > 0) {
+                errors.put(OperationMetrics.firstErrorStatus() + i, errorCounts[i]);
+            }
+        }
+        this.errors = Collections.unmodifiableMap(errors);
+        this.requestBytes = requestBytes;
+        this.requestsSized = requestsSized;
+        this.responseBytes = responseBytes;
+        this.responsesSized = responsesSized;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getOperationId() {
+        return operationId;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    public LatencySnapshot getHandler() {
+        return handler;
+    }
+
+    public LatencySnapshot getSerialization() {
+        return serialization;
+    }
+
+    public LatencySnapshot getTotal() {
+        return total;
+    }
+
+    public ResourceUsageSnapshot getHandlerUsage() {
+        return handlerUsage;
+    }
+
+    public ResourceUsageSnapshot getSerializationUsage() {
+        return serializationUsage;
+    }
+
+    /**
+     * @return completed requests
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * @return completed requests answered with a 4xx or 5xx status, by status
+     */
+    public Map<Integer, Long> getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return bytes of the request bodies of known length
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+
+    /**
+     * @return requests whose body length was known
+     */
+    public long getRequestsSized() {
+        return requestsSized;
+    }
+
+    /**
+     * @return bytes of the response bodies of known length, as sent after compression
+     */
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+
+    /**
+     * @return responses whose body length was known
+     */
+    public long getResponsesSized() {
+        return responsesSized;
+    }
+}
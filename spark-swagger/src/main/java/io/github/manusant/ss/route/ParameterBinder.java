@@ -0,0 +1,287 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.descriptor.ParameterDescriptor;
+import io.github.manusant.ss.exception.BindingException;
+import io.github.manusant.ss.rest.ValidationError;
+import spark.Request;
+
+import javax.servlet.http.Cookie;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.util.*;
+import java.util.function.Function;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Populates the parameters object of an operation from the path, query, header, form and cookie values declared by its
+ * parameter descriptors. Fields are matched by name and set through method handles resolved once per operation.
+ *
+ * @author manusant
+ */
+public final class ParameterBinder {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final MethodHandle constructor;
+    private final FieldBinding[] bindings;
+
+    private ParameterBinder(MethodHandle constructor, FieldBinding[] bindings) {
+        this.constructor = constructor;
+        this.bindings = bindings;
+    }
+
+    /**
+     * Resolves the bindings of the parameters class, which needs a no-args constructor.
+     */
+    public static ParameterBinder compile(Class<?> paramsType, MethodDescriptor operation) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            Constructor<?> noArgs = paramsType.getDeclaredConstructor();
+            noArgs.setAccessible(true);
+            MethodHandle constructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+
+            List<FieldBinding> bindings = new ArrayList<>();
+            List<ParameterDescriptor> parameters = operation != null && operation.getParameters() != null ? operation.getParameters() : Collections.emptyList();
+            for (ParameterDescriptor parameter : parameters) {
+                if (parameter.getType() == null || parameter.getName() == null) {
+                    continue;
+                }
+                Field field = findField(paramsType, parameter.getName());
+                if (field != null) {
+                    field.setAccessible(true);
+                    MethodHandle setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+                    bindings.add(new FieldBinding(parameter, field, setter));
+                }
+            }
+            return new ParameterBinder(constructor, bindings.toArray(new FieldBinding[0]));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException(format("Unable to bind parameters to ''{0}'', a no-args constructor and non final fields are required", paramsType.getName()), e);
+        }
+    }
+
+    /**
+     * @throws BindingException if a value is missing or can not be converted to the field type
+     */
+    @SuppressWarnings("unchecked")
+    public <P> P bind(Request request) {
+        Object params;
+        try {
+            params = (Object) constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        for (FieldBinding binding : bindings) {
+            binding.bind(params, request);
+        }
+        return (P) params;
+    }
+
+    private static Field findField(Class<?> type, String name) {
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(name) && !Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static final class FieldBinding {
+
+        private final String name;
+        private final ParameterDescriptor.ParameterType type;
+        private final String in;
+        private final boolean required;
+        private final String defaultValue;
+        private final MethodHandle setter;
+        private final Class<?> valueType;
+        private final Function<String, Object> converter;
+        private final boolean collection;
+        private final boolean set;
+
+        private FieldBinding(ParameterDescriptor parameter, Field field, MethodHandle setter) {
+            this.name = parameter.getName();
+            this.type = parameter.getType();
+            this.in = type.name().toLowerCase(Locale.ROOT);
+            this.required = parameter.isRequired() || type == ParameterDescriptor.ParameterType.PATH;
+            this.defaultValue = parameter.getDefaultValue();
+            this.setter = setter;
+            Class<?> fieldType = field.getType();
+            this.collection = Collection.class.isAssignableFrom(fieldType);
+            this.set = Set.class.isAssignableFrom(fieldType);
+            this.valueType = collection ? itemType(field, parameter) : fieldType;
+            this.converter = converterOf(valueType);
+        }
+
+        private void bind(Object params, Request request) {
+            Object value;
+            try {
+                value = collection ? convertAll(values(request)) : convert(value(request));
+            } catch (IllegalArgumentException e) {
+                throw error(format("must be {0}", expected()));
+            }
+            if (value == null) {
+                if (required) {
+                    throw error("is required");
+                }
+                return;
+            }
+            try {
+                setter.invokeExact(params, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private String value(Request request) {
+            String value;
+            switch (type) {
+                case PATH:
+                    value = request.params(name);
+                    break;
+                case QUERY:
+                case FORM:
+                    value = request.raw().getParameter(name);
+                    break;
+                case HEADER:
+                    value = request.raw().getHeader(name);
+                    break;
+                case COOKIE:
+                    value = cookie(request);
+                    break;
+                default:
+                    value = null;
+            }
+            return value == null || value.isEmpty() ? defaultValue : value;
+        }
+
+        private String[] values(Request request) {
+            if (type == ParameterDescriptor.ParameterType.QUERY || type == ParameterDescriptor.ParameterType.FORM) {
+                String[] values = request.raw().getParameterValues(name);
+                if (values != null && values.length > 1) {
+                    return values;
+                }
+            }
+            String value = value(request);
+            return value != null ? value.split(",") : null;
+        }
+
+        private String cookie(Request request) {
+            Cookie[] cookies = request.raw().getCookies();
+            if (cookies != null) {
+                for (Cookie cookie : cookies) {
+                    if (name.equals(cookie.getName())) {
+                        return cookie.getValue();
+                    }
+                }
+            }
+            return null;
+        }
+
+        private Object convert(String value) {
+            return value != null && !value.isEmpty() ? converter.apply(value) : null;
+        }
+
+        private Object convertAll(String[] values) {
+            if (values == null) {
+                return null;
+            }
+            Collection<Object> items = set ? new LinkedHashSet<>() : new ArrayList<>(values.length);
+            for (String value : values) {
+                Object item = convert(value.trim());
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+            return items;
+        }
+
+        private String expected() {
+            String typeName;
+            if (valueType.isEnum()) {
+                typeName = "one of " + Arrays.toString(valueType.getEnumConstants());
+            } else if (valueType == int.class || valueType == Integer.class || valueType == short.class || valueType == Short.class) {
+                typeName = "a 32 bit integer";
+            } else if (valueType == long.class || valueType == Long.class) {
+                typeName = "a 64 bit integer";
+            } else if (valueType == UUID.class) {
+                typeName = "a UUID";
+            } else if (valueType == boolean.class || valueType == Boolean.class) {
+                typeName = "a boolean";
+            } else {
+                typeName = "a number";
+            }
+            return collection ? "a comma separated list, each " + typeName : typeName;
+        }
+
+        private BindingException error(String message) {
+            return new BindingException(new ValidationError(name, in, "Parameter '" + name + "' " + message));
+        }
+
+        private static Class<?> itemType(Field field, ParameterDescriptor parameter) {
+            if (parameter.getCollectionOf() != null) {
+                return parameter.getCollectionOf();
+            }
+            Type generic = field.getGenericType();
+            if (generic instanceof ParameterizedType) {
+                Type item = ((ParameterizedType) generic).getActualTypeArguments()[0];
+                if (item instanceof Class) {
+                    return (Class<?>) item;
+                }
+            }
+            return String.class;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private static Function<String, Object> converterOf(Class<?> type) {
+            if (type == String.class || type == Object.class) {
+                return value -> value;
+            } else if (type == int.class || type == Integer.class) {
+                return Integer::valueOf;
+            } else if (type == long.class || type == Long.class) {
+                return Long::valueOf;
+            } else if (type == double.class || type == Double.class) {
+                return Double::valueOf;
+            } else if (type == float.class || type == Float.class) {
+                return Float::valueOf;
+            } else if (type == short.class || type == Short.class) {
+                return Short::valueOf;
+            } else if (type == boolean.class || type == Boolean.class) {
+                return ParameterBinder::parseBoolean;
+            } else if (type == UUID.class) {
+                return UUID::fromString;
+            } else if (type.isEnum()) {
+                Map<String, Object> constants = new HashMap<>();
+                for (Enum constant : ((Class<? extends Enum>) type).getEnumConstants()) {
+                    constants.put(constant.name(), constant);
+                }
+                return value -> {
+                    Object constant = constants.get(value);
+                    if (constant == null) {
+                        throw new IllegalArgumentException(value);
+                    }
+                    return constant;
+                };
+            }
+            throw new IllegalStateException(format("Parameters of type ''{0}'' can not be bound", type.getName()));
+        }
+    }
+
+    private static Object parseBoolean(String value) {
+        if ("true".equalsIgnoreCase(value)) {
+            return Boolean.TRUE;
+        } else if ("false".equalsIgnoreCase(value)) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException(value);
+    }
+}
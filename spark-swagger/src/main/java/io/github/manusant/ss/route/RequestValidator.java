@@ -0,0 +1,327 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.descriptor.ParameterDescriptor;
+import io.github.manusant.ss.rest.ValidationError;
+import spark.Request;
+
+import javax.servlet.http.Cookie;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Parameter checks compiled once from the parameter descriptors of an operation. Values are checked in place, without
+ * parsing them, and validation stops at the first error.
+ *
+ * @author manusant
+ */
+public final class RequestValidator {
+
+    private final ParameterCheck[] checks;
+
+    private RequestValidator(ParameterCheck[] checks) {
+        this.checks = checks;
+    }
+
+    /**
+     * @return the validator of the operation parameters, or null if there is nothing to validate
+     */
+    public static RequestValidator compile(MethodDescriptor operation) {
+        List<ParameterDescriptor> parameters = operation.getParameters();
+        if (parameters == null || parameters.isEmpty()) {
+            return null;
+        }
+        List<ParameterCheck> checks = new ArrayList<>(parameters.size());
+        for (ParameterDescriptor parameter : parameters) {
+            if (parameter.getType() != null && parameter.getName() != null) {
+                checks.add(new ParameterCheck(parameter));
+            }
+        }
+        return checks.isEmpty() ? null : new RequestValidator(checks.toArray(new ParameterCheck[0]));
+    }
+
+    /**
+     * @return the first error found, or null if the request is valid
+     */
+    public ValidationError validate(Request request) {
+        for (ParameterCheck check : checks) {
+            ValidationError error = check.validate(request);
+            if (error != null) {
+                return error;
+            }
+        }
+        return null;
+    }
+
+    private enum ValueKind {
+        STRING, BOOLEAN, INTEGER, LONG, DECIMAL, UUID, ENUM;
+
+        static ValueKind of(Class<?> type) {
+            if (type == null || type == String.class) {
+                return STRING;
+            } else if (type.isEnum()) {
+                return ENUM;
+            } else if (type == boolean.class || type == Boolean.class) {
+                return BOOLEAN;
+            } else if (type == int.class || type == Integer.class) {
+                return INTEGER;
+            } else if (type == long.class || type == Long.class) {
+                return LONG;
+            } else if (type == double.class || type == Double.class || type == float.class || type == Float.class || type == Number.class) {
+                return DECIMAL;
+            } else if (type == UUID.class) {
+                return UUID;
+            }
+            return STRING;
+        }
+    }
+
+    private static final class ParameterCheck {
+
+        private final String name;
+        private final ParameterDescriptor.ParameterType type;
+        private final String in;
+        private final boolean required;
+        private final boolean allowEmptyValue;
+        private final boolean collection;
+        private final ValueKind kind;
+        private final Set<String> enumValues;
+        private final Pattern pattern;
+
+        private ParameterCheck(ParameterDescriptor parameter) {
+            this.name = parameter.getName();
+            this.type = parameter.getType();
+            this.in = type.name().toLowerCase(Locale.ROOT);
+            this.required = parameter.isRequired() || type == ParameterDescriptor.ParameterType.PATH;
+            this.allowEmptyValue = Boolean.TRUE.equals(parameter.getAllowEmptyValue());
+            this.collection = parameter.getObject() == null && parameter.getCollectionOf() != null;
+            Class<?> valueType = collection ? parameter.getCollectionOf() : parameter.getObject();
+            this.kind = ValueKind.of(valueType);
+            if (kind == ValueKind.ENUM) {
+                enumValues = new LinkedHashSet<>();
+                for (Object constant : valueType.getEnumConstants()) {
+                    enumValues.add(((Enum<?>) constant).name());
+                }
+            } else {
+                enumValues = null;
+            }
+            this.pattern = parameter.getPattern() != null ? Pattern.compile(parameter.getPattern()) : null;
+        }
+
+        private ValidationError validate(Request request) {
+            switch (type) {
+                case QUERY:
+                    return validateAll(request.raw().getParameterValues(name));
+                case FORM:
+                    return validateAll(request.raw().getParameterValues(name));
+                case PATH:
+                    return validateOne(request.params(name));
+                case HEADER:
+                    return validateOne(request.raw().getHeader(name));
+                case COOKIE:
+                    return validateOne(cookie(request));
+                default:
+                    return null;
+            }
+        }
+
+        private String cookie(Request request) {
+            Cookie[] cookies = request.raw().getCookies();
+            if (cookies != null) {
+                for (Cookie cookie : cookies) {
+                    if (name.equals(cookie.getName())) {
+                        return cookie.getValue();
+                    }
+                }
+            }
+            return null;
+        }
+
+        private ValidationError validateAll(String[] values) {
+            if (values == null || values.length == 0) {
+                return validateOne(null);
+            }
+            for (String value : values) {
+                ValidationError error = validateOne(value);
+                if (error != null) {
+                    return error;
+                }
+            }
+            return null;
+        }
+
+        private ValidationError validateOne(String value) {
+            if (value == null) {
+                return required ? error("is required") : null;
+            }
+            if (value.isEmpty()) {
+                return allowEmptyValue ? null : error("must not be empty");
+            }
+            if (!collection) {
+                return validateValue(value, 0, value.length());
+            }
+            // Collections are sent comma separated (csv)
+            int start = 0;
+            for (int i = 0; i <= value.length(); i++) {
+                if (i == value.length() || value.charAt(i) == ',') {
+                    ValidationError error = validateValue(value, start, i);
+                    if (error != null) {
+                        return error;
+                    }
+                    start = i + 1;
+                }
+            }
+            return null;
+        }
+
+        private ValidationError validateValue(String value, int start, int end) {
+            if (!isValid(value, start, end)) {
+                return error("must be " + expected());
+            }
+            if (pattern != null && !pattern.matcher(value).region(start, end).matches()) {
+                return error("must match " + pattern.pattern());
+            }
+            return null;
+        }
+
+        private boolean isValid(String value, int start, int end) {
+            switch (kind) {
+                case BOOLEAN:
+                    int length = end - start;
+                    return length == 4 && value.regionMatches(true, start, "true", 0, 4)
+                            || length == 5 && value.regionMatches(true, start, "false", 0, 5);
+                case INTEGER:
+                    return isInteger(value, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+                case LONG:
+                    return isInteger(value, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+                case DECIMAL:
+                    return isDecimal(value, start, end);
+                case UUID:
+                    return isUuid(value, start, end);
+                case ENUM:
+                    return enumValues.contains(start == 0 && end == value.length() ? value : value.substring(start, end));
+                default:
+                    return true;
+            }
+        }
+
+        private String expected() {
+            switch (kind) {
+                case BOOLEAN:
+                    return "a boolean";
+                case INTEGER:
+                    return "a 32 bit integer";
+                case LONG:
+                    return "a 64 bit integer";
+                case DECIMAL:
+                    return "a number";
+                case UUID:
+                    return "a UUID";
+                case ENUM:
+                    return "one of " + enumValues;
+                default:
+                    return "a string";
+            }
+        }
+
+        private ValidationError error(String message) {
+            return new ValidationError(name, in, "Parameter '" + name + "' " + message);
+        }
+    }
+
+    /**
+     * Checks an integer in range by accumulating it negatively, as {@link Long#parseLong(String)} does, so
+     * {@code Long.MIN_VALUE} does not overflow.
+     */
+    static boolean isInteger(CharSequence value, int start, int end, long min, long max) {
+        if (start >= end) {
+            return false;
+        }
+        boolean negative = false;
+        int i = start;
+        char first = value.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == end) {
+                return false;
+            }
+        }
+        long limit = negative ? min : -max;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < multmin) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        return true;
+    }
+
+    /**
+     * Checks {@code [+-]digits[.digits][(e|E)[+-]digits]}, with digits on at least one side of the point.
+     */
+    static boolean isDecimal(CharSequence value, int start, int end) {
+        int i = start;
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            i++;
+        }
+        int digits = 0;
+        for (; i < end && isDigit(value.charAt(i)); i++) {
+            digits++;
+        }
+        if (i < end && value.charAt(i) == '.') {
+            for (i++; i < end && isDigit(value.charAt(i)); i++) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return false;
+        }
+        if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < end && isDigit(value.charAt(i)); i++) {
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    static boolean isUuid(CharSequence value, int start, int end) {
+        if (end - start != 36) {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            char c = value.charAt(start + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if (!isDigit(c) && (c < 'a' || c > 'f') && (c < 'A' || c > 'F')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
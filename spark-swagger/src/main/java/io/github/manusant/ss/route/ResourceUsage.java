@@ -0,0 +1,141 @@
+package io.github.manusant.ss.route;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Heap bytes allocated and CPU time spent by one stage of an operation, measured with the {@link ThreadMXBean} counters
+ * of the running thread on a sample of the requests, so the overhead of reading the counters stays proportional to the
+ * sampling rate.
+ * <p>
+ * Only work done on the thread that runs the stage is accounted, so asynchronous handlers are not sampled.
+ *
+ * @author manusant
+ */
+@Slf4j
+public final class ResourceUsage {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocations();
+    private static final boolean CPU_TIME = cpuTime();
+
+    private final double sampleRate;
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder cpuNanos = new LongAdder();
+
+    ResourceUsage(double sampleRate) {
+        this.sampleRate = ALLOCATIONS != null || CPU_TIME ? sampleRate : 0;
+    }
+
+    /**
+     * @return the share of requests sampled, between 0 and 1
+     */
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Starts measuring the stage on the current thread if the request is sampled.
+     *
+     * @return the sample to {@link Sample#end() end} on the same thread, or null if the request is not sampled
+     */
+    Sample start() {
+        if (sampleRate <= 0 || sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        return new Sample(this);
+    }
+
+    public ResourceUsageSnapshot snapshot() {
+        return new ResourceUsageSnapshot(samples.sum(), allocatedBytes.sum(), cpuNanos.sum());
+    }
+
+    public ResourceUsageSnapshot snapshotAndReset() {
+        return new ResourceUsageSnapshot(samples.sumThenReset(), allocatedBytes.sumThenReset(), cpuNanos.sumThenReset());
+    }
+
+    public void reset() {
+        snapshotAndReset();
+    }
+
+    long samples() {
+        return samples.sum();
+    }
+
+    long allocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    long cpuNanos() {
+        return cpuNanos.sum();
+    }
+
+    private static long allocated() {
+        return ALLOCATIONS != null ? ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+    }
+
+    private static long cpu() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : 0;
+    }
+
+    private static com.sun.management.ThreadMXBean allocations() {
+        try {
+            if (THREADS instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+                if (threads.isThreadAllocatedMemorySupported()) {
+                    if (!threads.isThreadAllocatedMemoryEnabled()) {
+                        threads.setThreadAllocatedMemoryEnabled(true);
+                    }
+                    return threads;
+                }
+            }
+        } catch (LinkageError | RuntimeException e) {
+            log.debug("Spark-Swagger: thread allocation counters unavailable", e);
+        }
+        return null;
+    }
+
+    private static boolean cpuTime() {
+        try {
+            if (THREADS.isCurrentThreadCpuTimeSupported()) {
+                if (!THREADS.isThreadCpuTimeEnabled()) {
+                    THREADS.setThreadCpuTimeEnabled(true);
+                }
+                return true;
+            }
+        } catch (RuntimeException e) {
+            log.debug("Spark-Swagger: thread CPU time unavailable", e);
+        }
+        return false;
+    }
+
+    /**
+     * Counters of the current thread when a sampled stage started.
+     */
+    static final class Sample {
+
+        private final ResourceUsage usage;
+        private final long allocated;
+        private final long cpu;
+
+        private Sample(ResourceUsage usage) {
+            this.usage = usage;
+            // Read once the sample is allocated, so it is not accounted
+            this.cpu = cpu();
+            this.allocated = allocated();
+        }
+
+        void end() {
+            long allocatedDelta = allocated() - allocated;
+            long cpuDelta = cpu() - cpu;
+            usage.samples.increment();
+            usage.allocatedBytes.add(Math.max(0, allocatedDelta));
+            usage.cpuNanos.add(Math.max(0, cpuDelta));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.manusant.ss.route;
+
+/**
+ * Values of a {@link ResourceUsage} at one point in time, summed over the sampled requests.
+ *
+ * @author manusant
+ */
+public final class ResourceUsageSnapshot {
+
+    private final long samples;
+    private final long allocatedBytes;
+    private final long cpuNanos;
+
+    ResourceUsageSnapshot(long samples, long allocatedBytes, long cpuNanos) {
+        this.samples = samples;
+        this.allocatedBytes = allocatedBytes;
+        this.cpuNanos = cpuNanos;
+    }
+
+    /**
+     * @return sampled requests
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    /**
+     * @return heap bytes allocated per sampled request, 0 if nothing was sampled
+     */
+    public double getAllocatedBytesPerRequest() {
+        return samples > 0 ? (double) allocatedBytes / samples : 0;
+    }
+
+    /**
+     * @return CPU time per sampled request in nanoseconds, 0 if nothing was sampled
+     */
+    public double getCpuNanosPerRequest() {
+        return samples > 0 ? (double) cpuNanos / samples : 0;
+    }
+}
@@ -0,0 +1,276 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serialized responses of an operation, bounded by entries and bytes and evicted least recently used first. Entries
+ * are spread over independently locked segments, so concurrent hits on different keys do not contend.
+ *
+ * @author manusant
+ */
+public final class ResponseCache {
+
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_ENTRIES = 8;
+
+    private final String name;
+    private final long ttl;
+    private final Segment[] segments;
+    private final int mask;
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param ttl        time to live of the entries in millis
+     * @param maxEntries maximum number of cached responses
+     * @param maxBytes   maximum size of the cached bodies
+     */
+    public ResponseCache(String name, long ttl, int maxEntries, long maxBytes) {
+        if (ttl <= 0 || maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Cache ttl, entries and bytes must be positive");
+        }
+        this.name = name;
+        this.ttl = ttl;
+        int segmentCount = Integer.highestOneBit(Math.max(1, Math.min(MAX_SEGMENTS, maxEntries / MIN_SEGMENT_ENTRIES)));
+        this.segments = new Segment[segmentCount];
+        this.mask = segmentCount - 1;
+        int segmentEntries = (maxEntries + segmentCount - 1) / segmentCount;
+        long segmentBytes = Math.max(1, maxBytes / segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(segmentEntries, segmentBytes);
+        }
+    }
+
+    /**
+     * @return the cache of an operation bound with a response cache, named like its load shedding limiter
+     */
+    public static ResponseCache of(MethodDescriptor operation) {
+        return new ResponseCache(LoadShedder.operationIdOf(operation), operation.getCacheTtl(), operation.getCacheMaxEntries(), operation.getCacheMaxBytes());
+    }
+
+    /**
+     * @return operationId of the cached operation, or its method and path
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return time to live of the entries in millis
+     */
+    public long getTtl() {
+        return ttl;
+    }
+
+    /**
+     * @return the largest body a single entry can hold
+     */
+    public long getMaxEntryBytes() {
+        return segments[0].maxBytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total > 0 ? (double) hitCount / total : 0;
+    }
+
+    /**
+     * @return entries dropped to make room for newer ones
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return size of the cached bodies
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                bytes += segment.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops the responses cached for a request path, whatever their query and headers.
+     */
+    public void invalidate(String path) {
+        // Responses being loaded may predate the change, so they are not stored
+        generation.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<CachedResponse> entries = segment.values().iterator();
+                while (entries.hasNext()) {
+                    CachedResponse entry = entries.next();
+                    if (entry.path.equals(path)) {
+                        segment.bytes -= entry.body.length;
+                        entries.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                segment.bytes = 0;
+            }
+        }
+    }
+
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * @return the live response cached for the key, or null counting a miss
+     */
+    CachedResponse get(String key) {
+        Segment segment = segmentFor(key);
+        CachedResponse entry;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && entry.isExpired(System.nanoTime())) {
+                segment.remove(key);
+                segment.bytes -= entry.body.length;
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    /**
+     * Caches a response loaded after the given generation was read, unless the cache was invalidated meanwhile.
+     */
+    void put(String key, CachedResponse entry, long loadedGeneration) {
+        Segment segment = segmentFor(key);
+        if (entry.body.length > segment.maxBytes) {
+            return;
+        }
+        synchronized (segment) {
+            if (generation.get() != loadedGeneration) {
+                return;
+            }
+            CachedResponse previous = segment.put(key, entry);
+            if (previous != null) {
+                segment.bytes -= previous.body.length;
+            }
+            segment.bytes += entry.body.length;
+            Iterator<CachedResponse> eldest = segment.values().iterator();
+            while ((segment.size() > segment.maxEntries || segment.bytes > segment.maxBytes) && eldest.hasNext()) {
+                CachedResponse evicted = eldest.next();
+                if (evicted == entry) {
+                    break;
+                }
+                segment.bytes -= evicted.body.length;
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    CachedResponse newEntry(String path, byte[] body, String[] headers, String cacheControl) {
+        long now = System.nanoTime();
+        return new CachedResponse(path, body, headers, cacheControl, now, now + TimeUnit.MILLISECONDS.toNanos(ttl));
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static final class Segment extends LinkedHashMap<String, CachedResponse> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+        private final long maxBytes;
+        private long bytes;
+
+        private Segment(int maxEntries, long maxBytes) {
+            // Access order, so the eldest entry is the least recently used
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+            this.maxBytes = maxBytes;
+        }
+    }
+
+    static final class CachedResponse {
+
+        final String path;
+        final byte[] body;
+        final String[] headers;
+        final String cacheControl;
+        final long createdAt;
+        final long expiresAt;
+
+        private CachedResponse(String path, byte[] body, String[] headers, String cacheControl, long createdAt, long expiresAt) {
+            this.path = path;
+            this.body = body;
+            this.headers = headers;
+            this.cacheControl = cacheControl;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        /**
+         * @return seconds the response has been cached for
+         */
+        long age(long now) {
+            return TimeUnit.NANOSECONDS.toSeconds(now - createdAt);
+        }
+
+        /**
+         * @return seconds the response is still fresh for
+         */
+        long maxAge(long now) {
+            return Math.max(0, TimeUnit.NANOSECONDS.toSeconds(expiresAt - now));
+        }
+    }
+}
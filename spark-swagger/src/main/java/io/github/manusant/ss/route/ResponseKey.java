@@ -0,0 +1,83 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.descriptor.ParameterDescriptor;
+import spark.Request;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells apart the requests of an operation that get the same response: same method, path, key parameters and headers
+ * and negotiated content type and encoding.
+ *
+ * @author manusant
+ */
+final class ResponseKey {
+
+    private static final char SEPARATOR = '\u0000';
+    private static final char VALUE_SEPARATOR = '\u0001';
+
+    private final RouteDescriptor descriptor;
+    private final String[] params;
+    private final String[] headers;
+
+    ResponseKey(MethodDescriptor operation) {
+        this.descriptor = RouteDescriptor.unbound(operation);
+        this.params = operation.getCacheKeyParams() != null ? operation.getCacheKeyParams().toArray(new String[0]) : declaredQueryParams(operation);
+        this.headers = operation.getCacheKeyHeaders() != null ? operation.getCacheKeyHeaders().toArray(new String[0]) : new String[0];
+    }
+
+    String of(Request request) {
+        StringBuilder key = new StringBuilder(96).append(request.requestMethod()).append(' ').append(request.uri());
+        for (String name : params) {
+            key.append(SEPARATOR);
+            String[] values = request.raw().getParameterValues(name);
+            if (values != null) {
+                for (String value : values) {
+                    key.append(VALUE_SEPARATOR).append(value);
+                }
+            }
+        }
+        for (String name : headers) {
+            key.append(SEPARATOR);
+            String value = request.headers(name);
+            if (value != null) {
+                key.append(VALUE_SEPARATOR).append(value);
+            }
+        }
+        // Representations negotiated from the request are told apart
+        if (descriptor.isNegotiable()) {
+            key.append(SEPARATOR).append(ContentNegotiation.negotiate(request.headers("Accept"), descriptor.getProduces()).ordinal());
+        }
+        if (descriptor.getElementProduces() != null) {
+            key.append(SEPARATOR).append(RouteHelper.isNdjson(request, descriptor) ? 'n' : 'j');
+        }
+        if (descriptor.isCompressed()) {
+            key.append(SEPARATOR).append(Compression.negotiate(request.headers("Accept-Encoding")).ordinal());
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return true if responses differ per user, keyed on Authorization or Cookie
+     */
+    boolean isPrivate() {
+        for (String header : headers) {
+            if (header.equalsIgnoreCase("Authorization") || header.equalsIgnoreCase("Cookie")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String[] declaredQueryParams(MethodDescriptor operation) {
+        List<String> names = new ArrayList<>();
+        for (ParameterDescriptor parameter : operation.getParameters()) {
+            if (parameter.getType() == ParameterDescriptor.ParameterType.QUERY) {
+                names.add(parameter.getName());
+            }
+        }
+        return names.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.manusant.ss.route;
+
+import spark.Response;
+
+/**
+ * Turns a handler result into the body handed back to Spark for a given content type.
+ *
+ * @author manusant
+ */
+@FunctionalInterface
+public interface ResponseSerializer {
+
+    Object serialize(Response response, Object result);
+}
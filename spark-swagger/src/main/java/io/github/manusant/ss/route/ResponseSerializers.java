@@ -0,0 +1,193 @@
+package io.github.manusant.ss.route;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.github.manusant.ss.conf.TypifyProvider;
+import io.github.manusant.ss.model.ContentType;
+import io.github.manusant.ss.serialization.Codec;
+import org.eclipse.jetty.server.HttpOutput;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static io.github.manusant.ss.rest.RestResponse.error;
+import static io.github.manusant.ss.rest.RestResponse.notImplemented;
+import static java.text.MessageFormat.format;
+
+/**
+ * Built-in {@link ResponseSerializer}s for the supported {@link ContentType}s.
+ *
+ * @author manusant
+ */
+public final class ResponseSerializers {
+
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+    private ResponseSerializers() {
+    }
+
+    public static ResponseSerializer forContentType(ContentType contentType) {
+        switch (contentType) {
+            case APPLICATION_JSON:
+                return ResponseSerializers::json;
+            case APPLICATION_XML:
+            case APPLICATION_ATOM_XML:
+            case TEXT_XML:
+                return ResponseSerializers::xml;
+            case TEXT_PLAIN:
+            case TEXT_HTML:
+            case APPLICATION_XHTML_XML:
+            case APPLICATION_SVG_XML:
+                return ResponseSerializers::text;
+            case APPLICATION_OCTET_STREAM:
+                return ResponseSerializers::binary;
+            case APPLICATION_CBOR:
+            case APPLICATION_SMILE:
+            case APPLICATION_MSGPACK:
+                return (response, result) -> encode(response, result, contentType);
+            default:
+                return (response, result) -> notImplemented(response, format("''{0}'' not implemented yet", contentType.getValue()));
+        }
+    }
+
+    public static Object json(Response response, Object result) {
+        return TypifyProvider.engine().toJson(result);
+    }
+
+    /**
+     * Encodes the result with the codec registered for the content type, answering 501 if there is none.
+     */
+    public static Object encode(Response response, Object result, ContentType contentType) {
+        Codec codec = TypifyProvider.codec(contentType);
+        if (codec == null) {
+            return notImplemented(response, format("''{0}'' not available", contentType.getValue()));
+        }
+        try {
+            Object body = codec.encode(result);
+            if (body instanceof byte[]) {
+                response.raw().setContentLength(((byte[]) body).length);
+            }
+            return body;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Object xml(Response response, Object result) {
+        if (result instanceof CharSequence) {
+            // Already rendered by the handler
+            return result.toString();
+        }
+        try {
+            return TypifyProvider.xml().writeValueAsString(result);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Object text(Response response, Object result) {
+        if (result instanceof byte[]) {
+            return result;
+        }
+        return String.valueOf(result);
+    }
+
+    /**
+     * Writes binary payloads without copying them through the heap where the container allows it. Byte arrays are
+     * handed to Spark as they are, while files and direct buffers are given to Jetty, which writes them from its own
+     * buffers. Responses captured by a decoration fall back to copying them to the servlet output stream, like streams.
+     */
+    public static Object binary(Response response, Object result) {
+        if (result == null) {
+            response.raw().setContentLength(0);
+            return "";
+        }
+        if (result instanceof byte[]) {
+            response.raw().setContentLength(((byte[]) result).length);
+            return result;
+        }
+        try {
+            if (result instanceof ByteBuffer) {
+                writeBuffer(response.raw(), (ByteBuffer) result);
+            } else if (result instanceof Path) {
+                writeFile(response.raw(), (Path) result);
+            } else if (result instanceof File) {
+                writeFile(response.raw(), ((File) result).toPath());
+            } else if (result instanceof InputStream) {
+                writeStream(response.raw(), (InputStream) result);
+            } else {
+                return error(response, format("''{0}'' can not be written as ''{1}''",
+                        result.getClass().getName(), ContentType.APPLICATION_OCTET_STREAM.getValue())).getBody();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Body already written, nothing left for Spark to serialize
+        return "";
+    }
+
+    private static void writeBuffer(HttpServletResponse response, ByteBuffer buffer) throws IOException {
+        response.setContentLength(buffer.remaining());
+        OutputStream out = response.getOutputStream();
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else if (out instanceof HttpOutput) {
+            // Written to the connection as it is, and the response completed
+            ((HttpOutput) out).sendContent(buffer);
+            return;
+        } else {
+            WritableByteChannel channel = Channels.newChannel(out);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        out.flush();
+    }
+
+    private static void writeFile(HttpServletResponse response, Path path) throws IOException {
+        try (FileChannel file = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = file.size();
+            response.setContentLengthLong(size);
+            OutputStream out = response.getOutputStream();
+            if (out instanceof HttpOutput) {
+                // Read by Jetty into its pooled buffers, and the response completed
+                ((HttpOutput) out).sendContent(file);
+                return;
+            }
+            WritableByteChannel channel = Channels.newChannel(out);
+            for (long position = 0; position < size; ) {
+                long transferred = file.transferTo(position, size - position, channel);
+                if (transferred <= 0) {
+                    // File shrunk while being served, the client sees a body shorter than its Content-Length
+                    break;
+                }
+                position += transferred;
+            }
+            out.flush();
+        }
+    }
+
+    private static void writeStream(HttpServletResponse response, InputStream in) throws IOException {
+        byte[] buffer = BufferPool.acquire(COPY_BUFFER_SIZE);
+        try (InputStream source = in) {
+            OutputStream out = response.getOutputStream();
+            for (int read; (read = source.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            out.flush();
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package io.github.manusant.ss.route;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that buffers a response body in a pooled buffer. If the whole body fits in the buffer it is sent with
+ * a Content-Length header, otherwise the buffer is flushed to the servlet output stream and the rest of the body is
+ * streamed, letting the container fall back to chunked transfer encoding.
+ *
+ * @author manusant
+ */
+public class ResponseStream extends OutputStream {
+
+    private final HttpServletResponse response;
+    // The pooled buffer may be larger, the requested size still decides when the body starts streaming
+    private final int bufferSize;
+    private byte[] buffer;
+    private int count;
+    private OutputStream out;
+    private boolean closed;
+
+    public ResponseStream(HttpServletResponse response, int bufferSize) {
+        this.response = response;
+        this.bufferSize = Math.max(bufferSize, 1);
+        this.buffer = BufferPool.acquire(this.bufferSize);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count >= bufferSize) {
+            drain();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length > bufferSize - count) {
+            drain();
+            if (length >= bufferSize) {
+                // Large chunk, skip the buffer entirely
+                out.write(bytes, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    /**
+     * @return true once the body outgrew the buffer and is being streamed to the client
+     */
+    public boolean isStreaming() {
+        return out != null;
+    }
+
+    private void drain() throws IOException {
+        if (out == null) {
+            out = response.getOutputStream();
+        }
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (out != null) {
+            drain();
+            out.flush();
+        }
+    }
+
+    /**
+     * Sends what was written so far to the client, even if the body still fits in the buffer. The response is then
+     * committed and the rest of the body is streamed.
+     */
+    public void push() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    /**
+     * Completes the response body. The servlet output stream itself is left open for the container.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (out == null) {
+                // Not flushed so after filters can still set headers
+                response.setContentLength(count);
+                out = response.getOutputStream();
+                out.write(buffer, 0, count);
+            } else {
+                drain();
+                out.flush();
+            }
+        } finally {
+            BufferPool.release(buffer);
+            buffer = null;
+        }
+    }
+}
@@ -1,34 +1,48 @@
 package io.github.manusant.ss.route;
 
-import io.github.manusant.ss.annotation.Content;
-import io.github.manusant.ss.conf.TypifyProvider;
-import io.github.manusant.ss.exception.ReflectionExceptions;
-import io.github.manusant.ss.model.ContentType;
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.jfr.Events;
+import io.github.manusant.ss.jfr.RouteRecording;
 import spark.Request;
 import spark.Response;
 
-import java.lang.reflect.Method;
-
-import static io.github.manusant.ss.rest.RestResponse.notImplemented;
-import static java.text.MessageFormat.format;
-
 /**
  * @author manusant
  */
-public abstract class Route implements spark.Route {
+public abstract class Route implements DescribedRoute {
+
+    private volatile RouteDescriptor descriptor;
 
     public abstract Object onRequest(Request request, Response response);
 
+    @Override
+    public void describe(MethodDescriptor methodDescriptor, OperationBinding binding) {
+        this.descriptor = RouteDescriptor.bind(getClass(), methodDescriptor, binding);
+    }
+
+    protected RouteDescriptor descriptor() {
+        RouteDescriptor current = descriptor;
+        if (current == null) {
+            current = RouteDescriptor.of(getClass());
+            descriptor = current;
+        }
+        return current;
+    }
+
     @Override
     public Object handle(Request request, Response response) {
+        Object notModified = RouteHelper.checkNotModified(request, response, this, descriptor());
+        if (notModified != null) {
+            return notModified;
+        }
+        long start = System.nanoTime();
+        ResourceUsage.Sample sample = RouteHelper.handlerSample(descriptor());
+        RouteRecording event = Events.beginRoute();
         Object result = onRequest(request, response);
-        try {
-            if (result != null) {
-                Method method = getClass().getMethod("onRequest", Request.class, Response.class);
-                return RouteHelper.prepareResponse(response, result, method);
-            }
-        } catch (NoSuchMethodException | SecurityException e) {
-            ReflectionExceptions.handleReflectionException(e);
+        RouteHelper.handlerTime(descriptor(), start, sample);
+        RouteHelper.handlerEvent(request, descriptor(), event);
+        if (result != null) {
+            return RouteHelper.prepareResponse(request, response, result, descriptor());
         }
         return null;
     }
@@ -0,0 +1,436 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.annotation.Content;
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.exception.ReflectionExceptions;
+import io.github.manusant.ss.model.ContentType;
+import spark.ExceptionMapper;
+import spark.Request;
+import spark.Response;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Handler metadata resolved once per route class, so the request path does not need to reflect on the route.
+ *
+ * @author manusant
+ */
+public final class RouteDescriptor {
+
+    private static final ClassValue<RouteDescriptor> DESCRIPTORS = new ClassValue<RouteDescriptor>() {
+        @Override
+        protected RouteDescriptor computeValue(Class<?> routeClass) {
+            return resolve(routeClass);
+        }
+    };
+
+    private final Class<?> routeClass;
+    private final Type bodyType;
+    private final Type paramsType;
+    private final ContentType contentType;
+    private final boolean declaredContent;
+    private final ResponseSerializer serializer;
+    private final MethodDescriptor operation;
+    private final OperationBinding binding;
+    private final ContentType[] produces;
+    private final ResponseSerializer[] producesSerializers;
+    private final ContentType[] elementProduces;
+    private final ContentType[] consumes;
+    private final ParameterBinder binder;
+    private final BodySchemaValidator bodySchema;
+
+    private RouteDescriptor(Class<?> routeClass, Type bodyType, Type paramsType, ContentType contentType, boolean declaredContent, ResponseSerializer serializer, MethodDescriptor operation, OperationBinding binding) {
+        this.routeClass = routeClass;
+        this.bodyType = bodyType;
+        this.paramsType = paramsType;
+        this.contentType = contentType;
+        this.declaredContent = declaredContent;
+        this.serializer = serializer;
+        this.operation = operation;
+        this.binding = binding != null ? binding : OperationBinding.NONE;
+        this.produces = operation != null ? producedTypesOf(operation.getProduces()) : null;
+        this.consumes = operation != null ? contentTypesOf(operation.getConsumes()) : null;
+        if (produces != null) {
+            this.producesSerializers = new ResponseSerializer[produces.length];
+            for (int i = 0; i < produces.length; i++) {
+                producesSerializers[i] = serializerFor(produces[i]);
+            }
+        } else {
+            this.producesSerializers = null;
+        }
+        this.elementProduces = operation != null && operation.isResponseAsCollection() ? elementTypesOf(produces != null ? produces : new ContentType[]{contentType}) : null;
+        Class<?> paramsClass = operation != null && operation.getParamsType() != null ? operation.getParamsType() : rawClassOf(paramsType);
+        this.binder = paramsClass != null ? ParameterBinder.compile(paramsClass, operation) : null;
+        boolean validation = operation != null && Boolean.TRUE.equals(operation.getValidation());
+        this.bodySchema = validation && bodyType != null ? BodySchemaValidator.compile(operation, bodyType) : null;
+    }
+
+    public static RouteDescriptor of(Class<?> routeClass) {
+        return DESCRIPTORS.get(routeClass);
+    }
+
+    /**
+     * Resolves the descriptor of a route class bound to a documented operation. Operations not declaring what they
+     * produce get the content type of the route's {@link Content} annotation.
+     */
+    public static RouteDescriptor bind(Class<?> routeClass, MethodDescriptor operation, OperationBinding binding) {
+        RouteDescriptor descriptor = of(routeClass).withOperation(operation, binding);
+        if (operation != null && operation.getProduces() == null && descriptor.declaredContent) {
+            operation.setProduces(Collections.singletonList(descriptor.contentType.getValue()));
+        }
+        return descriptor;
+    }
+
+    /**
+     * Descriptor of an operation served by a route without route metadata, answering in JSON.
+     */
+    static RouteDescriptor unbound(MethodDescriptor operation) {
+        return unbound(operation, OperationBinding.NONE);
+    }
+
+    static RouteDescriptor unbound(MethodDescriptor operation, OperationBinding binding) {
+        return new RouteDescriptor(null, null, null, ContentType.APPLICATION_JSON, false, serializerFor(ContentType.APPLICATION_JSON), operation, binding);
+    }
+
+    public RouteDescriptor withOperation(MethodDescriptor operation, OperationBinding binding) {
+        return new RouteDescriptor(routeClass, bodyType, paramsType, contentType, declaredContent, serializer, operation, binding);
+    }
+
+    public Class<?> getRouteClass() {
+        return routeClass;
+    }
+
+    public Type getBodyType() {
+        return bodyType;
+    }
+
+    public Type getParamsType() {
+        return paramsType;
+    }
+
+    /**
+     * Binds the request parameters to a new parameters object of the operation.
+     *
+     * @throws io.github.manusant.ss.exception.BindingException if a parameter is missing or has the wrong type
+     */
+    public <P> P bindParams(Request request) {
+        if (binder == null) {
+            throw new IllegalStateException(format("''{0}'' does not declare a parameters type", routeClass.getName()));
+        }
+        return binder.bind(request);
+    }
+
+    /**
+     * @return the schema JSON bodies are validated against before binding, or null if they are not validated
+     */
+    public BodySchemaValidator getBodySchema() {
+        return bodySchema;
+    }
+
+    public ContentType getContentType() {
+        return contentType;
+    }
+
+    public ResponseSerializer getSerializer() {
+        return serializer;
+    }
+
+    /**
+     * @return true if the operation produces more than one content type, so the response type follows the Accept header
+     */
+    public boolean isNegotiable() {
+        return produces != null && produces.length > 1;
+    }
+
+    /**
+     * @return the known content types the operation produces, in declaration order, or null if not declared
+     */
+    public ContentType[] getProduces() {
+        return produces;
+    }
+
+    /**
+     * @return the known content types the operation consumes, in declaration order, or null if not declared
+     */
+    public ContentType[] getConsumes() {
+        return consumes;
+    }
+
+    /**
+     * @return the content types of a collection operation, followed by the newline delimited JSON its elements can be
+     * streamed as, or null if the operation does not answer with a collection
+     */
+    ContentType[] getElementProduces() {
+        return elementProduces;
+    }
+
+    ResponseSerializer producedSerializer(ContentType contentType) {
+        for (int i = 0; i < produces.length; i++) {
+            if (produces[i] == contentType) {
+                return producesSerializers[i];
+            }
+        }
+        return serializerFor(contentType);
+    }
+
+    public MethodDescriptor getOperation() {
+        return operation;
+    }
+
+    public Class<?> getResponseType() {
+        return operation != null ? operation.getResponseType() : null;
+    }
+
+    public boolean isResponseAsCollection() {
+        return operation != null && operation.isResponseAsCollection();
+    }
+
+    public boolean isResponseAsMap() {
+        return operation != null && operation.isResponseAsMap();
+    }
+
+    /**
+     * @return the metrics of the operation, or null if they are not recorded
+     */
+    public OperationMetrics getMetrics() {
+        return binding.getMetrics();
+    }
+
+    /**
+     * @return the exception handlers answering failures of the handler off the server thread, or null if there are none
+     */
+    ExceptionMapper getExceptionMapper() {
+        return binding.getExceptionMapper();
+    }
+
+    public boolean isStreamingResponse() {
+        return operation != null && operation.isStreamingResponse();
+    }
+
+    public int getStreamingBufferSize() {
+        return operation != null ? operation.getStreamingBufferSize() : MethodDescriptor.DEFAULT_STREAMING_BUFFER_SIZE;
+    }
+
+    public long getMaxBodySize() {
+        return operation != null ? operation.getMaxBodySize() : 0;
+    }
+
+    public int getMaxNestingDepth() {
+        return operation != null ? operation.getMaxNestingDepth() : 0;
+    }
+
+    public boolean isCompressed() {
+        return operation != null && Boolean.TRUE.equals(operation.getCompression());
+    }
+
+    public int getCompressionThreshold() {
+        return operation != null && operation.getCompressionThreshold() > 0 ? operation.getCompressionThreshold() : MethodDescriptor.DEFAULT_COMPRESSION_THRESHOLD;
+    }
+
+    public boolean isETag() {
+        return operation != null && operation.isETag();
+    }
+
+    public long getTimeout() {
+        return operation != null ? operation.getTimeout() : 0;
+    }
+
+    static ContentType contentTypeOf(Method method) {
+        Content content = method.getAnnotation(Content.class);
+        return content != null ? content.value() : ContentType.APPLICATION_JSON;
+    }
+
+    static ResponseSerializer serializerFor(ContentType contentType) {
+        return ResponseSerializers.forContentType(contentType);
+    }
+
+    private static ContentType[] contentTypesOf(List<String> mediaTypes) {
+        if (mediaTypes == null || mediaTypes.isEmpty()) {
+            return null;
+        }
+        List<ContentType> contentTypes = new ArrayList<>(mediaTypes.size());
+        for (String mediaType : mediaTypes) {
+            ContentType contentType = ContentType.fromValue(mediaType);
+            if (contentType != null && contentType != ContentType.WILDCARD && !contentTypes.contains(contentType)) {
+                contentTypes.add(contentType);
+            }
+        }
+        return contentTypes.isEmpty() ? null : contentTypes.toArray(new ContentType[0]);
+    }
+
+    private static ContentType[] producedTypesOf(List<String> mediaTypes) {
+        ContentType[] contentTypes = contentTypesOf(mediaTypes);
+        if (contentTypes == null) {
+            return null;
+        }
+        // Newline delimited JSON is implied for collection operations and served by streaming their elements
+        List<ContentType> produced = new ArrayList<>(Arrays.asList(contentTypes));
+        produced.remove(ContentType.APPLICATION_NDJSON);
+        return produced.isEmpty() ? null : produced.toArray(new ContentType[0]);
+    }
+
+    private static ContentType[] elementTypesOf(ContentType[] produces) {
+        ContentType[] contentTypes = Arrays.copyOf(produces, produces.length + 1);
+        contentTypes[produces.length] = ContentType.APPLICATION_NDJSON;
+        return contentTypes;
+    }
+
+    private static RouteDescriptor resolve(Class<?> routeClass) {
+        try {
+            Type bodyType = null;
+            Type paramsType = null;
+            Method handler;
+            if (TypedRoute.class.isAssignableFrom(routeClass) || AsyncTypedRoute.class.isAssignableFrom(routeClass)) {
+                bodyType = resolveTypeArgument(routeClass, TypedRoute.class.isAssignableFrom(routeClass) ? TypedRoute.class : AsyncTypedRoute.class, 0);
+                handler = routeClass.getMethod("onRequest", Object.class, Request.class, Response.class);
+            } else if (StreamingTypedRoute.class.isAssignableFrom(routeClass)) {
+                bodyType = resolveTypeArgument(routeClass, StreamingTypedRoute.class, 0);
+                handler = routeClass.getMethod("onRequest", BodyItems.class, Request.class, Response.class);
+            } else if (BoundRoute.class.isAssignableFrom(routeClass)) {
+                paramsType = resolveTypeArgument(routeClass, BoundRoute.class, 0);
+                handler = routeClass.getMethod("onRequest", Object.class, Request.class, Response.class);
+            } else if (BoundTypedRoute.class.isAssignableFrom(routeClass)) {
+                paramsType = resolveTypeArgument(routeClass, BoundTypedRoute.class, 0);
+                bodyType = resolveTypeArgument(routeClass, BoundTypedRoute.class, 1);
+                handler = routeClass.getMethod("onRequest", Object.class, Object.class, Request.class, Response.class);
+            } else {
+                handler = routeClass.getMethod("onRequest", Request.class, Response.class);
+            }
+            ContentType contentType = contentTypeOf(handler);
+            boolean declaredContent = handler.isAnnotationPresent(Content.class);
+            return new RouteDescriptor(routeClass, bodyType, paramsType, contentType, declaredContent, serializerFor(contentType), null, OperationBinding.NONE);
+        } catch (NoSuchMethodException | SecurityException e) {
+            ReflectionExceptions.handleReflectionException(e);
+        }
+        return null;
+    }
+
+    /**
+     * Resolves a type argument of the generic route a route class extends, replacing the type variables of the classes
+     * in between with the arguments their subclasses give them, so {@code Impl extends Base<Item>} with
+     * {@code Base<T> extends TypedRoute<T>} resolves to Item.
+     */
+    private static Type resolveTypeArgument(Class<?> routeClass, Class<?> genericRoute, int index) {
+        Map<TypeVariable<?>, Type> arguments = Collections.emptyMap();
+        for (Class<?> type = routeClass; type != null && type != genericRoute; type = type.getSuperclass()) {
+            Type superType = type.getGenericSuperclass();
+            if (!(superType instanceof ParameterizedType)) {
+                // Extended as a raw type, so the variables of the superclass are not known
+                arguments = Collections.emptyMap();
+                continue;
+            }
+            Type[] actual = ((ParameterizedType) superType).getActualTypeArguments();
+            if (((ParameterizedType) superType).getRawType() == genericRoute) {
+                return substitute(actual[index], arguments);
+            }
+            TypeVariable<?>[] variables = type.getSuperclass().getTypeParameters();
+            Map<TypeVariable<?>, Type> superArguments = new HashMap<>();
+            for (int i = 0; i < variables.length; i++) {
+                superArguments.put(variables[i], substitute(actual[i], arguments));
+            }
+            arguments = superArguments;
+        }
+        throw new IllegalStateException(format("Unable to resolve type arguments of ''{0}''", routeClass.getName()));
+    }
+
+    private static Type substitute(Type type, Map<TypeVariable<?>, Type> arguments) {
+        if (type instanceof TypeVariable) {
+            return arguments.getOrDefault(type, type);
+        }
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterized = (ParameterizedType) type;
+            Type[] actual = parameterized.getActualTypeArguments();
+            Type[] substituted = new Type[actual.length];
+            boolean changed = false;
+            for (int i = 0; i < actual.length; i++) {
+                substituted[i] = substitute(actual[i], arguments);
+                changed |= substituted[i] != actual[i];
+            }
+            return changed ? new ResolvedParameterizedType(parameterized.getRawType(), parameterized.getOwnerType(), substituted) : type;
+        }
+        if (type instanceof GenericArrayType) {
+            Type component = substitute(((GenericArrayType) type).getGenericComponentType(), arguments);
+            return component instanceof Class ? Array.newInstance((Class<?>) component, 0).getClass() : type;
+        }
+        return type;
+    }
+
+    private static Class<?> rawClassOf(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return null;
+    }
+
+    /**
+     * Parameterized type whose arguments were resolved from the type arguments of a subclass.
+     */
+    private static final class ResolvedParameterizedType implements ParameterizedType {
+
+        private final Type rawType;
+        private final Type ownerType;
+        private final Type[] arguments;
+
+        private ResolvedParameterizedType(Type rawType, Type ownerType, Type[] arguments) {
+            this.rawType = rawType;
+            this.ownerType = ownerType;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public Type[] getActualTypeArguments() {
+            return arguments.clone();
+        }
+
+        @Override
+        public Type getRawType() {
+            return rawType;
+        }
+
+        @Override
+        public Type getOwnerType() {
+            return ownerType;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ParameterizedType)) {
+                return false;
+            }
+            ParameterizedType that = (ParameterizedType) o;
+            return rawType.equals(that.getRawType()) && Objects.equals(ownerType, that.getOwnerType()) && Arrays.equals(arguments, that.getActualTypeArguments());
+        }
+
+        @Override
+        public int hashCode() {
+            // Same as the parameterized types of the JDK, so both kinds can be mixed as map keys
+            return Arrays.hashCode(arguments) ^ Objects.hashCode(ownerType) ^ Objects.hashCode(rawType);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder name = new StringBuilder(rawType.getTypeName()).append('<');
+            for (int i = 0; i < arguments.length; i++) {
+                name.append(i > 0 ? ", " : "").append(arguments[i].getTypeName());
+            }
+            return name.append('>').toString();
+        }
+    }
+}
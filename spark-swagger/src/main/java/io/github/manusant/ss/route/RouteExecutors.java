@@ -0,0 +1,53 @@
+package io.github.manusant.ss.route;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors route handlers are offloaded to.
+ *
+ * @author manusant
+ */
+@Slf4j
+public final class RouteExecutors {
+
+    public static final int DEFAULT_POOL_SIZE = 200;
+
+    private RouteExecutors() {
+    }
+
+    /**
+     * Creates a virtual thread per task executor when the runtime supports it (Java 21+), otherwise a bounded pool of
+     * platform threads rejecting tasks once its queue is full.
+     */
+    public static ExecutorService handlerExecutor(int poolSize) {
+        try {
+            ExecutorService executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.debug("Spark-Swagger: route handlers run on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Virtual threads unavailable or still in preview
+            int size = poolSize > 0 ? poolSize : DEFAULT_POOL_SIZE;
+            log.debug("Spark-Swagger: virtual threads unavailable, route handlers run on a pool of {} threads", size);
+            return boundedExecutor(size);
+        }
+    }
+
+    public static ExecutorService boundedExecutor(int poolSize) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(poolSize), runnable -> {
+            Thread thread = new Thread(runnable, "spark-swagger-handler-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
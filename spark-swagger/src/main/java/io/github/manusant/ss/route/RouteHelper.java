@@ -1,26 +1,389 @@
 package io.github.manusant.ss.route;
 
-import io.github.manusant.ss.annotation.Content;
 import io.github.manusant.ss.conf.TypifyProvider;
+import io.github.manusant.ss.exception.PayloadLimitException;
+import io.github.manusant.ss.exception.SchemaViolationException;
+import io.github.manusant.ss.jfr.Events;
+import io.github.manusant.ss.jfr.RouteRecording;
+import io.github.manusant.ss.model.ContentEncoding;
 import io.github.manusant.ss.model.ContentType;
+import io.github.manusant.ss.rest.ValidationError;
+import io.github.manusant.ss.serialization.Codec;
+import spark.Request;
 import spark.Response;
+import spark.embeddedserver.jetty.HttpRequestWrapper;
 
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
 
-import static io.github.manusant.ss.rest.RestResponse.notImplemented;
+import static io.github.manusant.ss.rest.RestResponse.badRequest;
+import static io.github.manusant.ss.rest.RestResponse.payloadTooLarge;
+import static io.github.manusant.ss.rest.RestResponse.unsupportedMediaType;
 import static java.text.MessageFormat.format;
 
 public class RouteHelper {
 
+    public static Object prepareResponse(Response response, Object result, RouteDescriptor descriptor) {
+        response.type(descriptor.getContentType().getValue());
+        if (descriptor.isStreamingResponse() && descriptor.getContentType() == ContentType.APPLICATION_JSON) {
+            return streamJson(response, result, descriptor.getStreamingBufferSize());
+        }
+        return descriptor.getSerializer().serialize(response, result);
+    }
+
+    /**
+     * Serializes the result in the content type negotiated from the request Accept header when the operation produces
+     * more than one content type, tagging it with an ETag and compressing it when the operation enables them.
+     */
+    public static Object prepareResponse(Request request, Response response, Object result, RouteDescriptor descriptor) {
+        OperationMetrics metrics = descriptor.getMetrics();
+        RouteRecording event = Events.beginRoute();
+        if (metrics == null && event == null) {
+            return serialize(request, response, result, descriptor);
+        }
+        long start = System.nanoTime();
+        ResourceUsage.Sample sample = metrics != null ? metrics.getSerializationUsage().start() : null;
+        long written = event != null ? written(request) : -1;
+        Object body = null;
+        try {
+            body = serialize(request, response, result, descriptor);
+            return body;
+        } finally {
+            if (sample != null) {
+                sample.end();
+            }
+            if (metrics != null) {
+                metrics.getSerialization().record(System.nanoTime() - start);
+            }
+            if (Events.shouldCommit(event)) {
+                // Bodies written by the serialization plus the one left for Spark to write
+                long pending = sizeOf(body);
+                long responseBytes = written >= 0 && pending >= 0 ? written(request) - written + pending : -1;
+                Events.commitRoute(event, Events.SERIALIZATION, descriptor.getOperation(), request.raw().getContentLengthLong(), responseBytes);
+            }
+        }
+    }
+
+    /**
+     * Starts measuring the heap allocation and CPU time of the handler of the operation, if the request is sampled.
+     *
+     * @return the sample to pass to {@link #handlerTime(RouteDescriptor, long, ResourceUsage.Sample)}, or null
+     */
+    static ResourceUsage.Sample handlerSample(RouteDescriptor descriptor) {
+        OperationMetrics metrics = descriptor.getMetrics();
+        return metrics != null ? metrics.getHandlerUsage().start() : null;
+    }
+
+    /**
+     * Records the time the handler of the operation took since the given {@link System#nanoTime()}, along with its
+     * resource usage if the request was sampled, if the operation records metrics.
+     */
+    static void handlerTime(RouteDescriptor descriptor, long start, ResourceUsage.Sample sample) {
+        if (sample != null) {
+            sample.end();
+        }
+        OperationMetrics metrics = descriptor.getMetrics();
+        if (metrics != null) {
+            metrics.getHandler().record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Commits the handler event of the operation, if Flight Recorder records it.
+     */
+    static void handlerEvent(Request request, RouteDescriptor descriptor, RouteRecording event) {
+        if (Events.shouldCommit(event)) {
+            Events.commitRoute(event, Events.HANDLER, descriptor.getOperation(), request.raw().getContentLengthLong(), -1);
+        }
+    }
+
+    /**
+     * @return the bytes of response body written to the servlet output stream so far, compressed ones included, or -1
+     * if the server does not tell
+     */
+    static long written(Request request) {
+        org.eclipse.jetty.server.Request base = org.eclipse.jetty.server.Request.getBaseRequest(request.raw());
+        return base != null ? base.getResponse().getHttpOutput().getWritten() : -1;
+    }
+
+    /**
+     * @return the bytes Spark writes for the result of a route, or -1 if they can not be told without serializing it
+     */
+    static long sizeOf(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof byte[]) {
+            return ((byte[]) result).length;
+        }
+        if (result instanceof String) {
+            String body = (String) result;
+            long size = 0;
+            for (int i = 0; i < body.length(); i++) {
+                char c = body.charAt(i);
+                if (c < 0x80) {
+                    size++;
+                } else if (c < 0x800) {
+                    size += 2;
+                } else if (Character.isHighSurrogate(c) && i + 1 < body.length() && Character.isLowSurrogate(body.charAt(i + 1))) {
+                    size += 4;
+                    i++;
+                } else {
+                    size += 3;
+                }
+            }
+            return size;
+        }
+        return -1;
+    }
+
+    /**
+     * Records the time the asynchronous handler of the operation took since the given {@link System#nanoTime()}, once
+     * its result completes.
+     */
+    static <T extends CompletionStage<?>> T handlerTime(RouteDescriptor descriptor, long start, T stage) {
+        OperationMetrics metrics = descriptor.getMetrics();
+        if (metrics != null && stage != null) {
+            stage.whenComplete((result, failure) -> metrics.getHandler().record(System.nanoTime() - start));
+        }
+        return stage;
+    }
+
+    private static Object serialize(Request request, Response response, Object result, RouteDescriptor descriptor) {
+        if (descriptor.isResponseAsCollection() || ElementStream.isLazy(result)) {
+            if (isNdjson(request, response, descriptor) && ElementStream.isElements(result)) {
+                response.type(ContentType.APPLICATION_NDJSON.getValue());
+                return ElementStream.write(response, result, true, descriptor.getStreamingBufferSize(),
+                        negotiateEncoding(request, response, descriptor), descriptor.getCompressionThreshold());
+            }
+            if (ElementStream.isLazy(result)) {
+                if (negotiateContentType(request, response, descriptor) == ContentType.APPLICATION_JSON) {
+                    response.type(ContentType.APPLICATION_JSON.getValue());
+                    return ElementStream.write(response, result, false, descriptor.getStreamingBufferSize(),
+                            negotiateEncoding(request, response, descriptor), descriptor.getCompressionThreshold());
+                }
+                result = ElementStream.collect(result);
+            }
+        }
+        if (!descriptor.isNegotiable() && !descriptor.isCompressed() && !descriptor.isETag()) {
+            return prepareResponse(response, result, descriptor);
+        }
+        ContentType contentType = negotiateContentType(request, response, descriptor);
+        ResponseSerializer serializer = descriptor.isNegotiable() ? descriptor.producedSerializer(contentType) : descriptor.getSerializer();
+        response.type(contentType.getValue());
+
+        ContentEncoding encoding = negotiateEncoding(request, response, descriptor);
+        if (descriptor.isStreamingResponse()) {
+            Codec codec = TypifyProvider.codec(contentType);
+            if (codec != null) {
+                return stream(response, result, codec, descriptor.getStreamingBufferSize(), encoding, descriptor.getCompressionThreshold());
+            }
+        }
+        Object body = serializer.serialize(response, result);
+        if (descriptor.isETag()) {
+            body = ETags.tag(request, response, body, ETags.representation(descriptor.isNegotiable() ? contentType : null, encoding));
+        }
+        return Compression.compress(response, body, encoding, descriptor.getCompressionThreshold());
+    }
+
+    /**
+     * Answers 304 before the handler runs when the version supplied by a {@link ConditionalRoute} shows the client is
+     * up to date.
+     *
+     * @return an empty body if the request was answered, otherwise null
+     */
+    public static Object checkNotModified(Request request, Response response, Object route, RouteDescriptor descriptor) {
+        if (!descriptor.isETag() || !(route instanceof ConditionalRoute)) {
+            return null;
+        }
+        if (isNdjson(request, response, descriptor)) {
+            // Streamed elements are not tagged
+            return null;
+        }
+        ContentType contentType = negotiateContentType(request, response, descriptor);
+        ContentEncoding encoding = negotiateEncoding(request, response, descriptor);
+        String representation = ETags.representation(descriptor.isNegotiable() ? contentType : null, encoding);
+        return ETags.checkNotModified(request, response, (ConditionalRoute) route, representation);
+    }
+
+    private static ContentType negotiateContentType(Request request, Response response, RouteDescriptor descriptor) {
+        if (!descriptor.isNegotiable()) {
+            return descriptor.getContentType();
+        }
+        setVary(response, "Accept");
+        return ContentNegotiation.negotiate(request.headers("Accept"), descriptor.getProduces());
+    }
+
+    /**
+     * @return true if the client prefers the elements of a collection operation as newline delimited JSON
+     */
+    private static boolean isNdjson(Request request, Response response, RouteDescriptor descriptor) {
+        if (descriptor.getElementProduces() == null) {
+            return false;
+        }
+        setVary(response, "Accept");
+        return isNdjson(request, descriptor);
+    }
+
+    static boolean isNdjson(Request request, RouteDescriptor descriptor) {
+        ContentType[] produces = descriptor.getElementProduces();
+        return produces != null && ContentNegotiation.negotiate(request.headers("Accept"), produces) == ContentType.APPLICATION_NDJSON;
+    }
+
+    private static ContentEncoding negotiateEncoding(Request request, Response response, RouteDescriptor descriptor) {
+        if (!descriptor.isCompressed()) {
+            return ContentEncoding.IDENTITY;
+        }
+        setVary(response, "Accept-Encoding");
+        return Compression.negotiate(request.headers("Accept-Encoding"));
+    }
+
+    private static void setVary(Response response, String header) {
+        HttpServletResponse raw = response.raw();
+        // Conditional routes negotiate before the handler runs too
+        if (!raw.getHeaders("Vary").contains(header)) {
+            raw.addHeader("Vary", header);
+        }
+    }
+
     public static Object prepareResponse(Response response, Object result, Method method) {
-        Content content = method.getAnnotation(Content.class);
-        ContentType contentType = content != null ? content.value():ContentType.APPLICATION_JSON;
+        ContentType contentType = RouteDescriptor.contentTypeOf(method);
         response.type(contentType.getValue());
+        return RouteDescriptor.serializerFor(contentType).serialize(response, result);
+    }
+
+    /**
+     * Serializes the result straight into the servlet output stream.
+     *
+     * @return an empty body, so Spark has nothing left to write
+     */
+    public static Object streamJson(Response response, Object result, int bufferSize) {
+        return stream(response, result, TypifyProvider.codec(ContentType.APPLICATION_JSON), bufferSize);
+    }
+
+    /**
+     * Encodes the result with the given codec straight into the servlet output stream.
+     *
+     * @return an empty body, so Spark has nothing left to write
+     */
+    public static Object stream(Response response, Object result, Codec codec, int bufferSize) {
+        return stream(response, result, codec, bufferSize, ContentEncoding.IDENTITY, 0);
+    }
+
+    /**
+     * Encodes the result with the given codec straight into the servlet output stream, compressing it once it reaches
+     * the compression threshold.
+     *
+     * @return an empty body, so Spark has nothing left to write
+     */
+    public static Object stream(Response response, Object result, Codec codec, int bufferSize, ContentEncoding encoding, int compressionThreshold) {
+        ResponseStream responseStream = new ResponseStream(response.raw(), bufferSize);
+        try (OutputStream out = encoding == ContentEncoding.IDENTITY
+                ? responseStream
+                : new CompressingStream(response.raw(), responseStream, encoding, compressionThreshold)) {
+            codec.write(result, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return "";
+    }
+
+    /**
+     * Deserializes the request body straight from the request input stream, enforcing the body limits of the route.
+     *
+     * Operations declaring what they consume are decoded according to the request Content-Type.
+     *
+     * @throws PayloadLimitException if the body breaks one of the limits or its content type is not consumed (415)
+     */
+    public static <T> T readBody(Request request, RouteDescriptor descriptor) throws PayloadLimitException {
+        long maxBodySize = descriptor.getMaxBodySize();
+        if (maxBodySize > 0 && request.contentLength() > maxBodySize) {
+            // Declared length is already too large, reject before reading anything
+            throw new PayloadLimitException(413, format("Request body exceeds the maximum size of {0} bytes", String.valueOf(maxBodySize)));
+        }
+        Codec codec = bodyCodec(request, descriptor);
+        // Nesting is tracked on JSON tokens, so it is only enforced for JSON bodies
+        int maxNestingDepth = codec.getContentType() == ContentType.APPLICATION_JSON ? descriptor.getMaxNestingDepth() : 0;
+        BodySchemaValidator bodySchema = codec.getContentType() == ContentType.APPLICATION_JSON ? descriptor.getBodySchema() : null;
+        try (InputStream in = new LimitedBodyStream(bodyStream(request), maxBodySize, maxNestingDepth)) {
+            if (bodySchema == null) {
+                return codec.read(in, descriptor.getBodyType());
+            }
+            // Validated before binding, so the body is buffered for the second read
+            BodyBuffer body = BodyBuffer.read(in, request.contentLength());
+            ValidationError violation = bodySchema.validate(body.bytes(), 0, body.size());
+            if (violation != null) {
+                throw new SchemaViolationException(violation);
+            }
+            return codec.read(body.asInputStream(), descriptor.getBodyType());
+        } catch (IOException | RuntimeException e) {
+            PayloadLimitException limitException = PayloadLimitException.find(e);
+            if (limitException != null) {
+                throw limitException;
+            }
+            if (e instanceof IOException) {
+                throw new UncheckedIOException((IOException) e);
+            }
+            throw (RuntimeException) e;
+        }
+    }
+
+    /**
+     * Maps a rejected request body to its error response.
+     */
+    public static Object rejection(Response response, PayloadLimitException e) {
+        if (e instanceof SchemaViolationException) {
+            return ValidationError.badRequest(response, ((SchemaViolationException) e).getError());
+        }
+        switch (e.getStatus()) {
+            case 413:
+                return payloadTooLarge(response, e.getMessage());
+            case 415:
+                return unsupportedMediaType(response, e.getMessage());
+            default:
+                return badRequest(response, e.getMessage());
+        }
+    }
+
+    static Codec bodyCodec(Request request, RouteDescriptor descriptor) throws PayloadLimitException {
+        ContentType[] consumes = descriptor.getConsumes();
+        if (consumes == null) {
+            return TypifyProvider.codec(ContentType.APPLICATION_JSON);
+        }
+        String header = request.contentType();
+        ContentType contentType = header != null ? ContentType.fromValue(header) : consumes[0];
+        Codec codec = null;
+        for (ContentType consumed : consumes) {
+            if (consumed == contentType) {
+                codec = TypifyProvider.codec(contentType);
+                break;
+            }
+        }
+        if (codec == null) {
+            throw new PayloadLimitException(415, format("Content type ''{0}'' is not supported", header));
+        }
+        return codec;
+    }
 
-        if (contentType == ContentType.APPLICATION_JSON) {
-            return TypifyProvider.json().toJson(result);
-        } else {
-            return notImplemented(response, format("'{0}' not implemented yet", contentType.getValue()));
+    /**
+     * Spark's embedded Jetty wrapper copies the whole body into a byte array as soon as its input stream is requested,
+     * so the wrapped request is read instead unless the body was already consumed through Spark.
+     */
+    static InputStream bodyStream(Request request) throws IOException {
+        ServletRequest raw = request.raw();
+        if (raw instanceof HttpRequestWrapper) {
+            ServletInputStream in = ((HttpRequestWrapper) raw).getRequest().getInputStream();
+            if (!in.isFinished()) {
+                return in;
+            }
         }
+        return raw.getInputStream();
     }
 }
@@ -0,0 +1,131 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Requests of an operation in flight by key, so identical concurrent requests wait for the response of the first one
+ * instead of running the handler again.
+ *
+ * @author manusant
+ */
+public final class SingleFlight {
+
+    private final String name;
+    private final long maxWait;
+    private final Map<String, CompletableFuture<SharedResponse>> flights = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    /**
+     * @param maxWait how long in millis identical requests wait for the first one before running on their own
+     */
+    public SingleFlight(String name, long maxWait) {
+        if (maxWait <= 0) {
+            throw new IllegalArgumentException("Single flight wait must be positive");
+        }
+        this.name = name;
+        this.maxWait = maxWait;
+    }
+
+    /**
+     * @return the single flight of an operation, named like its load shedding limiter
+     */
+    public static SingleFlight of(MethodDescriptor operation) {
+        return new SingleFlight(LoadShedder.operationIdOf(operation), operation.getSingleFlightWait());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getMaxWait() {
+        return maxWait;
+    }
+
+    /**
+     * @return requests that ran the handler for the others
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * @return requests answered with the response of an identical request
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return requests that waited for an identical request but ran the handler themselves, because it did not
+     * complete in time or its response could not be shared
+     */
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    public int getInFlight() {
+        return flights.size();
+    }
+
+    /**
+     * @return the flight already running for the key, or null if the given one was registered and has to be run
+     */
+    CompletableFuture<SharedResponse> join(String key, CompletableFuture<SharedResponse> flight) {
+        CompletableFuture<SharedResponse> running = flights.putIfAbsent(key, flight);
+        if (running == null) {
+            executions.increment();
+        }
+        return running;
+    }
+
+    /**
+     * @return the response of the running flight, or null if the caller has to run the handler itself
+     */
+    SharedResponse await(CompletableFuture<SharedResponse> flight) {
+        SharedResponse response = null;
+        try {
+            response = flight.get(maxWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // Falls through to its own execution
+        }
+        if (response != null) {
+            coalesced.increment();
+        } else {
+            fallbacks.increment();
+        }
+        return response;
+    }
+
+    /**
+     * Hands the response of a flight to the requests waiting for it, null if they have to run on their own.
+     */
+    void complete(String key, CompletableFuture<SharedResponse> flight, SharedResponse response) {
+        flights.remove(key, flight);
+        flight.complete(response);
+    }
+
+    static final class SharedResponse {
+
+        final int status;
+        final String[] headers;
+        final byte[] body;
+
+        SharedResponse(int status, String[] headers, byte[] body) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.manusant.ss.route;
+
+import spark.Service;
+
+import java.lang.reflect.Field;
+
+/**
+ * Reads the state a Spark service keeps to itself, such as the routes and exception handlers it matches requests with.
+ *
+ * @author manusant
+ */
+final class SparkInternals {
+
+    private SparkInternals() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> T fieldOf(Service spark, String name) throws ReflectiveOperationException {
+        Field field = Service.class.getDeclaredField(name);
+        field.setAccessible(true);
+        return (T) field.get(spark);
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.exception.PayloadLimitException;
+import io.github.manusant.ss.jfr.Events;
+import io.github.manusant.ss.jfr.RouteRecording;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Typed route for collection request bodies too large to be read into memory. The handler gets the elements of the
+ * JSON array body as they are parsed, either as an iterator or through {@link BodyItems#stream()}.
+ * <p>
+ * Limit violations, malformed JSON and invalid elements found while the handler consumes the elements are answered with
+ * the same error responses as a {@link TypedRoute}, invalid elements carrying their index.
+ *
+ * @author manusant
+ */
+public abstract class StreamingTypedRoute<T> implements DescribedRoute {
+
+    private volatile RouteDescriptor descriptor;
+
+    public abstract Object onRequest(BodyItems<T> items, Request request, Response response);
+
+    @Override
+    public void describe(MethodDescriptor methodDescriptor, OperationBinding binding) {
+        // Documented as an array of the element type
+        methodDescriptor.setRequestAsCollection(true);
+        this.descriptor = RouteDescriptor.bind(getClass(), methodDescriptor, binding);
+    }
+
+    protected RouteDescriptor descriptor() {
+        RouteDescriptor current = descriptor;
+        if (current == null) {
+            current = RouteDescriptor.of(getClass());
+            descriptor = current;
+        }
+        return current;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) {
+        RouteDescriptor routeDescriptor = descriptor();
+        Object notModified = RouteHelper.checkNotModified(request, response, this, routeDescriptor);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        try (BodyItems<T> items = BodyItems.open(request, routeDescriptor)) {
+            long start = System.nanoTime();
+            ResourceUsage.Sample sample = RouteHelper.handlerSample(routeDescriptor);
+            RouteRecording event = Events.beginRoute();
+            Object result = onRequest(items, request, response);
+            RouteHelper.handlerTime(routeDescriptor, start, sample);
+            RouteHelper.handlerEvent(request, routeDescriptor, event);
+            // Lazy results may still be consuming the elements
+            return RouteHelper.prepareResponse(request, response, result, routeDescriptor);
+        } catch (PayloadLimitException e) {
+            return RouteHelper.prepareResponse(request, response, RouteHelper.rejection(response, e), routeDescriptor);
+        } catch (RuntimeException e) {
+            PayloadLimitException limitException = PayloadLimitException.find(e);
+            if (limitException == null) {
+                throw e;
+            }
+            return RouteHelper.prepareResponse(request, response, RouteHelper.rejection(response, limitException), routeDescriptor);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.manusant.ss.route;
+
+import spark.HaltException;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Records the total time requests spend in an operation route, from the moment it is entered until the response is
+ * complete, detached requests included, along with the requests in flight, the response status and the size of the
+ * request and response bodies.
+ * <p>
+ * Handler and serialization times are recorded by the route itself. Plain Spark routes serialize their own results,
+ * so their whole time, and resource usage when sampled, is recorded as handler time.
+ *
+ * @author manusant
+ */
+public class TimedRoute implements spark.Route {
+
+    private final spark.Route delegate;
+    private final OperationMetrics metrics;
+    private final boolean described;
+
+    public TimedRoute(spark.Route delegate, OperationMetrics metrics, boolean described) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.described = described;
+    }
+
+    public spark.Route getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        long start = System.nanoTime();
+        metrics.started();
+        ResourceUsage.Sample sample = described ? null : metrics.getHandlerUsage().start();
+        Object result = null;
+        int failure = 0;
+        try {
+            result = delegate.handle(request, response);
+            return result;
+        } catch (HaltException e) {
+            failure = e.statusCode();
+            throw e;
+        } catch (Exception | Error e) {
+            failure = 500;
+            throw e;
+        } finally {
+            // Checked first, so requests completing on the server thread do not allocate a callback
+            if (AsyncExchange.isDetached(request)) {
+                AsyncExchange.whenComplete(request, () -> record(start, request, response, response.raw().getStatus(), 0));
+            } else {
+                if (sample != null) {
+                    sample.end();
+                }
+                record(start, request, response, failure != 0 ? failure : response.raw().getStatus(), failure != 0 ? -1 : RouteHelper.sizeOf(result));
+            }
+        }
+    }
+
+    private void record(long start, Request request, Response response, int status, long pending) {
+        long elapsed = System.nanoTime() - start;
+        if (!described) {
+            metrics.getHandler().record(elapsed);
+        }
+        org.eclipse.jetty.server.Request base = org.eclipse.jetty.server.Request.getBaseRequest(request.raw());
+        long requestSize = request.raw().getContentLengthLong();
+        long responseSize = -1;
+        if (base != null) {
+            requestSize = Math.max(requestSize, base.getHttpInput().getContentConsumed());
+            // Bodies written by the route, compressed ones included, plus the result Spark is left to write
+            responseSize = pending >= 0 ? base.getResponse().getHttpOutput().getWritten() + pending : -1;
+        }
+        metrics.completed(elapsed, status, requestSize, responseSize);
+    }
+}
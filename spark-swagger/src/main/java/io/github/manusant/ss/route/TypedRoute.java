@@ -1,46 +1,56 @@
 package io.github.manusant.ss.route;
 
-import io.github.manusant.ss.annotation.Content;
-import io.github.manusant.ss.conf.TypifyProvider;
-import io.github.manusant.ss.exception.ReflectionExceptions;
-import io.github.manusant.ss.model.ContentType;
-import io.github.manusant.ss.rest.RestResponse;
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.exception.PayloadLimitException;
+import io.github.manusant.ss.jfr.Events;
+import io.github.manusant.ss.jfr.RouteRecording;
 import spark.Request;
 import spark.Response;
-import spark.Route;
-
-import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
-import java.text.MessageFormat;
-
-import static io.github.manusant.ss.rest.RestResponse.notImplemented;
-import static java.text.MessageFormat.format;
 
 /**
  * @author manusant
  */
-@SuppressWarnings({"unchecked"})
-public abstract class TypedRoute<T> implements Route {
+public abstract class TypedRoute<T> implements DescribedRoute {
+
+    private volatile RouteDescriptor descriptor;
 
     public abstract Object onRequest(T body, Request request, Response response);
 
     @Override
-    public Object handle(Request request, Response response) {
-        try {
-            Class<T> typeOfT = (Class<T>) ((ParameterizedType) getClass()
-                    .getGenericSuperclass())
-                    .getActualTypeArguments()[0];
+    public void describe(MethodDescriptor methodDescriptor, OperationBinding binding) {
+        this.descriptor = RouteDescriptor.bind(getClass(), methodDescriptor, binding);
+    }
 
-            T requestObject = TypifyProvider.json().fromJson(request.body(), typeOfT);
+    protected RouteDescriptor descriptor() {
+        RouteDescriptor current = descriptor;
+        if (current == null) {
+            current = RouteDescriptor.of(getClass());
+            descriptor = current;
+        }
+        return current;
+    }
 
-            // Set content type on response to application/json
-            Object result = onRequest(requestObject, request, response);
+    @Override
+    public Object handle(Request request, Response response) {
+        RouteDescriptor routeDescriptor = descriptor();
+        Object notModified = RouteHelper.checkNotModified(request, response, this, routeDescriptor);
+        if (notModified != null) {
+            return notModified;
+        }
 
-            Method method = getClass().getMethod("onRequest", Object.class, Request.class, Response.class);
-            return RouteHelper.prepareResponse(response, result, method);
-        } catch (NoSuchMethodException | SecurityException e) {
-            ReflectionExceptions.handleReflectionException(e);
+        T requestObject;
+        try {
+            requestObject = RouteHelper.readBody(request, routeDescriptor);
+        } catch (PayloadLimitException e) {
+            return RouteHelper.prepareResponse(request, response, RouteHelper.rejection(response, e), routeDescriptor);
         }
-        return null;
+
+        long start = System.nanoTime();
+        ResourceUsage.Sample sample = RouteHelper.handlerSample(routeDescriptor);
+        RouteRecording event = Events.beginRoute();
+        Object result = onRequest(requestObject, request, response);
+        RouteHelper.handlerTime(routeDescriptor, start, sample);
+        RouteHelper.handlerEvent(request, routeDescriptor, event);
+        return RouteHelper.prepareResponse(request, response, result, routeDescriptor);
     }
 }
@@ -0,0 +1,37 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.rest.ValidationError;
+import spark.Request;
+import spark.Response;
+
+/**
+ * Answers 400 before the handler runs when the request breaks the parameters declared for the operation.
+ *
+ * @author manusant
+ */
+public class ValidatingRoute implements spark.Route {
+
+    private final spark.Route delegate;
+    private final RequestValidator validator;
+    private final RouteDescriptor descriptor;
+
+    public ValidatingRoute(spark.Route delegate, RequestValidator validator, MethodDescriptor operation, OperationBinding binding) {
+        this.delegate = delegate;
+        this.validator = validator;
+        this.descriptor = RouteDescriptor.unbound(operation, binding);
+    }
+
+    public spark.Route getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+        ValidationError error = validator.validate(request);
+        if (error != null) {
+            return RouteHelper.prepareResponse(request, response, ValidationError.badRequest(response, error), descriptor);
+        }
+        return delegate.handle(request, response);
+    }
+}
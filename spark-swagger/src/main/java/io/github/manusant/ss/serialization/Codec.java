@@ -0,0 +1,27 @@
+package io.github.manusant.ss.serialization;
+
+import io.github.manusant.ss.model.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Encoder/decoder for one negotiable body format.
+ *
+ * @author manusant
+ */
+public interface Codec {
+
+    ContentType getContentType();
+
+    /**
+     * @return the encoded body, either a String for text formats or a byte[] for binary ones
+     */
+    Object encode(Object value) throws IOException;
+
+    void write(Object value, OutputStream out) throws IOException;
+
+    <T> T read(InputStream in, Type type) throws IOException;
+}
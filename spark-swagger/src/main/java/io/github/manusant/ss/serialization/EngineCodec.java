@@ -0,0 +1,42 @@
+package io.github.manusant.ss.serialization;
+
+import io.github.manusant.ss.model.ContentType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * JSON codec delegating to a {@link SerializationEngine}.
+ *
+ * @author manusant
+ */
+public class EngineCodec implements Codec {
+
+    private final SerializationEngine engine;
+
+    public EngineCodec(SerializationEngine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public ContentType getContentType() {
+        return ContentType.APPLICATION_JSON;
+    }
+
+    @Override
+    public Object encode(Object value) {
+        return engine.toJson(value);
+    }
+
+    @Override
+    public void write(Object value, OutputStream out) throws IOException {
+        engine.writeJson(value, out);
+    }
+
+    @Override
+    public <T> T read(InputStream in, Type type) throws IOException {
+        return engine.readJson(in, type);
+    }
+}
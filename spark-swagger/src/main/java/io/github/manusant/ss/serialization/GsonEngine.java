@@ -0,0 +1,84 @@
+package io.github.manusant.ss.serialization;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.github.manusant.ss.conf.IgnoreSpec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author manusant
+ */
+public class GsonEngine implements SerializationEngine {
+
+    private final boolean prettyPrint;
+    private final Gson gson;
+
+    public GsonEngine(boolean prettyPrint) {
+        this(prettyPrint, null);
+    }
+
+    private GsonEngine(boolean prettyPrint, IgnoreSpec ignoreSpec) {
+        this.prettyPrint = prettyPrint;
+        this.gson = createBuilder(prettyPrint, ignoreSpec).create();
+    }
+
+    private static GsonBuilder createBuilder(boolean prettyPrint, IgnoreSpec ignoreSpec) {
+        GsonBuilder builder = new GsonBuilder()
+                .setExclusionStrategies(new ExclusionStrategy() {
+                    @Override
+                    public boolean shouldSkipField(FieldAttributes fieldAttributes) {
+                        return ignoreSpec != null && (ignoreSpec.ignoreAnnotated(fieldAttributes) || ignoreSpec.ignored(fieldAttributes));
+                    }
+
+                    @Override
+                    public boolean shouldSkipClass(Class<?> aClass) {
+                        return false;
+                    }
+                });
+        if (prettyPrint) {
+            builder.setPrettyPrinting();
+        }
+        return builder;
+    }
+
+    public Gson getGson() {
+        return gson;
+    }
+
+    @Override
+    public String toJson(Object value) {
+        return gson.toJson(value);
+    }
+
+    @Override
+    public <T> T fromJson(String json, Type type) {
+        return gson.fromJson(json, type);
+    }
+
+    @Override
+    public <T> T readJson(InputStream in, Type type) {
+        return gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), type);
+    }
+
+    @Override
+    public void writeJson(Object value, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        gson.toJson(value, writer);
+        writer.flush();
+    }
+
+    @Override
+    public SerializationEngine configure(IgnoreSpec ignoreSpec) {
+        return new GsonEngine(prettyPrint, ignoreSpec);
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.manusant.ss.serialization;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import io.github.manusant.ss.conf.IgnoreSpec;
+import io.github.manusant.ss.model.ContentType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Codec for the binary JSON-equivalent formats supported by Jackson data format modules.
+ *
+ * @author manusant
+ */
+@Slf4j
+public class JacksonCodec implements Codec {
+
+    private static final String MSGPACK_FACTORY = "org.msgpack.jackson.dataformat.MessagePackFactory";
+
+    private final ContentType contentType;
+    private final ObjectMapper mapper;
+
+    public JacksonCodec(ContentType contentType, JsonFactory factory, IgnoreSpec ignoreSpec) {
+        this.contentType = contentType;
+        this.mapper = JacksonEngine.configure(new ObjectMapper(factory), false, ignoreSpec);
+        this.mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+    }
+
+    public static JacksonCodec cbor(IgnoreSpec ignoreSpec) {
+        return new JacksonCodec(ContentType.APPLICATION_CBOR, new CBORFactory(), ignoreSpec);
+    }
+
+    public static JacksonCodec smile(IgnoreSpec ignoreSpec) {
+        return new JacksonCodec(ContentType.APPLICATION_SMILE, new SmileFactory(), ignoreSpec);
+    }
+
+    /**
+     * @return a MessagePack codec, or null when jackson-dataformat-msgpack is not on the classpath
+     */
+    public static JacksonCodec msgpack(IgnoreSpec ignoreSpec) {
+        try {
+            JsonFactory factory = (JsonFactory) Class.forName(MSGPACK_FACTORY).getDeclaredConstructor().newInstance();
+            return new JacksonCodec(ContentType.APPLICATION_MSGPACK, factory, ignoreSpec);
+        } catch (ReflectiveOperationException | LinkageError e) {
+            log.debug("Spark-Swagger: MessagePack not available, add org.msgpack:jackson-dataformat-msgpack to enable it");
+            return null;
+        }
+    }
+
+    @Override
+    public ContentType getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public Object encode(Object value) throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Override
+    public void write(Object value, OutputStream out) throws IOException {
+        mapper.writeValue(out, value);
+    }
+
+    @Override
+    public <T> T read(InputStream in, Type type) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            if (parser.nextToken() == null) {
+                return null;
+            }
+            return mapper.readValue(parser, mapper.constructType(type));
+        }
+    }
+}
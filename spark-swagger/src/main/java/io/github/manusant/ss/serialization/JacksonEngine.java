@@ -0,0 +1,162 @@
+package io.github.manusant.ss.serialization;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.introspect.AnnotatedField;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.JacksonAnnotationIntrospector;
+import io.github.manusant.ss.conf.IgnoreSpec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+
+/**
+ * Jackson backed engine configured to behave like the Gson one: fields are (de)serialized directly, nulls are
+ * omitted and unknown properties are ignored.
+ *
+ * @author manusant
+ */
+@Slf4j
+public class JacksonEngine implements SerializationEngine {
+
+    private static final String[] ACCESSOR_MODULES = {
+            "com.fasterxml.jackson.module.blackbird.BlackbirdModule",
+            "com.fasterxml.jackson.module.afterburner.AfterburnerModule"
+    };
+
+    private final boolean prettyPrint;
+    private final boolean bytecodeAccessors;
+    private final ObjectMapper mapper;
+
+    public JacksonEngine(boolean prettyPrint, boolean bytecodeAccessors) {
+        this(prettyPrint, bytecodeAccessors, null);
+    }
+
+    private JacksonEngine(boolean prettyPrint, boolean bytecodeAccessors, IgnoreSpec ignoreSpec) {
+        this.prettyPrint = prettyPrint;
+        this.bytecodeAccessors = bytecodeAccessors;
+        this.mapper = createMapper(prettyPrint, bytecodeAccessors, ignoreSpec);
+    }
+
+    private static ObjectMapper createMapper(boolean prettyPrint, boolean bytecodeAccessors, IgnoreSpec ignoreSpec) {
+        ObjectMapper mapper = configure(new ObjectMapper(), prettyPrint, ignoreSpec);
+        if (bytecodeAccessors) {
+            registerAccessorModule(mapper);
+        }
+        return mapper;
+    }
+
+    /**
+     * Applies the Gson-like settings and ignore spec exclusions to a mapper of any data format.
+     */
+    public static <M extends ObjectMapper> M configure(M mapper, boolean prettyPrint, IgnoreSpec ignoreSpec) {
+        mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE);
+        mapper.setVisibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY);
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.configure(SerializationFeature.FAIL_ON_EMPTY_BEANS, false);
+        mapper.configure(SerializationFeature.INDENT_OUTPUT, prettyPrint);
+        mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        if (ignoreSpec != null) {
+            mapper.setAnnotationIntrospector(new IgnoreSpecIntrospector(ignoreSpec));
+        }
+        return mapper;
+    }
+
+    private static void registerAccessorModule(ObjectMapper mapper) {
+        for (String moduleClass : ACCESSOR_MODULES) {
+            try {
+                mapper.registerModule((Module) Class.forName(moduleClass).getDeclaredConstructor().newInstance());
+                log.debug("Spark-Swagger: Jackson accessors generated by {}", moduleClass);
+                return;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // Module not available, try the next one
+            }
+        }
+        log.warn("Spark-Swagger: Neither Blackbird nor Afterburner found on classpath, using reflective Jackson accessors");
+    }
+
+    public ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    @Override
+    public String toJson(Object value) {
+        try {
+            return mapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T fromJson(String json, Type type) {
+        if (json == null || json.isEmpty()) {
+            return null;
+        }
+        try {
+            return mapper.readValue(json, mapper.constructType(type));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public <T> T readJson(InputStream in, Type type) throws IOException {
+        try (JsonParser parser = mapper.getFactory().createParser(in)) {
+            if (parser.nextToken() == null) {
+                // Empty body, same as Gson
+                return null;
+            }
+            return mapper.readValue(parser, mapper.constructType(type));
+        }
+    }
+
+    @Override
+    public void writeJson(Object value, OutputStream out) throws IOException {
+        mapper.writeValue(out, value);
+    }
+
+    @Override
+    public SerializationEngine configure(IgnoreSpec ignoreSpec) {
+        return new JacksonEngine(prettyPrint, bytecodeAccessors, ignoreSpec);
+    }
+
+    /**
+     * Applies {@link IgnoreSpec} exclusions on fields, the same way the Gson exclusion strategy does.
+     */
+    private static class IgnoreSpecIntrospector extends JacksonAnnotationIntrospector {
+
+        private static final long serialVersionUID = 1L;
+
+        private final IgnoreSpec ignoreSpec;
+
+        IgnoreSpecIntrospector(IgnoreSpec ignoreSpec) {
+            this.ignoreSpec = ignoreSpec;
+        }
+
+        @Override
+        public boolean hasIgnoreMarker(AnnotatedMember member) {
+            if (member instanceof AnnotatedField) {
+                Field field = ((AnnotatedField) member).getAnnotated();
+                if (ignoreSpec.ignoreAnnotated(field) || ignoreSpec.ignored(field)) {
+                    return true;
+                }
+            }
+            return super.hasIgnoreMarker(member);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package io.github.manusant.ss.serialization;
+
+import io.github.manusant.ss.conf.IgnoreSpec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * SPI for the JSON engine used to read request bodies and write responses.
+ * <p>
+ * Implementations must be thread safe since a single configured instance is shared by every route.
+ *
+ * @author manusant
+ */
+public interface SerializationEngine {
+
+    String toJson(Object value);
+
+    <T> T fromJson(String json, Type type);
+
+    /**
+     * Reads a UTF-8 JSON document from the given stream. Engines should parse incrementally rather than buffering the
+     * whole document.
+     */
+    default <T> T readJson(InputStream in, Type type) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read; (read = in.read(buffer)) != -1; ) {
+            body.write(buffer, 0, read);
+        }
+        return fromJson(new String(body.toByteArray(), StandardCharsets.UTF_8), type);
+    }
+
+    /**
+     * Writes the value as UTF-8 JSON to the given stream without closing it.
+     */
+    default void writeJson(Object value, OutputStream out) throws IOException {
+        out.write(toJson(value).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates an engine with the same settings that skips the fields excluded by the given ignore spec.
+     *
+     * @param ignoreSpec exclusions to apply, may be null
+     * @return configured engine
+     */
+    SerializationEngine configure(IgnoreSpec ignoreSpec);
+
+    static SerializationEngine gson() {
+        return new GsonEngine(false);
+    }
+
+    static SerializationEngine prettyGson() {
+        return new GsonEngine(true);
+    }
+
+    static SerializationEngine jackson() {
+        return new JacksonEngine(false, false);
+    }
+
+    static SerializationEngine prettyJackson() {
+        return new JacksonEngine(true, false);
+    }
+
+    /**
+     * Jackson engine optionally backed by Blackbird or Afterburner generated accessors when one of them is on the classpath.
+     */
+    static SerializationEngine jackson(boolean prettyPrint, boolean bytecodeAccessors) {
+        return new JacksonEngine(prettyPrint, bytecodeAccessors);
+    }
+}
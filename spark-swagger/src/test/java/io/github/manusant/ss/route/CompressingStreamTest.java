@@ -0,0 +1,89 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.model.ContentEncoding;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author manusant
+ */
+public class CompressingStreamTest {
+
+    private static final int THRESHOLD = 256;
+
+    private final Map<String, String> headers = new HashMap<>();
+    private HttpServletResponse response;
+
+    @Before
+    public void setUp() {
+        headers.clear();
+        response = (HttpServletResponse) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletResponse.class}, (proxy, method, args) -> {
+            if (method.getName().equals("setHeader")) {
+                headers.put((String) args[0], (String) args[1]);
+            }
+            return null;
+        });
+        // Leaves a buffer much larger than the threshold in the pool, as a large body read on the same thread would
+        BufferPool.release(new byte[64 * 1024]);
+    }
+
+    @Test
+    public void compressesBodiesReachingTheThresholdAfterALargerBufferWasPooled() throws IOException {
+        byte[] body = body(THRESHOLD * 4);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        try (CompressingStream out = new CompressingStream(response, target, ContentEncoding.GZIP, THRESHOLD)) {
+            out.write(body, 0, body.length);
+        }
+
+        assertThat(headers.get("Content-Encoding"), is("gzip"));
+        assertThat(Arrays.equals(gunzip(target.toByteArray()), body), is(true));
+    }
+
+    @Test
+    public void writesBodiesBelowTheThresholdAsTheyAre() throws IOException {
+        byte[] body = body(THRESHOLD / 2);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+        try (CompressingStream out = new CompressingStream(response, target, ContentEncoding.GZIP, THRESHOLD)) {
+            out.write(body, 0, body.length);
+        }
+
+        assertThat(headers.get("Content-Encoding"), is(nullValue()));
+        assertThat(Arrays.equals(target.toByteArray(), body), is(true));
+    }
+
+    private static byte[] body(int length) {
+        byte[] body = new byte[length];
+        for (int i = 0; i < length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        return body;
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[1024];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                plain.write(buffer, 0, read);
+            }
+        }
+        return plain.toByteArray();
+    }
+}
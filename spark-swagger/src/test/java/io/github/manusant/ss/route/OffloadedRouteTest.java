@@ -0,0 +1,101 @@
+package io.github.manusant.ss.route;
+
+import io.github.manusant.ss.descriptor.MethodDescriptor;
+import io.github.manusant.ss.model.HttpMethod;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import spark.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author manusant
+ */
+public class OffloadedRouteTest {
+
+    private Service spark;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        spark = Service.ignite().port(0);
+        AsyncServer.install(spark);
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        spark.stop();
+        spark.awaitStop();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void mappedExceptionIsAnsweredByItsHandler() throws IOException {
+        spark.exception(ItemNotFoundException.class, (exception, request, response) -> {
+            response.status(404);
+            response.body("Item " + exception.getMessage() + " not found");
+        });
+        spark.get("/items/:id", offloaded("/items/:id", (request, response) -> {
+            throw new ItemNotFoundException(request.params("id"));
+        }));
+        spark.awaitInitialization();
+
+        HttpURLConnection connection = get("/items/42");
+        assertThat(connection.getResponseCode(), is(404));
+        assertThat(bodyOf(connection), is("Item 42 not found"));
+    }
+
+    @Test
+    public void unmappedExceptionIsAnsweredWithoutItsMessage() throws IOException {
+        spark.get("/broken", offloaded("/broken", (request, response) -> {
+            throw new IllegalStateException("connection string user:secret");
+        }));
+        spark.awaitInitialization();
+
+        HttpURLConnection connection = get("/broken");
+        assertThat(connection.getResponseCode(), is(500));
+        assertThat(bodyOf(connection), not(containsString("secret")));
+    }
+
+    private OffloadedRoute offloaded(String path, spark.Route route) {
+        MethodDescriptor operation = MethodDescriptor.path(path).build();
+        operation.setMethod(HttpMethod.GET);
+        return new OffloadedRoute(route, executor, operation, OperationBinding.of(spark, null));
+    }
+
+    private HttpURLConnection get(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + spark.port() + path).openConnection();
+    }
+
+    private static String bodyOf(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            for (int read = in.read(buffer); read > 0; read = in.read(buffer)) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class ItemNotFoundException extends RuntimeException {
+
+        private ItemNotFoundException(String id) {
+            super(id);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.manusant.ss.route;
+
+import org.junit.Test;
+import spark.Request;
+import spark.Response;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * @author manusant
+ */
+public class RouteDescriptorTest {
+
+    @Test
+    public void bodyTypeOfTypedRoute() {
+        assertThat(RouteDescriptor.of(ItemRoute.class).getBodyType(), is(equalTo(Item.class)));
+    }
+
+    @Test
+    public void bodyTypeGivenThroughGenericSuperclass() {
+        assertThat(RouteDescriptor.of(ItemBaseRoute.class).getBodyType(), is(equalTo(Item.class)));
+    }
+
+    @Test
+    public void bodyTypeNestedInGenericSuperclass() {
+        Type bodyType = RouteDescriptor.of(ItemListRoute.class).getBodyType();
+
+        assertThat(bodyType, instanceOf(ParameterizedType.class));
+        assertThat(((ParameterizedType) bodyType).getRawType(), is(equalTo(List.class)));
+        assertThat(((ParameterizedType) bodyType).getActualTypeArguments()[0], is(equalTo(Item.class)));
+    }
+
+    @Test
+    public void paramsAndBodyTypesGivenInAnotherOrder() {
+        RouteDescriptor descriptor = RouteDescriptor.of(SwappedItemRoute.class);
+
+        assertThat(descriptor.getParamsType(), is(equalTo(ItemParams.class)));
+        assertThat(descriptor.getBodyType(), is(equalTo(Item.class)));
+    }
+
+    public static class Item {
+    }
+
+    public static class ItemParams {
+    }
+
+    public static class ItemRoute extends TypedRoute<Item> {
+
+        @Override
+        public Object onRequest(Item body, Request request, Response response) {
+            return body;
+        }
+    }
+
+    public abstract static class BaseRoute<T> extends TypedRoute<T> {
+    }
+
+    public static class ItemBaseRoute extends BaseRoute<Item> {
+
+        @Override
+        public Object onRequest(Item body, Request request, Response response) {
+            return body;
+        }
+    }
+
+    public abstract static class ListRoute<E> extends TypedRoute<List<E>> {
+    }
+
+    public static class ItemListRoute extends ListRoute<Item> {
+
+        @Override
+        public Object onRequest(List<Item> body, Request request, Response response) {
+            return body;
+        }
+    }
+
+    public abstract static class SwappedRoute<T, P> extends BoundTypedRoute<P, T> {
+    }
+
+    public static class SwappedItemRoute extends SwappedRoute<Item, ItemParams> {
+
+        @Override
+        public Object onRequest(ItemParams params, Item body, Request request, Response response) {
+            return body;
+        }
+    }
+}